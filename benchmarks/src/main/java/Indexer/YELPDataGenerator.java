@@ -0,0 +1,237 @@
+package Indexer;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+//writes Yelp shaped JSON lines (users, reviews, businesses) so the benchmarks run without the dataset.
+//records carry the fields the indexers read plus the ones they skip, ids look like Yelp's 22 character
+//ids, review text follows a Zipf-like word distribution and some lines contain JSON escapes.
+//the same seed always gives the same data.
+//usage: YELPDataGenerator <dir> [users] [businesses] [reviews]
+public class YELPDataGenerator {
+    private static final char[] ID_CHARS = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
+    private static final String[] CATEGORIES = {"Restaurants", "Bars", "Coffee & Tea", "Pizza", "Mexican", "Nightlife",
+            "Sandwiches", "Breakfast & Brunch", "Japanese", "Shopping", "Hotels", "Auto Repair"};
+    private static final String[][] CITIES = {
+            {"Las Vegas", "NV", "36.17", "-115.14"}, {"Phoenix", "AZ", "33.45", "-112.07"},
+            {"Toronto", "ON", "43.65", "-79.38"}, {"Charlotte", "NC", "35.23", "-80.84"},
+            {"Pittsburgh", "PA", "40.44", "-79.99"}, {"Atlanta", "GA", "33.75", "-84.39"}};
+    //a few words get escaped or non ASCII spellings, exercising the slow paths of the extractor
+    private static final String[] SPECIAL_WORDS = {"caf\\u00e9", "\\\"great\\\"", "jalape\\u00f1o", "line\\nbreak", "na\\u00efve"};
+
+    private final long seed;
+    private final int numUsers;
+    private final int numBusinesses;
+    private final String[] vocabulary;
+
+    public YELPDataGenerator(long seed, int numUsers, int numBusinesses) {
+        this.seed = seed;
+        this.numUsers = numUsers;
+        this.numBusinesses = numBusinesses;
+        Random random = new Random(seed);
+        vocabulary = new String[5000];
+        for (int i = 0; i < vocabulary.length; i++) {
+            vocabulary[i] = word(random, 2 + random.nextInt(8));
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("usage: YELPDataGenerator <dir> [users] [businesses] [reviews]");
+            return;
+        }
+        int users = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+        int businesses = args.length > 2 ? Integer.parseInt(args[2]) : 20000;
+        int reviews = args.length > 3 ? Integer.parseInt(args[3]) : 500000;
+        YELPDataGenerator generator = new YELPDataGenerator(42, users, businesses);
+        File dir = new File(args[0]);
+        dir.mkdirs();
+        generator.writeUsers(new File(dir, "user.json").getPath(), users);
+        generator.writeBusinesses(new File(dir, "business.json").getPath(), businesses);
+        generator.writeReviews(new File(dir, "review.json").getPath(), reviews);
+    }
+
+    public void writeUsers(String fileName, int count) throws IOException {
+        Writer out = open(fileName);
+        for (int i = 0; i < count; i++) {
+            out.write(user(i));
+            out.write('\n');
+        }
+        out.close();
+    }
+
+    public void writeBusinesses(String fileName, int count) throws IOException {
+        Writer out = open(fileName);
+        for (int i = 0; i < count; i++) {
+            out.write(business(i));
+            out.write('\n');
+        }
+        out.close();
+    }
+
+    public void writeReviews(String fileName, int count) throws IOException {
+        Writer out = open(fileName);
+        for (int i = 0; i < count; i++) {
+            out.write(review(i));
+            out.write('\n');
+        }
+        out.close();
+    }
+
+    public String userId(int i) {
+        return id('u', i);
+    }
+
+    public String businessId(int i) {
+        return id('b', i);
+    }
+
+    public String reviewId(int i) {
+        return id('r', i);
+    }
+
+    //a word as it occurs in review text, frequent words more often
+    public String word(Random random) {
+        return vocabulary[zipf(random, vocabulary.length)];
+    }
+
+    //center of the city business i is in, as {lat, lon}
+    public double[] cityCenter(int i) {
+        String[] city = CITIES[i % CITIES.length];
+        return new double[]{Double.parseDouble(city[2]), Double.parseDouble(city[3])};
+    }
+
+    public String user(int i) {
+        Random random = random('u', i);
+        StringBuilder sb = new StringBuilder(512);
+        sb.append("{\"user_id\":\"").append(userId(i)).append('"');
+        sb.append(",\"name\":\"").append(capitalize(word(random, 3 + random.nextInt(6)))).append('"');
+        sb.append(",\"review_count\":").append(zipf(random, 2000));
+        sb.append(",\"yelping_since\":\"").append(2004 + random.nextInt(14)).append('-')
+                .append(pad(1 + random.nextInt(12))).append('-').append(pad(1 + random.nextInt(28))).append('"');
+        sb.append(",\"friends\":\"");
+        int friends = zipf(random, Math.min(200, numUsers));
+        for (int f = 0; f < friends; f++) {
+            if (f > 0) {
+                sb.append(", ");
+            }
+            sb.append(userId(random.nextInt(numUsers)));
+        }
+        sb.append('"');
+        sb.append(",\"useful\":").append(zipf(random, 500));
+        sb.append(",\"funny\":").append(zipf(random, 300));
+        sb.append(",\"cool\":").append(zipf(random, 300));
+        sb.append(",\"fans\":").append(zipf(random, 100));
+        sb.append(",\"elite\":[");
+        for (int e = random.nextInt(4); e > 0; e--) {
+            sb.append(2017 - e).append(e > 1 ? "," : "");
+        }
+        sb.append(']');
+        sb.append(",\"average_stars\":").append(1 + random.nextInt(400) / 100.0);
+        sb.append(",\"compliment_hot\":").append(random.nextInt(50));
+        sb.append(",\"compliment_more\":").append(random.nextInt(10));
+        sb.append('}');
+        return sb.toString();
+    }
+
+    public String business(int i) {
+        Random random = random('b', i);
+        double[] center = cityCenter(i);
+        String[] city = CITIES[i % CITIES.length];
+        StringBuilder sb = new StringBuilder(512);
+        sb.append("{\"business_id\":\"").append(businessId(i)).append('"');
+        sb.append(",\"name\":\"").append(capitalize(word(random))).append(' ').append(capitalize(word(random))).append('"');
+        sb.append(",\"neighborhood\":\"\"");
+        sb.append(",\"address\":\"").append(1 + random.nextInt(9999)).append(' ').append(capitalize(word(random))).append(" St\"");
+        sb.append(",\"city\":\"").append(city[0]).append('"');
+        sb.append(",\"state\":\"").append(city[1]).append('"');
+        sb.append(",\"postal_code\":\"").append(10000 + random.nextInt(89999)).append('"');
+        //spread over about 30km around the city center
+        sb.append(",\"latitude\":").append(center[0] + (random.nextDouble() - 0.5) * 0.3);
+        sb.append(",\"longitude\":").append(center[1] + (random.nextDouble() - 0.5) * 0.3);
+        sb.append(",\"stars\":").append((2 + random.nextInt(7)) / 2.0);
+        sb.append(",\"review_count\":").append(3 + zipf(random, 1000));
+        sb.append(",\"is_open\":").append(random.nextInt(5) == 0 ? 0 : 1);
+        sb.append(",\"attributes\":{\"RestaurantsPriceRange2\":").append(1 + random.nextInt(4))
+                .append(",\"BusinessParking\":{\"garage\":false,\"street\":").append(random.nextBoolean())
+                .append(",\"lot\":").append(random.nextBoolean()).append("},\"WiFi\":\"free\"}");
+        sb.append(",\"categories\":[");
+        for (int c = 1 + random.nextInt(3); c > 0; c--) {
+            sb.append('"').append(CATEGORIES[random.nextInt(CATEGORIES.length)]).append('"').append(c > 1 ? "," : "");
+        }
+        sb.append(']');
+        sb.append(",\"hours\":{\"Monday\":\"11:00-22:00\",\"Friday\":\"11:00-23:00\"}");
+        sb.append('}');
+        return sb.toString();
+    }
+
+    public String review(int i) {
+        Random random = random('r', i);
+        StringBuilder sb = new StringBuilder(1024);
+        sb.append("{\"review_id\":\"").append(reviewId(i)).append('"');
+        sb.append(",\"user_id\":\"").append(userId(zipf(random, numUsers))).append('"');
+        sb.append(",\"business_id\":\"").append(businessId(zipf(random, numBusinesses))).append('"');
+        sb.append(",\"stars\":").append(1 + random.nextInt(5));
+        sb.append(",\"date\":\"").append(2008 + random.nextInt(10)).append('-')
+                .append(pad(1 + random.nextInt(12))).append('-').append(pad(1 + random.nextInt(28))).append('"');
+        sb.append(",\"text\":\"");
+        int words = 20 + random.nextInt(180);
+        for (int w = 0; w < words; w++) {
+            if (w > 0) {
+                sb.append(w % 15 == 0 ? ". " : " ");
+            }
+            sb.append(random.nextInt(200) == 0 ? SPECIAL_WORDS[random.nextInt(SPECIAL_WORDS.length)] : word(random));
+        }
+        sb.append(".\"");
+        sb.append(",\"useful\":").append(zipf(random, 50));
+        sb.append(",\"funny\":").append(zipf(random, 20));
+        sb.append(",\"cool\":").append(zipf(random, 20));
+        sb.append('}');
+        return sb.toString();
+    }
+
+    //every record has its own random stream, so record i does not depend on how many came before it
+    private Random random(char kind, int i) {
+        return new Random(seed * 31 + kind * 1000003L + i);
+    }
+
+    private String id(char kind, int i) {
+        Random random = random(Character.toUpperCase(kind), i);
+        char[] id = new char[22];
+        for (int c = 0; c < id.length; c++) {
+            id[c] = ID_CHARS[random.nextInt(ID_CHARS.length)];
+        }
+        return new String(id);
+    }
+
+    //0..n-1, small values much more likely (roughly Zipf with exponent 1)
+    private static int zipf(Random random, int n) {
+        return (int) Math.min(n - 1, Math.floor(Math.pow(n + 1, random.nextDouble()) - 1));
+    }
+
+    private static String word(Random random, int length) {
+        char[] w = new char[length];
+        for (int c = 0; c < length; c++) {
+            w[c] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(w);
+    }
+
+    private static String capitalize(String word) {
+        return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+    }
+
+    private static String pad(int n) {
+        return n < 10 ? "0" + n : Integer.toString(n);
+    }
+
+    private static Writer open(String fileName) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(fileName), StandardCharsets.UTF_8), 1 << 16);
+    }
+}
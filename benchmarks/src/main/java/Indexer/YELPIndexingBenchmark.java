@@ -0,0 +1,159 @@
+package Indexer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.search.similarities.BM25Similarity;
+import org.apache.lucene.search.similarities.ClassicSimilarity;
+import org.apache.lucene.search.similarities.Similarity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+//per record cost of the indexers: JSON line to Document (parseLine + getDocument) and addDocument.
+//lives in the Indexer package to reach the package-private per-line entry points.
+//run with -t N to measure addDocument from N threads sharing one IndexWriter
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class YELPIndexingBenchmark {
+    private static final int LINES = 20000;
+
+    @Param({"user", "review", "location"})
+    public String kind;
+
+    @Param({"bm25", "classic"})
+    public String similarity;
+
+    private File dir;
+    private YELPBaseIndexer indexer;
+    //all lines back to back in one heap buffer, as the line reader hands them to parseLine
+    private ByteBuffer lines;
+    private int[] starts;
+    private int[] ends;
+    private Document[] documents;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("yelp-bench-index").toFile();
+        indexer = newIndexer(kind, dir.getPath(), similarity(similarity));
+
+        YELPDataGenerator generator = new YELPDataGenerator(42, LINES, LINES / 5);
+        starts = new int[LINES];
+        ends = new int[LINES];
+        byte[][] encoded = new byte[LINES][];
+        int length = 0;
+        for (int i = 0; i < LINES; i++) {
+            encoded[i] = line(generator, kind, i).getBytes(StandardCharsets.UTF_8);
+            starts[i] = length;
+            length += encoded[i].length;
+            ends[i] = length;
+        }
+        byte[] all = new byte[length];
+        for (int i = 0; i < LINES; i++) {
+            System.arraycopy(encoded[i], 0, all, starts[i], encoded[i].length);
+        }
+        lines = ByteBuffer.wrap(all);
+
+        YELPJsonRecord record = indexer.newRecord();
+        documents = new Document[LINES];
+        for (int i = 0; i < LINES; i++) {
+            documents[i] = indexer.parseLine(lines, starts[i], ends[i], record);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        indexer.getWriter().rollback();
+        delete(dir);
+    }
+
+    //reused record and cursor of one benchmark thread
+    @State(Scope.Thread)
+    public static class Cursor {
+        YELPJsonRecord record;
+        int next;
+
+        @Setup(Level.Trial)
+        public void setUp(YELPIndexingBenchmark benchmark) {
+            record = benchmark.indexer.newRecord();
+            next = (int) (Thread.currentThread().getId() * 7919 % LINES);
+        }
+
+        int advance() {
+            int i = next;
+            next = i + 1 == LINES ? 0 : i + 1;
+            return i;
+        }
+    }
+
+    @Benchmark
+    public Document parseLine(Cursor cursor) throws Exception {
+        int i = cursor.advance();
+        return indexer.parseLine(lines, starts[i], ends[i], cursor.record);
+    }
+
+    //documents are reused, the index grows by every added copy
+    @Benchmark
+    public void addDocument(Cursor cursor) throws IOException {
+        indexer.write(documents[cursor.advance()]);
+    }
+
+    static YELPBaseIndexer newIndexer(String kind, String dir, Similarity similarity) throws IOException {
+        YELPIndexerOptions options = YELPIndexerOptions.rebuild();
+        if (kind.equals("user")) {
+            return new YELPIndexer(dir, similarity, options);
+        } else if (kind.equals("review")) {
+            return new YELPReviewIndexer(dir, similarity, options);
+        } else if (kind.equals("location")) {
+            return new YELPLocationIndexer(dir, options);
+        }
+        throw new IllegalArgumentException("unknown indexer: " + kind);
+    }
+
+    static Similarity similarity(String name) {
+        if (name.equals("bm25")) {
+            return new BM25Similarity();
+        } else if (name.equals("classic")) {
+            return new ClassicSimilarity();
+        }
+        throw new IllegalArgumentException("unknown similarity: " + name);
+    }
+
+    static String line(YELPDataGenerator generator, String kind, int i) {
+        if (kind.equals("user")) {
+            return generator.user(i);
+        } else if (kind.equals("review")) {
+            return generator.review(i);
+        }
+        return generator.business(i);
+    }
+
+    static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,76 @@
+package Indexer;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.search.similarities.BM25Similarity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+//end to end time to index a generated review dump: reading, parsing, addDocument and the final commit,
+//for each way the indexers can read their input
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class YELPIngestBenchmark {
+    @Param({"100000"})
+    public int reviews;
+
+    @Param({"sequential", "parallel", "mapped"})
+    public String input;
+
+    @Param({"4"})
+    public int threads;
+
+    private File data;
+    private File dir;
+    private YELPReviewIndexer indexer;
+
+    @Setup(Level.Trial)
+    public void generate() throws Exception {
+        data = File.createTempFile("yelp-bench-review", ".json");
+        new YELPDataGenerator(42, reviews / 5, reviews / 25).writeReviews(data.getPath(), reviews);
+    }
+
+    @Setup(Level.Invocation)
+    public void open() throws Exception {
+        dir = Files.createTempDirectory("yelp-bench-ingest").toFile();
+        indexer = new YELPReviewIndexer(dir.getPath(), new BM25Similarity());
+    }
+
+    @TearDown(Level.Invocation)
+    public void delete() {
+        YELPIndexingBenchmark.delete(dir);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteData() {
+        data.delete();
+    }
+
+    @Benchmark
+    public void index() throws Exception {
+        if (input.equals("sequential")) {
+            indexer.indexYelps(data.getPath());
+        } else if (input.equals("parallel")) {
+            indexer.indexYelpsParallel(data.getPath(), threads, 4 * threads);
+        } else {
+            indexer.indexYelpsMapped(data.getPath(), threads, 4 * threads);
+        }
+    }
+}
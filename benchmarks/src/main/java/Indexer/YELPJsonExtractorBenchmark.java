@@ -0,0 +1,96 @@
+package Indexer;
+
+import java.io.FileInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+//compares the JSONObject path the indexers used to take with YELPJsonFieldExtractor on the same lines.
+//run with -prof gc for allocated bytes per line and GC activity.
+//lines come from file when it is set (e.g. -p file=yelp/review.json), generated reviews otherwise
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class YELPJsonExtractorBenchmark {
+    private static final int MAX_LINES = 20000;
+
+    @Param({""})
+    public String file;
+
+    @Param({"user_id,business_id,stars,text"})
+    public String fields;
+
+    private String[] fieldNames;
+    private byte[][] lines;
+    private int next = 0;
+
+    private YELPJsonFieldExtractor extractor;
+    private YELPJsonRecord record;
+
+    @Setup
+    public void setUp() throws Exception {
+        fieldNames = fields.split(",");
+        List<byte[]> loaded = new ArrayList<byte[]>();
+        if (file.isEmpty()) {
+            YELPDataGenerator generator = new YELPDataGenerator(42, MAX_LINES / 5, MAX_LINES / 25);
+            for (int i = 0; i < MAX_LINES; i++) {
+                loaded.add(generator.review(i).getBytes(StandardCharsets.UTF_8));
+            }
+        } else {
+            YELPLineReader in = new YELPLineReader(new FileInputStream(file));
+            while (loaded.size() < MAX_LINES && in.next()) {
+                loaded.add(Arrays.copyOfRange(in.array(), in.start(), in.end()));
+            }
+            in.close();
+        }
+        lines = loaded.toArray(new byte[0][]);
+
+        extractor = new YELPJsonFieldExtractor(fieldNames);
+        record = extractor.newRecord();
+    }
+
+    private byte[] nextLine() {
+        byte[] line = lines[next];
+        next = next + 1 == lines.length ? 0 : next + 1;
+        return line;
+    }
+
+    //what the indexers did before: decode the whole line, build the object tree, pick the fields
+    @Benchmark
+    public long jsonObject() throws Exception {
+        JSONObject jObj = new JSONObject(new String(nextLine(), StandardCharsets.UTF_8).trim());
+        long length = 0;
+        for (String field : fieldNames) {
+            length += jObj.getString(field).length();
+        }
+        return length;
+    }
+
+    @Benchmark
+    public long extractor() {
+        extractor.extract(nextLine(), record);
+        long length = 0;
+        for (int i = 0; i < fieldNames.length; i++) {
+            length += record.getString(i).length();
+        }
+        return length;
+    }
+}
@@ -0,0 +1,191 @@
+package Searcher;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import Indexer.YELPDataGenerator;
+import Indexer.YELPIndexerOptions;
+import Indexer.YELPLocationIndexer;
+import Indexer.YELPReviewIndexer;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.similarities.BM25Similarity;
+import org.apache.lucene.search.similarities.ClassicSimilarity;
+import org.apache.lucene.search.similarities.Similarity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+//latency of the YELPSearcher query types over generated review and business indexes.
+//queries cycle through a fixed set, so with the result cache on most of them are repeats
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class YELPSearchBenchmark {
+    private static final int QUERIES = 1024;
+    private static final int NUM_HITS = 20;
+
+    @Param({"200000"})
+    public int reviews;
+
+    @Param({"bm25", "classic"})
+    public String similarity;
+
+    //threads scoring the segments of one query, 1 searches on the calling thread
+    @Param({"1"})
+    public int segmentThreads;
+
+    //review index shards, searched one task per shard
+    @Param({"1"})
+    public int shards;
+
+    //result cache entries, 0 turns the cache off
+    @Param({"0"})
+    public int cacheSize;
+
+    //geohash cells cached for searchNearest, 0 turns the cell cache off
+    @Param({"0", "1000"})
+    public int geoCells;
+
+    private File dir;
+    private YELPSearcher reviewSearcher;
+    private YELPSearcher locationSearcher;
+
+    private String[] keywords = new String[QUERIES];
+    private String[] phrases = new String[QUERIES];
+    private String[] businessIds = new String[QUERIES];
+    private String[] words = new String[QUERIES];
+    private double[][] locations = new double[QUERIES][];
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("yelp-bench-search").toFile();
+        int businesses = reviews / 25;
+        YELPDataGenerator generator = new YELPDataGenerator(42, reviews / 5, businesses);
+        String reviewData = new File(dir, "review.json").getPath();
+        String businessData = new File(dir, "business.json").getPath();
+        generator.writeReviews(reviewData, reviews);
+        generator.writeBusinesses(businessData, businesses);
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        String reviewIndex = new File(dir, "review").getPath();
+        String locationIndex = new File(dir, "location").getPath();
+        new YELPReviewIndexer(reviewIndex, YELPIndexerOptions.rebuild().setShards(shards))
+                .indexYelpsParallel(reviewData, threads, 4 * threads);
+        new YELPLocationIndexer(locationIndex).indexYelps(businessData);
+
+        reviewSearcher = new YELPSearcher(reviewIndex, similarity(similarity));
+        reviewSearcher.setParallelism(segmentThreads, 1);
+        locationSearcher = new YELPSearcher(locationIndex);
+        if (cacheSize > 0) {
+            reviewSearcher.setResultCache(cacheSize, TimeUnit.MINUTES.toMillis(10));
+            locationSearcher.setResultCache(cacheSize, TimeUnit.MINUTES.toMillis(10));
+        }
+        if (geoCells > 0) {
+            locationSearcher.setGeoCellCache(geoCells, 6);
+        }
+
+        Random random = new Random(7);
+        for (int i = 0; i < QUERIES; i++) {
+            keywords[i] = generator.word(random) + " " + generator.word(random);
+            businessIds[i] = generator.businessId(random.nextInt(businesses));
+            words[i] = generator.word(random);
+            phrases[i] = "business_id: " + QueryParser.escape(businessIds[i]) + " AND review: " + words[i];
+            double[] center = generator.cityCenter(random.nextInt(businesses));
+            locations[i] = new double[]{center[0] + (random.nextDouble() - 0.5) * 0.1, center[1] + (random.nextDouble() - 0.5) * 0.1};
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        reviewSearcher.close();
+        locationSearcher.close();
+        delete(dir);
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            next = (int) (Thread.currentThread().getId() * 131 % QUERIES);
+        }
+
+        int advance() {
+            int i = next;
+            next = (i + 1) % QUERIES;
+            return i;
+        }
+    }
+
+    @Benchmark
+    public ScoreDoc[] search(Cursor cursor) {
+        return reviewSearcher.search("review", keywords[cursor.advance()], NUM_HITS);
+    }
+
+    @Benchmark
+    public ScoreDoc[] searchPhraseQuery(Cursor cursor) {
+        return reviewSearcher.searchPhraseQuery(phrases[cursor.advance()], NUM_HITS);
+    }
+
+    //the same lookups as searchPhraseQuery through the exact id API
+    @Benchmark
+    public ScoreDoc[] searchWithin(Cursor cursor) {
+        int i = cursor.advance();
+        return reviewSearcher.searchWithin("business_id", businessIds[i], "review", words[i], NUM_HITS);
+    }
+
+    @Benchmark
+    public ScoreDoc[] searchId(Cursor cursor) {
+        return reviewSearcher.searchId("business_id", businessIds[cursor.advance()], NUM_HITS);
+    }
+
+    //businesses within 2km
+    @Benchmark
+    public ScoreDoc[] searchLocationQuery(Cursor cursor) {
+        double[] location = locations[cursor.advance()];
+        return locationSearcher.searchLocationQuery(location[0], location[1], 2000, NUM_HITS);
+    }
+
+    //nearest businesses within 2km, nearest first
+    @Benchmark
+    public ScoreDoc[] searchNearest(Cursor cursor) {
+        double[] location = locations[cursor.advance()];
+        return locationSearcher.searchNearest(location[0], location[1], 2000, null, null, NUM_HITS);
+    }
+
+    private static Similarity similarity(String name) {
+        if (name.equals("bm25")) {
+            return new BM25Similarity();
+        } else if (name.equals("classic")) {
+            return new ClassicSimilarity();
+        }
+        throw new IllegalArgumentException("unknown similarity: " + name);
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
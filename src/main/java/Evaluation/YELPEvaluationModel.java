@@ -0,0 +1,65 @@
+package Evaluation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.lucene.search.similarities.BM25Similarity;
+import org.apache.lucene.search.similarities.ClassicSimilarity;
+import org.apache.lucene.search.similarities.LMDirichletSimilarity;
+import org.apache.lucene.search.similarities.Similarity;
+
+//a named scoring configuration to evaluate, e.g. "bm25 k1=1.2 b=0.75"
+public class YELPEvaluationModel {
+    private final String name;
+    private final Similarity similarity;
+
+    public YELPEvaluationModel(String name, Similarity similarity) {
+        this.name = name;
+        this.similarity = similarity;
+    }
+
+    public static YELPEvaluationModel classic() {
+        return new YELPEvaluationModel("classic", new ClassicSimilarity());
+    }
+
+    public static YELPEvaluationModel bm25(float k1, float b) {
+        return new YELPEvaluationModel("bm25 k1=" + k1 + " b=" + b, new BM25Similarity(k1, b));
+    }
+
+    public static YELPEvaluationModel lmDirichlet(float mu) {
+        return new YELPEvaluationModel("lm-dirichlet mu=" + mu, new LMDirichletSimilarity(mu));
+    }
+
+    //bm25 with every combination of k1 and b
+    public static List<YELPEvaluationModel> bm25Grid(float[] k1s, float[] bs) {
+        List<YELPEvaluationModel> models = new ArrayList<YELPEvaluationModel>();
+        for (float k1 : k1s) {
+            for (float b : bs) {
+                models.add(bm25(k1, b));
+            }
+        }
+        return models;
+    }
+
+    //classic, bm25 around its defaults (k1=1.2, b=0.75) and lm-dirichlet at the usual mu=2000
+    public static List<YELPEvaluationModel> standard() {
+        List<YELPEvaluationModel> models = new ArrayList<YELPEvaluationModel>();
+        models.add(classic());
+        models.addAll(bm25Grid(new float[]{0.9f, 1.2f, 1.5f, 2.0f}, new float[]{0.4f, 0.75f, 1.0f}));
+        models.add(lmDirichlet(2000));
+        return models;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Similarity getSimilarity() {
+        return similarity;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,58 @@
+package Evaluation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+//the results of every model of one evaluation run, in the order the models were given
+public class YELPEvaluationReport {
+    private final List<YELPEvaluationResult> results;
+    private final int topics;
+    private final int threads;
+    private final double wallSeconds;
+
+    YELPEvaluationReport(List<YELPEvaluationResult> results, int topics, int threads, double wallSeconds) {
+        this.results = Collections.unmodifiableList(new ArrayList<YELPEvaluationResult>(results));
+        this.topics = topics;
+        this.threads = threads;
+        this.wallSeconds = wallSeconds;
+    }
+
+    public List<YELPEvaluationResult> getResults() {
+        return results;
+    }
+
+    //the model with the highest MAP, null without models
+    public YELPEvaluationResult best() {
+        YELPEvaluationResult best = null;
+        for (YELPEvaluationResult r : results) {
+            if (best == null || r.getMAP() > best.getMAP()) {
+                best = r;
+            }
+        }
+        return best;
+    }
+
+    public double getWallSeconds() {
+        return wallSeconds;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "%d topics x %d models on %d threads in %.1fs%n", topics, results.size(),
+                threads, wallSeconds));
+        if (!results.isEmpty()) {
+            sb.append(YELPEvaluationResult.header(results.get(0).getCutoff())).append('\n');
+        }
+        for (YELPEvaluationResult r : results) {
+            sb.append(r).append('\n');
+        }
+        YELPEvaluationResult best = best();
+        if (best != null) {
+            sb.append("best MAP: ").append(best.getModel()).append('\n');
+        }
+        return sb.toString();
+    }
+}
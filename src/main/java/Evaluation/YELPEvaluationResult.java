@@ -0,0 +1,87 @@
+package Evaluation;
+
+import java.util.Locale;
+
+import Metrics.YELPHistogram;
+import org.apache.lucene.benchmark.quality.QualityStats;
+
+//quality and cost of one model over the topic set
+public class YELPEvaluationResult {
+    private final YELPEvaluationModel model;
+    //averaged over the topics
+    private final QualityStats average;
+    private final double precision;
+    private final double ndcg;
+    private final int cutoff;
+    //search time of each topic in microseconds, without parsing and loading the doc names
+    private final YELPHistogram latency;
+    private final double searchSeconds;
+
+    YELPEvaluationResult(YELPEvaluationModel model, QualityStats average, double precision, double ndcg, int cutoff,
+                         YELPHistogram latency, double searchSeconds) {
+        this.model = model;
+        this.average = average;
+        this.precision = precision;
+        this.ndcg = ndcg;
+        this.cutoff = cutoff;
+        this.latency = latency;
+        this.searchSeconds = searchSeconds;
+    }
+
+    public YELPEvaluationModel getModel() {
+        return model;
+    }
+
+    //mean average precision
+    public double getMAP() {
+        return average.getAvp();
+    }
+
+    //mean precision of the first cutoff hits
+    public double getPrecision() {
+        return precision;
+    }
+
+    //mean nDCG of the first cutoff hits, with the binary relevance of the qrels
+    public double getNDCG() {
+        return ndcg;
+    }
+
+    //the rank P@ and nDCG@ are computed at
+    public int getCutoff() {
+        return cutoff;
+    }
+
+    public double getRecall() {
+        return average.getRecall();
+    }
+
+    public double getMRR() {
+        return average.getMRR();
+    }
+
+    public QualityStats getAverage() {
+        return average;
+    }
+
+    public YELPHistogram getLatency() {
+        return latency;
+    }
+
+    //topics searched per second by one thread
+    public double getQueriesPerSecond() {
+        return searchSeconds > 0 ? latency.getCount() / searchSeconds : 0;
+    }
+
+    static String header(int cutoff) {
+        return String.format(Locale.ROOT, "%-28s %7s %7s %8s %7s %7s %8s %8s %8s", "model", "MAP", "P@" + cutoff,
+                "nDCG@" + cutoff, "recall", "MRR", "p50 ms", "p99 ms", "qps");
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "%-28s %7.4f %7.4f %8.4f %7.4f %7.4f %8.2f %8.2f %8.0f", model.getName(), getMAP(),
+                getPrecision(), getNDCG(), getRecall(), getMRR(), latency.getPercentile(0.5) / 1000.0,
+                latency.getPercentile(0.99) / 1000.0, getQueriesPerSecond());
+    }
+}
@@ -0,0 +1,274 @@
+package Evaluation;
+
+import Indexer.YELPBaseIndexer;
+import Metrics.YELPHistogram;
+import Searcher.YELPDaemonThreadFactory;
+import Searcher.YELPQueryCompiler;
+import Searcher.YELPSearcher;
+import org.apache.lucene.benchmark.quality.Judge;
+import org.apache.lucene.benchmark.quality.QualityBenchmark;
+import org.apache.lucene.benchmark.quality.QualityQuery;
+import org.apache.lucene.benchmark.quality.QualityQueryParser;
+import org.apache.lucene.benchmark.quality.QualityStats;
+import org.apache.lucene.benchmark.quality.trec.TrecJudge;
+import org.apache.lucene.benchmark.quality.trec.TrecTopicsReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchNoDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TopDocs;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+//runs a TREC topic set against several scoring models over one shared reader and reports MAP, P@n and
+//nDCG@n next to search latency and throughput for each. every (model, topic) pair is a task on its own
+//thread pool, so a grid of models takes about as long as the slowest few topics times models / threads.
+//  java Evaluation.YELPEvaluator <index> <topics> <qrels> [threads]
+public class YELPEvaluator {
+    private final YELPSearcher searcher;
+    private final QualityQuery[] topics;
+    private final Judge judge;
+    //stored field that holds the document names of the qrels
+    private String docNameField = YELPBaseIndexer.REVIEW_ID_FIELD;
+    private String topicField = "title";
+    private String searchField = YELPQueryCompiler.DEFAULT_FIELD;
+    private int maxResults = 1000;
+    private int cutoff = 10;
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    //topics judged by judge, searched on the reader of searcher. the searcher's own similarity is not used
+    public YELPEvaluator(YELPSearcher searcher, QualityQuery[] topics, Judge judge) {
+        this.searcher = searcher;
+        this.topics = topics;
+        this.judge = judge;
+    }
+
+    //TREC topics and qrels files, as QualityBenchmark reads them
+    public static YELPEvaluator trec(YELPSearcher searcher, String topicsFile, String qrelsFile) throws IOException {
+        BufferedReader topics = new BufferedReader(new FileReader(topicsFile));
+        BufferedReader qrels = new BufferedReader(new FileReader(qrelsFile));
+        try {
+            return new YELPEvaluator(searcher, new TrecTopicsReader().readQueries(topics), new TrecJudge(qrels));
+        } finally {
+            topics.close();
+            qrels.close();
+        }
+    }
+
+    public YELPEvaluator setDocNameField(String docNameField) {
+        this.docNameField = docNameField;
+        return this;
+    }
+
+    //the topic field searched (title) and the index field it is searched in (review)
+    public YELPEvaluator setTopicField(String topicField, String searchField) {
+        this.topicField = topicField;
+        this.searchField = searchField;
+        return this;
+    }
+
+    //hits judged per topic, 1000 as in TREC
+    public YELPEvaluator setMaxResults(int maxResults) {
+        this.maxResults = maxResults;
+        return this;
+    }
+
+    //the rank of P@ and nDCG@
+    public YELPEvaluator setCutoff(int cutoff) {
+        if (cutoff < 1) {
+            throw new IllegalArgumentException("cutoff must be positive: " + cutoff);
+        }
+        this.cutoff = cutoff;
+        return this;
+    }
+
+    public YELPEvaluator setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be positive: " + threads);
+        }
+        this.threads = threads;
+        return this;
+    }
+
+    //log topics without judgements and judgements without topics, false if there are any
+    public boolean validate(PrintWriter logger) {
+        return judge.validateData(topics, logger);
+    }
+
+    //evaluate every model on the topic set
+    public YELPEvaluationReport run(List<YELPEvaluationModel> models) throws Exception {
+        long start = System.nanoTime();
+        IndexSearcher acquired = searcher.getSearcher();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, new YELPDaemonThreadFactory("yelp-evaluation"));
+        try {
+            IndexReader reader = acquired.getIndexReader();
+            QualityQueryParser parser = new TopicParser(searcher.getQueryCompiler(), topicField, searchField);
+            List<List<Future<Outcome>>> pending = new ArrayList<List<Future<Outcome>>>();
+            for (YELPEvaluationModel model : models) {
+                List<Future<Outcome>> outcomes = new ArrayList<Future<Outcome>>();
+                for (QualityQuery topic : topics) {
+                    outcomes.add(pool.submit(new Task(reader, model, topic, parser)));
+                }
+                pending.add(outcomes);
+            }
+
+            List<YELPEvaluationResult> results = new ArrayList<YELPEvaluationResult>();
+            for (int m = 0; m < models.size(); m++) {
+                QualityStats[] stats = new QualityStats[topics.length];
+                YELPHistogram latency = new YELPHistogram();
+                double precision = 0;
+                double ndcg = 0;
+                long searchNanos = 0;
+                for (int t = 0; t < topics.length; t++) {
+                    Outcome outcome = pending.get(m).get(t).get();
+                    stats[t] = outcome.stats;
+                    latency.record(outcome.searchNanos / 1000);
+                    searchNanos += outcome.searchNanos;
+                    precision += precision(outcome.stats, cutoff);
+                    ndcg += ndcg(outcome.stats, cutoff);
+                }
+                results.add(new YELPEvaluationResult(models.get(m), QualityStats.average(stats),
+                        topics.length == 0 ? 0 : precision / topics.length, topics.length == 0 ? 0 : ndcg / topics.length,
+                        cutoff, latency, searchNanos / 1e9));
+            }
+            return new YELPEvaluationReport(results, topics.length, threads, (System.nanoTime() - start) / 1e9);
+        } finally {
+            pool.shutdownNow();
+            searcher.release(acquired);
+        }
+    }
+
+    //relevant hits among the first cutoff, also past the QualityStats.MAX_POINTS ranks getPrecisionAt knows
+    static double precision(QualityStats stats, int cutoff) {
+        int relevant = 0;
+        for (QualityStats.RecallPoint point : stats.getRecallPoints()) {
+            if (point.getRank() <= cutoff) {
+                relevant++;
+            }
+        }
+        return (double) relevant / cutoff;
+    }
+
+    //nDCG of the first cutoff hits with binary gains: the ranks of the relevant hits found against
+    //all relevant documents ranked first
+    static double ndcg(QualityStats stats, int cutoff) {
+        double dcg = 0;
+        for (QualityStats.RecallPoint point : stats.getRecallPoints()) {
+            if (point.getRank() <= cutoff) {
+                dcg += 1 / log2(point.getRank() + 1);
+            }
+        }
+        double ideal = 0;
+        int relevant = (int) Math.min(cutoff, stats.getMaxGoodPoints());
+        for (int rank = 1; rank <= relevant; rank++) {
+            ideal += 1 / log2(rank + 1);
+        }
+        return ideal == 0 ? 0 : dcg / ideal;
+    }
+
+    private static double log2(double x) {
+        return Math.log(x) / Math.log(2);
+    }
+
+    //one topic with one model. QualityBenchmark judges the hits and loads their names,
+    //only the search itself is timed
+    private class Task implements Callable<Outcome> {
+        private final IndexReader reader;
+        private final YELPEvaluationModel model;
+        private final QualityQuery topic;
+        private final QualityQueryParser parser;
+
+        Task(IndexReader reader, YELPEvaluationModel model, QualityQuery topic, QualityQueryParser parser) {
+            this.reader = reader;
+            this.model = model;
+            this.topic = topic;
+            this.parser = parser;
+        }
+
+        @Override
+        public Outcome call() throws Exception {
+            TimedSearcher timed = new TimedSearcher(reader);
+            timed.setSimilarity(model.getSimilarity());
+            QualityBenchmark benchmark = new QualityBenchmark(new QualityQuery[]{topic}, parser, timed, docNameField);
+            benchmark.setMaxResults(maxResults);
+            QualityStats stats = benchmark.execute(judge, null, null)[0];
+            return new Outcome(stats, timed.searchNanos);
+        }
+    }
+
+    private static class Outcome {
+        final QualityStats stats;
+        final long searchNanos;
+
+        Outcome(QualityStats stats, long searchNanos) {
+            this.stats = stats;
+            this.searchNanos = searchNanos;
+        }
+    }
+
+    //a searcher over the shared reader that times the top hits search QualityBenchmark runs.
+    //one per task, the similarity is per searcher
+    private static class TimedSearcher extends IndexSearcher {
+        long searchNanos = 0;
+
+        TimedSearcher(IndexReader reader) {
+            super(reader);
+        }
+
+        @Override
+        public TopDocs search(Query query, int n) throws IOException {
+            long start = System.nanoTime();
+            try {
+                return super.search(query, n);
+            } finally {
+                searchNanos += System.nanoTime() - start;
+            }
+        }
+    }
+
+    //the topic field analyzed into keywords in the search field, like YELPSearcher.search(field, keywords, n)
+    private static class TopicParser implements QualityQueryParser {
+        private final YELPQueryCompiler compiler;
+        private final String topicField;
+        private final String searchField;
+
+        TopicParser(YELPQueryCompiler compiler, String topicField, String searchField) {
+            this.compiler = compiler;
+            this.topicField = topicField;
+            this.searchField = searchField;
+        }
+
+        @Override
+        public Query parse(QualityQuery qq) {
+            Query query = compiler.keywords(searchField, qq.getValue(topicField));
+            return query == null ? new MatchNoDocsQuery("only stop words") : query;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.out.println("usage: YELPEvaluator <index> <topics> <qrels> [threads]");
+            return;
+        }
+        YELPSearcher searcher = new YELPSearcher(args[0]);
+        try {
+            YELPEvaluator evaluator = trec(searcher, args[1], args[2]);
+            if (args.length > 3) {
+                evaluator.setThreads(Integer.parseInt(args[3]));
+            }
+            evaluator.validate(new PrintWriter(System.out, true));
+            System.out.println(evaluator.run(YELPEvaluationModel.standard()));
+        } finally {
+            searcher.close();
+        }
+    }
+}
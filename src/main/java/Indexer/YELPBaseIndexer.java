@@ -0,0 +1,557 @@
+package Indexer;
+
+import Metrics.YELPMetrics;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.MultiReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.similarities.Similarity;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+
+//common indexing loop shared by the user, review and location indexers.
+//subclasses only decide which JSON fields they read and how those fields turn into a document.
+public abstract class YELPBaseIndexer {
+    //exact, unanalyzed record id that incremental runs upsert on
+    public static final String KEY_FIELD = "key";
+    //CRC32 of the JSON line a document was built from
+    public static final String RECORD_CRC_FIELD = "record_crc";
+
+    //Yelp ids, indexed as single untokenized terms (see YELPFieldSchema.yelp)
+    public static final String USER_ID_FIELD = "user_id";
+    public static final String BUSINESS_ID_FIELD = "business_id";
+    public static final String REVIEW_ID_FIELD = "review_id";
+    public static final Set<String> ID_FIELDS = Collections.unmodifiableSet(
+            new HashSet<String>(Arrays.asList(USER_ID_FIELD, BUSINESS_ID_FIELD, REVIEW_ID_FIELD)));
+
+    protected IndexWriter writer = null;
+    //the writer of every shard, just writer when the index is not sharded
+    private final IndexWriter[] writers;
+    //its value picks the shard of a document
+    private final String shardField;
+    //how each field is indexed, see YELPIndexerOptions.setSchema
+    protected final YELPFieldSchema schema;
+    private final YELPJsonFieldExtractor extractor;
+    private final YELPIndexerOptions options;
+
+    //checkpoints of the file the current run reads
+    private YELPSourceCheckpoint.Tracker source = null;
+    //only set while an incremental run rescans the whole dump
+    private YELPChangeDetector changes = null;
+    //the shards as an incremental run into a sharded index found them, to find where a record was
+    private YELPChangeDetector previousShards = null;
+    //documents written by the current run and when it started, for the docs/sec gauge
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failedLines = new AtomicLong();
+    private long startTime;
+
+    protected static final DateFormat sdf = new SimpleDateFormat("yyyy/MM/dd HH:mm:ss");
+
+    protected YELPBaseIndexer(String dir, Similarity similarity, YELPIndexerOptions options) throws IOException {
+        this.options = options;
+        this.schema = options.getSchema();
+        this.shardField = getShardField();
+        int shards = options.getShards();
+        if (shards > 1 && shardField == null) {
+            throw new IllegalArgumentException(getClass().getSimpleName() + " cannot be sharded");
+        }
+
+        writers = new IndexWriter[shards];
+        for (int i = 0; i < shards; i++) {
+            //specify the directory to store the Lucene index, one under dir per shard
+            Directory indexDir = FSDirectory.open(Paths.get(shards == 1 ? dir : shardDir(dir, i)));
+
+            //specify the analyzer used in indexing
+            Analyzer analyzer = new StandardAnalyzer();
+            IndexWriterConfig cfg = options.newIndexWriterConfig(analyzer, similarity);
+
+            //create the IndexWriter
+            writers[i] = new IndexWriter(indexDir, cfg);
+        }
+        writer = writers[0];
+
+        //only the fields the indexer needs are extracted from each line
+        extractor = new YELPJsonFieldExtractor(getFields());
+    }
+
+    //the top level JSON fields read by getDocument(YELPRecord), in the order it addresses them.
+    //called from the constructor, so return a constant
+    protected abstract String[] getFields();
+
+    //position in getFields() of the field that identifies a record (user_id, review_id, business_id)
+    protected abstract int getKeyField();
+
+    //the field whose value picks the shard of a document with YELPIndexerOptions.setShards,
+    //null if the index cannot be sharded. called from the constructor, so return a constant
+    protected String getShardField() {
+        return null;
+    }
+
+    //the directory of one shard of a sharded index in dir
+    public static String shardDir(String dir, int shard) {
+        return Paths.get(dir, "shard-" + shard).toString();
+    }
+
+    //a reader on the last commit of the index in dir, all shards as one reader in shard order when it is sharded
+    public static IndexReader openIndex(String dir) throws IOException {
+        if (!Files.isDirectory(Paths.get(shardDir(dir, 0)))) {
+            return DirectoryReader.open(FSDirectory.open(Paths.get(dir)));
+        }
+        List<IndexReader> shards = new ArrayList<IndexReader>();
+        for (int i = 0; Files.isDirectory(Paths.get(shardDir(dir, i))); i++) {
+            shards.add(DirectoryReader.open(FSDirectory.open(Paths.get(shardDir(dir, i)))));
+        }
+        return new MultiReader(shards.toArray(new IndexReader[shards.size()]));
+    }
+
+    //the shard of a document by the value of its shard field, the same on every run
+    public static int shardOf(String value, int shards) {
+        return (value.hashCode() & 0x7fffffff) % shards;
+    }
+
+    //create a document from the extracted fields of one record.
+    //called concurrently from the pipeline workers, so implementations must not keep per-line state
+    protected abstract Document getDocument(YELPRecord record) throws Exception;
+
+    //parse the JSON line in buf[start, end) into a document, record is reused between lines.
+    //returns null when an incremental run finds the record already indexed with the same content
+    Document parseLine(ByteBuffer buf, int start, int end, YELPJsonRecord record) throws Exception {
+        extractor.extract(buf, start, end, record);
+        return toDocument(record, record.checksum());
+    }
+
+    //the document of a record whose source line has the checksum crc, null when unchanged
+    Document toDocument(YELPRecord record, long crc) throws Exception {
+        String key = record.getString(getKeyField());
+        if (changes != null && changes.unchanged(key, crc)) {
+            return null;
+        }
+
+        Document doc = getDocument(record);
+        schema.add(doc, KEY_FIELD, key);
+        schema.add(doc, RECORD_CRC_FIELD, crc);
+        return doc;
+    }
+
+    //add the document to its shard, or replace the one with the same key in incremental mode
+    void write(Document doc) throws IOException {
+        IndexWriter target = writers.length == 1 ? writer : writers[shardOf(doc.get(shardField), writers.length)];
+        if (options.isIncremental()) {
+            Term key = new Term(KEY_FIELD, doc.get(KEY_FIELD));
+            target.updateDocument(key, doc);
+            if (previousShards != null) {
+                //the old version is in another shard if its shard field changed
+                int previous = previousShards.shardOf(key.text());
+                if (previous >= 0 && writers[previous] != target) {
+                    writers[previous].deleteDocuments(key);
+                }
+            }
+        } else {
+            target.addDocument(doc);
+        }
+        written.incrementAndGet();
+        YELPMetrics metrics = options.getMetrics();
+        if (metrics != null) {
+            metrics.increment("index.docs");
+        }
+    }
+
+    //count a record an incremental run found unchanged
+    void skipped() {
+        YELPMetrics metrics = options.getMetrics();
+        if (metrics != null) {
+            metrics.increment("index.skipped");
+        }
+    }
+
+    //count a line that could not be parsed or written, by reason
+    void failed(Exception e) {
+        failedLines.incrementAndGet();
+        YELPMetrics metrics = options.getMetrics();
+        if (metrics != null) {
+            metrics.increment("index.failed");
+            metrics.increment("index.failed." + e.getClass().getSimpleName());
+        }
+    }
+
+    //documents written per second so far in this run, also set as the index.docs_per_sec gauge
+    double docsPerSecond() {
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        double rate = seconds > 0 ? written.get() / seconds : 0;
+        YELPMetrics metrics = options.getMetrics();
+        if (metrics != null) {
+            metrics.setGauge("index.docs_per_sec", Math.round(rate));
+        }
+        return rate;
+    }
+
+    //commit every shard with a checkpoint at offset: every line of fileName before it is in the index.
+    //called every YELPIndexerOptions.getCommitInterval() while a run writes, concurrently with write(doc)
+    synchronized void checkpoint(String fileName, long offset) throws IOException {
+        long start = System.nanoTime();
+        YELPSourceCheckpoint checkpoint = source(fileName).at(offset);
+        for (IndexWriter w : writers) {
+            checkpoint.save(w);
+        }
+        eachShard(COMMIT);
+        long ms = (System.nanoTime() - start) / 1000000;
+        YELPMetrics metrics = options.getMetrics();
+        if (metrics != null) {
+            metrics.increment("index.commits");
+            metrics.record("index.commit_ms", ms);
+        }
+        System.out.println("Committed " + fileName + " up to byte " + offset + " in " + ms + " ms "
+                + sdf.format(new Date()));
+    }
+
+    private synchronized YELPSourceCheckpoint.Tracker source(String fileName) {
+        if (source == null || !source.getFileName().equals(fileName)) {
+            source = new YELPSourceCheckpoint.Tracker(fileName);
+        }
+        return source;
+    }
+
+    //ms between checkpoint commits, 0 to commit only at the end
+    long commitInterval() {
+        return options.getCommitInterval();
+    }
+
+    //called once every line was written, before the index is committed
+    protected void finishIndexing() throws IOException {
+    }
+
+    protected boolean isIncremental() {
+        return options.isIncremental();
+    }
+
+    YELPJsonRecord newRecord() {
+        return extractor.newRecord();
+    }
+
+    //a record of snapshot holding the fields of getFields()
+    YELPSnapshotRecord newRecord(YELPSnapshotReader snapshot) {
+        return snapshot.newRecord(getFields());
+    }
+
+    //index the dump on the calling thread, one line at a time
+    public void indexYelps(String fileName) throws Exception {
+
+        System.out.println("Start indexing "+fileName+" "+sdf.format(new Date()));
+        long length = new File(fileName).length();
+        long offset = begin(fileName);
+
+        //read a JSON file
+        YELPLineReader in;
+        try {
+            FileInputStream file = new FileInputStream(fileName);
+            in = new YELPLineReader(file);
+            file.getChannel().position(offset);
+        } catch (IOException e) {
+            abort();
+            throw e;
+        }
+        YELPJsonRecord record = newRecord();
+        long skipped = 0;
+        long commitInterval = commitInterval();
+        long nextCommit = System.currentTimeMillis() + commitInterval;
+
+        while (in.next()) {
+            try {
+                //create a document for each JSON record
+                Document doc = parseLine(in.buffer(), in.start(), in.end(), record);
+
+                //index the document
+                if (doc != null) {
+                    write(doc);
+                } else {
+                    skipped++;
+                    skipped();
+                }
+
+            } catch (Exception e) {
+                failed(e);
+                System.out.println("Error at: " + in.lineNumber() + "\t" + in.lineAsString());
+                e.printStackTrace();
+            }
+            if (commitInterval > 0 && System.currentTimeMillis() >= nextCommit) {
+                checkpoint(fileName, offset + in.position());
+                nextCommit = System.currentTimeMillis() + commitInterval;
+            }
+        }
+        //close the file reader
+        in.close();
+        if (skipped > 0) {
+            System.out.println("Unchanged records skipped: " + skipped);
+        }
+        finish(fileName, length);
+    }
+
+    //index the dump with a reader thread feeding numThreads parse/addDocument workers.
+    //queueDepth bounds the number of line batches waiting for a worker.
+    public void indexYelpsParallel(String fileName, int numThreads, int queueDepth) throws Exception {
+
+        System.out.println("Start indexing "+fileName+" with "+numThreads+" threads "+sdf.format(new Date()));
+        long length = new File(fileName).length();
+        long offset = begin(fileName);
+
+        YELPIndexingPipeline pipeline = new YELPIndexingPipeline(this, numThreads, queueDepth);
+        try {
+            pipeline.run(fileName, offset);
+        } catch (Exception e) {
+            abort();
+            throw e;
+        }
+        finish(fileName, length);
+    }
+
+    //index a memory-mapped dump split into numChunks newline aligned chunks, read by numThreads workers.
+    //progress and byte offsets are reported per chunk
+    public void indexYelpsMapped(String fileName, int numThreads, int numChunks) throws Exception {
+
+        System.out.println("Start indexing "+fileName+" in "+numChunks+" mapped chunks with "+numThreads+" threads "+sdf.format(new Date()));
+        long length = new File(fileName).length();
+        long offset = begin(fileName);
+
+        YELPIndexingPipeline pipeline = new YELPIndexingPipeline(this, numThreads, 1);
+        try {
+            pipeline.runMapped(fileName, numChunks, offset);
+        } catch (Exception e) {
+            abort();
+            throw e;
+        }
+        finish(fileName, length);
+    }
+
+    //index a snapshot written by YELPSnapshotWriter, split into numChunks chunks read by numThreads workers.
+    //the fields are already extracted and unescaped, so nothing is parsed. incremental runs still skip
+    //unchanged records, but a snapshot run is never resumed from a checkpoint
+    public void indexSnapshot(String snapshotFile, int numThreads, int numChunks) throws Exception {
+
+        System.out.println("Start indexing "+snapshotFile+" in "+numChunks+" chunks with "+numThreads+" threads "+sdf.format(new Date()));
+        long length = new File(snapshotFile).length();
+        begin(snapshotFile, false);
+
+        YELPIndexingPipeline pipeline = new YELPIndexingPipeline(this, numThreads, 1);
+        try {
+            pipeline.runSnapshot(snapshotFile, numChunks);
+        } catch (Exception e) {
+            abort();
+            throw e;
+        }
+        finish(snapshotFile, length);
+    }
+
+    //the live writer, e.g. for a near-real-time YELPSearcher while indexing runs, the first shard's
+    //when sharded. it is closed when the indexYelps* call returns
+    public IndexWriter getWriter() {
+        return writer;
+    }
+
+    //the live writer of every shard
+    public IndexWriter[] getWriters() {
+        return writers.clone();
+    }
+
+    //returns the byte offset to start reading from: past the last checkpoint if the dump
+    //was only appended to since, otherwise 0 with change detection against the existing index
+    private long begin(String fileName) throws IOException {
+        return begin(fileName, true);
+    }
+
+    //same as begin(fileName), always from the start of the file when it is not resumable
+    private long begin(String fileName, boolean resumable) throws IOException {
+        written.set(0);
+        failedLines.set(0);
+        startTime = System.nanoTime();
+        if (!options.isIncremental()) {
+            return 0;
+        }
+        long offset = resumable ? resumeOffset(fileName) : 0;
+        if (offset > 0) {
+            System.out.println("Resuming " + fileName + " at byte " + offset + ", earlier records are unchanged");
+        } else if (maxDoc() > 0) {
+            System.out.println("Rescanning " + fileName + ", only new or changed records are written");
+            changes = new YELPChangeDetector(writers);
+        }
+        if (writers.length > 1 && maxDoc() > 0) {
+            previousShards = changes != null ? changes : new YELPChangeDetector(writers);
+        }
+        return offset;
+    }
+
+    //the smallest checkpoint of all shards, 0 if one has none. shards commit independently, a crash
+    //between their commits leaves some of them at the previous checkpoint
+    private long resumeOffset(String fileName) throws IOException {
+        long offset = Long.MAX_VALUE;
+        for (IndexWriter w : writers) {
+            YELPSourceCheckpoint checkpoint = YELPSourceCheckpoint.load(w);
+            if (checkpoint == null) {
+                return 0;
+            }
+            offset = Math.min(offset, checkpoint.resumeOffset(fileName));
+        }
+        return offset;
+    }
+
+    private void finish(String fileName, long length) throws IOException {
+        closeDetectors();
+        finishIndexing();
+        if (options.isDeferMerges()) {
+            //merges were held back while writing, merge the flushed segments now
+            eachShard(new ShardTask() {
+                @Override
+                public void run(IndexWriter w) throws IOException {
+                    w.getConfig().setMergePolicy(options.newMergePolicy());
+                    if (options.getForceMergeSegments() == 0) {
+                        w.maybeMerge();
+                    }
+                }
+            });
+        }
+        if (options.getForceMergeSegments() > 0) {
+            System.out.println("Merging down to " + options.getForceMergeSegments() + " segments " + sdf.format(new Date()));
+            eachShard(new ShardTask() {
+                @Override
+                public void run(IndexWriter w) throws IOException {
+                    w.forceMerge(options.getForceMergeSegments());
+                }
+            });
+        }
+        //the next incremental run can start where this one stopped, every shard holds the same checkpoint.
+        //if only some shards commit it, the next run resumes from the others' (see resumeOffset)
+        YELPSourceCheckpoint checkpoint = source(fileName).at(length);
+        for (IndexWriter w : writers) {
+            checkpoint.save(w);
+        }
+        //commit first so replaced documents are no longer counted
+        eachShard(COMMIT);
+
+        System.out.println("Index completed at " + sdf.format(new Date()) + " ("
+                + String.format("%.0f", docsPerSecond()) + " docs/sec)");
+        System.out.println("Total number of documents indexed: " + numDocs()
+                + (writers.length > 1 ? " in " + writers.length + " shards" : ""));
+        if (failedLines.get() > 0) {
+            System.out.println("Lines that could not be indexed: " + failedLines.get());
+        }
+
+        //close the index writer, after the merges it still runs
+        eachShard(CLOSE);
+    }
+
+    private void closeDetectors() throws IOException {
+        if (previousShards != null && previousShards != changes) {
+            previousShards.close();
+        }
+        previousShards = null;
+        if (changes != null) {
+            changes.close();
+            changes = null;
+        }
+    }
+
+    //drop what a failed run wrote since the last commit and close the writers
+    private void abort() throws IOException {
+        closeDetectors();
+        eachShard(ROLLBACK);
+    }
+
+    private long maxDoc() {
+        long maxDoc = 0;
+        for (IndexWriter w : writers) {
+            maxDoc += w.maxDoc();
+        }
+        return maxDoc;
+    }
+
+    private long numDocs() {
+        long numDocs = 0;
+        for (IndexWriter w : writers) {
+            numDocs += w.numDocs();
+        }
+        return numDocs;
+    }
+
+    //something done to one shard's writer
+    private interface ShardTask {
+        void run(IndexWriter w) throws IOException;
+    }
+
+    private static final ShardTask COMMIT = new ShardTask() {
+        @Override
+        public void run(IndexWriter w) throws IOException {
+            w.commit();
+        }
+    };
+
+    private static final ShardTask CLOSE = new ShardTask() {
+        @Override
+        public void run(IndexWriter w) throws IOException {
+            w.close();
+        }
+    };
+
+    private static final ShardTask ROLLBACK = new ShardTask() {
+        @Override
+        public void run(IndexWriter w) throws IOException {
+            w.rollback();
+        }
+    };
+
+    //run task on every writer, the shards of a sharded index each on their own thread
+    private void eachShard(final ShardTask task) throws IOException {
+        if (writers.length == 1) {
+            task.run(writer);
+            return;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(writers.length);
+        try {
+            List<Future<Void>> done = new ArrayList<Future<Void>>();
+            for (final IndexWriter w : writers) {
+                done.add(pool.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException {
+                        task.run(w);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> f : done) {
+                f.get();
+            }
+        } catch (InterruptedException e) {
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package Indexer;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.MultiReader;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+
+//looks records up in the index as it was when an incremental run started, to tell whether
+//a record is already indexed with the same content (same CRC of its JSON line).
+//thread-safe: every lookup uses its own enums and doc values iterators
+public class YELPChangeDetector implements Closeable {
+    private final IndexReader reader;
+    //the reader of each shard, reader itself when the index is not sharded
+    private final IndexReader[] shards;
+
+    //the writers of all shards of a sharded index, a record may have moved between them
+    public YELPChangeDetector(IndexWriter... writers) throws IOException {
+        if (writers.length == 1) {
+            reader = DirectoryReader.open(writers[0]);
+            shards = new IndexReader[]{reader};
+        } else {
+            DirectoryReader[] open = new DirectoryReader[writers.length];
+            for (int i = 0; i < writers.length; i++) {
+                open[i] = DirectoryReader.open(writers[i]);
+            }
+            reader = new MultiReader(open);
+            shards = open;
+        }
+    }
+
+    //true if a live document with this key was indexed from a line with this checksum
+    public boolean unchanged(String key, long crc) throws IOException {
+        if (reader.numDocs() == 0) {
+            return false;
+        }
+        BytesRef term = new BytesRef(key);
+        for (LeafReaderContext ctx : reader.leaves()) {
+            LeafReader leaf = ctx.reader();
+            int doc = liveDoc(leaf, term);
+            if (doc >= 0) {
+                NumericDocValues crcs = leaf.getNumericDocValues(YELPBaseIndexer.RECORD_CRC_FIELD);
+                return crcs != null && crcs.advanceExact(doc) && crcs.longValue() == crc;
+            }
+        }
+        return false;
+    }
+
+    //the shard holding a live document with this key, -1 if none does
+    public int shardOf(String key) throws IOException {
+        BytesRef term = new BytesRef(key);
+        for (int i = 0; i < shards.length; i++) {
+            for (LeafReaderContext ctx : shards[i].leaves()) {
+                if (liveDoc(ctx.reader(), term) >= 0) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    //the live document of leaf with this key, -1 if there is none
+    private static int liveDoc(LeafReader leaf, BytesRef key) throws IOException {
+        Terms terms = leaf.terms(YELPBaseIndexer.KEY_FIELD);
+        if (terms == null) {
+            return -1;
+        }
+        TermsEnum te = terms.iterator();
+        if (!te.seekExact(key)) {
+            return -1;
+        }
+        Bits live = leaf.getLiveDocs();
+        PostingsEnum postings = te.postings(null, PostingsEnum.NONE);
+        int doc;
+        while ((doc = postings.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+            if (live == null || live.get(doc)) {
+                return doc;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,51 @@
+package Indexer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+//big-endian output that knows how many bytes it wrote, beyond what an int can count
+class YELPCountingOutput {
+    private final OutputStream out;
+    long position = 0;
+
+    YELPCountingOutput(OutputStream out) {
+        this.out = out;
+    }
+
+    void write(byte[] b) throws IOException {
+        out.write(b);
+        position += b.length;
+    }
+
+    void write(byte[] b, int offset, int length) throws IOException {
+        out.write(b, offset, length);
+        position += length;
+    }
+
+    void writeInt(int v) throws IOException {
+        out.write(v >>> 24);
+        out.write(v >>> 16);
+        out.write(v >>> 8);
+        out.write(v);
+        position += 4;
+    }
+
+    void writeLong(long v) throws IOException {
+        writeInt((int) (v >>> 32));
+        writeInt((int) v);
+    }
+
+    void writeVInt(int v) throws IOException {
+        while ((v & ~0x7F) != 0) {
+            out.write((v & 0x7F) | 0x80);
+            v >>>= 7;
+            position++;
+        }
+        out.write(v);
+        position++;
+    }
+
+    void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,198 @@
+package Indexer;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.DoubleDocValuesField;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.LatLonDocValuesField;
+import org.apache.lucene.document.LatLonPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.util.BytesRef;
+
+//how every field of the Yelp indexes is indexed, stored and given doc values, declared in one place.
+//indexers add values through the schema instead of building fields themselves, so changing a field's
+//postings, storage or term vectors is a change here (or a modified copy set in YELPIndexerOptions)
+public class YELPFieldSchema {
+    public enum Kind {
+        //analyzed text
+        TEXT,
+        //one exact term, e.g. an id
+        KEYWORD,
+        //stored for display, not searchable
+        STORED,
+        //long doc values
+        LONG,
+        //double doc values
+        DOUBLE,
+        //latitude/longitude point, with doc values for distance sorting
+        GEO
+    }
+
+    private final Map<String, Kind> kinds = new HashMap<String, Kind>();
+    private final Map<String, FieldType> types = new HashMap<String, FieldType>();
+    private final Map<String, Boolean> docValues = new HashMap<String, Boolean>();
+
+    //the fields of the user, review and location indexes.
+    //no term vectors anywhere: nothing reads them and they roughly doubled index size and indexing time
+    public static YELPFieldSchema yelp() {
+        return new YELPFieldSchema()
+                .keyword(YELPBaseIndexer.USER_ID_FIELD, true, true)
+                .keyword(YELPBaseIndexer.BUSINESS_ID_FIELD, true, true)
+                .keyword(YELPBaseIndexer.REVIEW_ID_FIELD, true, true)
+                .keyword(YELPBaseIndexer.KEY_FIELD, false, false)
+                //names are short, frequencies are enough
+                .text("name", true, IndexOptions.DOCS_AND_FREQS)
+                //positions for phrase queries over reviews
+                .text("review", true, IndexOptions.DOCS_AND_FREQS_AND_POSITIONS)
+                .stored("friends")
+                //business names are searched by the store locator
+                .text(YELPLocationIndexer.NAME_FIELD, true, IndexOptions.DOCS_AND_FREQS)
+                .keyword(YELPLocationIndexer.CATEGORIES_FIELD, false, false)
+                .number(YELPBaseIndexer.RECORD_CRC_FIELD, Kind.LONG)
+                .number("review_count", Kind.LONG)
+                .number("useful", Kind.LONG)
+                .number("star", Kind.DOUBLE)
+                //ranking features of reviews, see YELPRanking
+                .number(YELPReviewIndexer.DATE_FIELD, Kind.LONG)
+                .number(YELPReviewIndexer.REVIEWER_WEIGHT_FIELD, Kind.DOUBLE)
+                .geo(YELPLocationIndexer.GEO_FIELD)
+                //aggregated review stats, see YELPStatsAggregator
+                .keyword(YELPStatsAggregator.ENTITY_FIELD, false, false)
+                .number(YELPStatsAggregator.AVG_STARS_FIELD, Kind.DOUBLE)
+                .number(YELPStatsAggregator.starsField(1), Kind.LONG)
+                .number(YELPStatsAggregator.starsField(2), Kind.LONG)
+                .number(YELPStatsAggregator.starsField(3), Kind.LONG)
+                .number(YELPStatsAggregator.starsField(4), Kind.LONG)
+                .number(YELPStatsAggregator.starsField(5), Kind.LONG);
+    }
+
+    //analyzed text indexed with options, norms on
+    public YELPFieldSchema text(String name, boolean stored, IndexOptions options) {
+        FieldType type = new FieldType();
+        type.setTokenized(true);
+        type.setStored(stored);
+        type.setIndexOptions(options);
+        return declare(name, Kind.TEXT, type, false);
+    }
+
+    //a single untokenized term without norms or frequencies, optionally stored and kept as sorted doc values
+    public YELPFieldSchema keyword(String name, boolean stored, boolean sortedDocValues) {
+        FieldType type = new FieldType();
+        type.setTokenized(false);
+        type.setOmitNorms(true);
+        type.setStored(stored);
+        type.setIndexOptions(IndexOptions.DOCS);
+        return declare(name, Kind.KEYWORD, type, sortedDocValues);
+    }
+
+    public YELPFieldSchema stored(String name) {
+        FieldType type = new FieldType();
+        type.setStored(true);
+        return declare(name, Kind.STORED, type, false);
+    }
+
+    //numeric doc values, kind is LONG or DOUBLE
+    public YELPFieldSchema number(String name, Kind kind) {
+        if (kind != Kind.LONG && kind != Kind.DOUBLE) {
+            throw new IllegalArgumentException("not a numeric kind: " + kind);
+        }
+        return declare(name, kind, null, true);
+    }
+
+    public YELPFieldSchema geo(String name) {
+        return declare(name, Kind.GEO, null, true);
+    }
+
+    //term vectors for an indexed text or keyword field, with positions and offsets when the postings have them
+    public YELPFieldSchema setTermVectors(String name, boolean termVectors) {
+        FieldType type = type(name, Kind.TEXT, Kind.KEYWORD);
+        type.setStoreTermVectors(termVectors);
+        boolean positions = type.indexOptions().compareTo(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS) >= 0;
+        type.setStoreTermVectorPositions(termVectors && positions);
+        type.setStoreTermVectorOffsets(termVectors && type.indexOptions() == IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS);
+        return this;
+    }
+
+    public Kind getKind(String name) {
+        Kind kind = kinds.get(name);
+        if (kind == null) {
+            throw new IllegalArgumentException("field not in schema: " + name);
+        }
+        return kind;
+    }
+
+    //the field type of a TEXT, KEYWORD or STORED field, null for the others
+    public FieldType getFieldType(String name) {
+        getKind(name);
+        return types.get(name);
+    }
+
+    public boolean hasDocValues(String name) {
+        getKind(name);
+        return docValues.get(name);
+    }
+
+    //add a TEXT, KEYWORD or STORED value
+    public void add(Document doc, String name, String value) {
+        FieldType type = type(name, Kind.TEXT, Kind.KEYWORD, Kind.STORED);
+        doc.add(new Field(name, value, type));
+        if (docValues.get(name)) {
+            doc.add(new SortedDocValuesField(name, new BytesRef(value)));
+        }
+    }
+
+    //add a LONG value
+    public void add(Document doc, String name, long value) {
+        numberKind(name, Kind.LONG);
+        doc.add(new NumericDocValuesField(name, value));
+    }
+
+    //add a DOUBLE value
+    public void add(Document doc, String name, double value) {
+        numberKind(name, Kind.DOUBLE);
+        doc.add(new DoubleDocValuesField(name, value));
+    }
+
+    //add a GEO point
+    public void addPoint(Document doc, String name, double latitude, double longitude) {
+        if (getKind(name) != Kind.GEO) {
+            throw new IllegalArgumentException(name + " is " + getKind(name) + ", not GEO");
+        }
+        doc.add(new LatLonPoint(name, latitude, longitude));
+        if (docValues.get(name)) {
+            doc.add(new LatLonDocValuesField(name, latitude, longitude));
+        }
+    }
+
+    private YELPFieldSchema declare(String name, Kind kind, FieldType type, boolean hasDocValues) {
+        kinds.put(name, kind);
+        if (type != null) {
+            types.put(name, type);
+        } else {
+            types.remove(name);
+        }
+        docValues.put(name, hasDocValues);
+        return this;
+    }
+
+    private FieldType type(String name, Kind... allowed) {
+        Kind kind = getKind(name);
+        for (Kind k : allowed) {
+            if (k == kind) {
+                return types.get(name);
+            }
+        }
+        throw new IllegalArgumentException(name + " is a " + kind + " field");
+    }
+
+    private void numberKind(String name, Kind expected) {
+        if (getKind(name) != expected) {
+            throw new IllegalArgumentException(name + " is " + getKind(name) + ", not " + expected);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package Indexer;
+
+import Metrics.YELPMetrics;
+
+import org.apache.lucene.util.InfoStream;
+
+//listens to the writer's per-thread flush messages only and records each segment flush's duration
+//into metrics, IndexWriter has no other hook that sees flushes
+class YELPFlushTimeInfoStream extends InfoStream {
+    private static final String COMPONENT = "DWPT";
+    private static final String PREFIX = "flush time ";
+
+    private final YELPMetrics metrics;
+
+    YELPFlushTimeInfoStream(YELPMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void message(String component, String message) {
+        //"flush time 12.345 msec"
+        if (COMPONENT.equals(component) && message.startsWith(PREFIX)) {
+            int end = message.indexOf(' ', PREFIX.length());
+            try {
+                double ms = Double.parseDouble(message.substring(PREFIX.length(), end < 0 ? message.length() : end));
+                metrics.record("index.flush_ms", (long) ms);
+                metrics.increment("index.flushes");
+            } catch (NumberFormatException e) {
+                //another message
+            }
+        }
+    }
+
+    @Override
+    public boolean isEnabled(String component) {
+        return COMPONENT.equals(component);
+    }
+
+    @Override
+    public void close() {
+    }
+}
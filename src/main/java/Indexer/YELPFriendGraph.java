@@ -0,0 +1,277 @@
+package Indexer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+//read-only, memory-mapped friend graph written by YELPFriendGraphWriter.
+//users are dense ordinals in user id order, every user has two adjacency lists: the friends listed in
+//its own record and the users whose records list it. friendsOf is the union of both, so a friendship
+//counts even when only one side of the dump records it. lists are sorted and stored as varint gaps,
+//lookups decode one or two lists and never touch the heap beyond the returned arrays.
+//safe for concurrent use
+public class YELPFriendGraph implements Closeable {
+    static final int MAGIC = 0x59464731; //"YFG1"
+    //magic, numUsers, then the start of each section and the end of the last one
+    static final int FOOTER_BYTES = 4 + 4 + 7 * 8;
+
+    private final RandomAccessFile file;
+    private final int numUsers;
+    private final IntTable idOffsets;
+    private final ByteBuffer idBytes;
+    private final LongBuffer outOffsets;
+    private final ByteBuffer outLists;
+    private final LongBuffer inOffsets;
+    private final ByteBuffer inLists;
+
+    private YELPFriendGraph(RandomAccessFile file) throws IOException {
+        this.file = file;
+        FileChannel channel = file.getChannel();
+        long length = channel.size();
+        if (length < FOOTER_BYTES) {
+            throw new IOException("not a friend graph file: too short");
+        }
+        ByteBuffer footer = ByteBuffer.allocate(FOOTER_BYTES);
+        channel.read(footer, length - FOOTER_BYTES);
+        footer.flip();
+        if (footer.getInt() != MAGIC) {
+            throw new IOException("not a friend graph file: bad magic");
+        }
+        numUsers = footer.getInt();
+        long[] sections = new long[7];
+        for (int i = 0; i < sections.length; i++) {
+            sections[i] = footer.getLong();
+        }
+        idOffsets = new IntTable(map(channel, sections[0], sections[1]));
+        idBytes = map(channel, sections[1], sections[2]);
+        outOffsets = map(channel, sections[2], sections[3]).asLongBuffer();
+        outLists = map(channel, sections[3], sections[4]);
+        inOffsets = map(channel, sections[4], sections[5]).asLongBuffer();
+        inLists = map(channel, sections[5], sections[6]);
+    }
+
+    public static YELPFriendGraph open(String fileName) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(fileName, "r");
+        try {
+            return new YELPFriendGraph(file);
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    //number of users, including friends that have no record of their own
+    public int size() {
+        return numUsers;
+    }
+
+    //the ordinal of userId, -1 when the graph does not know it
+    public int ordinal(String userId) {
+        byte[] key = userId.getBytes(StandardCharsets.UTF_8);
+        int lo = 0;
+        int hi = numUsers - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = compareId(mid, key);
+            if (cmp < 0) {
+                lo = mid + 1;
+            } else if (cmp > 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    public String userId(int ordinal) {
+        int start = idOffsets.get(ordinal);
+        int end = idOffsets.get(ordinal + 1);
+        byte[] id = new byte[end - start];
+        for (int i = 0; i < id.length; i++) {
+            id[i] = idBytes.get(start + i);
+        }
+        return new String(id, StandardCharsets.UTF_8);
+    }
+
+    //friends of user in ordinal order
+    public int[] friendsOf(int user) {
+        return union(decode(outOffsets, outLists, user), decode(inOffsets, inLists, user));
+    }
+
+    public String[] friendsOf(String userId) {
+        int user = ordinal(userId);
+        return user < 0 ? new String[0] : userIds(friendsOf(user));
+    }
+
+    //the friends a and b have in common
+    public int[] mutualFriends(int a, int b) {
+        return intersect(friendsOf(a), friendsOf(b));
+    }
+
+    public String[] mutualFriends(String a, String b) {
+        int userA = ordinal(a);
+        int userB = ordinal(b);
+        return userA < 0 || userB < 0 ? new String[0] : userIds(mutualFriends(userA, userB));
+    }
+
+    //friends of friends that are neither user nor one of its friends
+    public int[] twoHop(int user) {
+        int[] friends = friendsOf(user);
+        int[] candidates = new int[0];
+        int size = 0;
+        for (int friend : friends) {
+            int[] next = friendsOf(friend);
+            if (size + next.length > candidates.length) {
+                candidates = Arrays.copyOf(candidates, Math.max(size + next.length, 2 * candidates.length));
+            }
+            System.arraycopy(next, 0, candidates, size, next.length);
+            size += next.length;
+        }
+        Arrays.sort(candidates, 0, size);
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            int c = candidates[i];
+            if ((n > 0 && candidates[n - 1] == c) || c == user || Arrays.binarySearch(friends, c) >= 0) {
+                continue;
+            }
+            candidates[n++] = c;
+        }
+        return Arrays.copyOf(candidates, n);
+    }
+
+    public String[] twoHop(String userId) {
+        int user = ordinal(userId);
+        return user < 0 ? new String[0] : userIds(twoHop(user));
+    }
+
+    //the friends listed in user's own record only
+    int[] listedFriends(int user) {
+        return decode(outOffsets, outLists, user);
+    }
+
+    public String[] userIds(int[] ordinals) {
+        String[] ids = new String[ordinals.length];
+        for (int i = 0; i < ordinals.length; i++) {
+            ids[i] = userId(ordinals[i]);
+        }
+        return ids;
+    }
+
+    @Override
+    public void close() throws IOException {
+        //the mappings stay valid until they are garbage collected
+        file.close();
+    }
+
+    private int compareId(int ordinal, byte[] key) {
+        int start = idOffsets.get(ordinal);
+        int length = idOffsets.get(ordinal + 1) - start;
+        int n = Math.min(length, key.length);
+        for (int i = 0; i < n; i++) {
+            int cmp = (idBytes.get(start + i) & 0xFF) - (key[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return length - key.length;
+    }
+
+    //a list is its length followed by the gaps between consecutive ordinals, all as varints
+    private static int[] decode(LongBuffer offsets, ByteBuffer lists, int user) {
+        int pos = (int) offsets.get(user);
+        int count = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = lists.get(pos++);
+            count |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+
+        int[] result = new int[count];
+        int value = 0;
+        for (int i = 0; i < count; i++) {
+            int gap = 0;
+            shift = 0;
+            do {
+                b = lists.get(pos++);
+                gap |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            value += gap;
+            result[i] = value;
+        }
+        return result;
+    }
+
+    private static int[] union(int[] a, int[] b) {
+        if (b.length == 0) {
+            return a;
+        }
+        if (a.length == 0) {
+            return b;
+        }
+        int[] result = new int[a.length + b.length];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                result[n++] = a[i++];
+            } else if (a[i] > b[j]) {
+                result[n++] = b[j++];
+            } else {
+                result[n++] = a[i++];
+                j++;
+            }
+        }
+        while (i < a.length) {
+            result[n++] = a[i++];
+        }
+        while (j < b.length) {
+            result[n++] = b[j++];
+        }
+        return n == result.length ? result : Arrays.copyOf(result, n);
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[n++] = a[i++];
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, long start, long end) throws IOException {
+        if (end - start > Integer.MAX_VALUE) {
+            throw new IOException("friend graph section of " + (end - start) + " bytes is too large to map");
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+    }
+
+    //absolute int reads of a mapped section
+    private static class IntTable {
+        private final ByteBuffer buf;
+
+        IntTable(ByteBuffer buf) {
+            this.buf = buf;
+        }
+
+        int get(int i) {
+            return buf.getInt(i << 2);
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package Indexer;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.document.DocumentStoredFieldVisitor;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.util.Bits;
+
+//collects the friend lists of user records while they are indexed and writes them as a YELPFriendGraph.
+//records may arrive from several pipeline workers at once. a later record for the same user replaces
+//its earlier friend list, so an incremental run seeds the writer with the users already in the index
+//and lets the upserted records override them
+public class YELPFriendGraphWriter {
+    //stored friends value of a user document, see YELPIndexer
+    static final String FRIENDS_FIELD = "friends";
+
+    private final Map<String, Integer> ordinals = new HashMap<String, Integer>();
+    private final List<String> ids = new ArrayList<String>();
+    //friends listed by each user's record, by arrival ordinal, null for users without a record
+    private final List<int[]> listed = new ArrayList<int[]>();
+
+    //record the friends in one user record. friends is the record's friends value: ids separated by
+    //commas and spaces, or a JSON array of ids, "None" when the user has none
+    public void addUser(String userId, String friends) {
+        List<String> friendIds = parseFriends(friends);
+        synchronized (this) {
+            int user = ordinal(userId);
+            int[] list = new int[friendIds.size()];
+            for (int i = 0; i < list.length; i++) {
+                list[i] = ordinal(friendIds.get(i));
+            }
+            listed.set(user, list);
+        }
+    }
+
+    //take over the friend lists of a previously written graph
+    public void addAll(YELPFriendGraph previous) {
+        for (int user = 0; user < previous.size(); user++) {
+            int[] friends = previous.listedFriends(user);
+            if (friends.length == 0) {
+                continue;
+            }
+            synchronized (this) {
+                int ordinal = ordinal(previous.userId(user));
+                int[] list = new int[friends.length];
+                for (int i = 0; i < list.length; i++) {
+                    list[i] = ordinal(previous.userId(friends[i]));
+                }
+                listed.set(ordinal, list);
+            }
+        }
+    }
+
+    //take over the stored friends of every user in a user index, e.g. the commits of a run that crashed
+    //before it wrote its graph
+    public void addUsers(IndexReader users) throws IOException {
+        for (LeafReaderContext context : users.leaves()) {
+            LeafReader leaf = context.reader();
+            Bits live = leaf.getLiveDocs();
+            for (int doc = 0; doc < leaf.maxDoc(); doc++) {
+                if (live != null && !live.get(doc)) {
+                    continue;
+                }
+                DocumentStoredFieldVisitor visitor = new DocumentStoredFieldVisitor(
+                        YELPBaseIndexer.USER_ID_FIELD, FRIENDS_FIELD);
+                leaf.document(doc, visitor);
+                String userId = visitor.getDocument().get(YELPBaseIndexer.USER_ID_FIELD);
+                String friends = visitor.getDocument().get(FRIENDS_FIELD);
+                if (userId != null && friends != null) {
+                    addUser(userId, friends);
+                }
+            }
+        }
+    }
+
+    //write the graph to fileName, replacing it only once the new file is complete
+    public synchronized void write(String fileName) throws IOException {
+        int n = ids.size();
+
+        //final ordinals follow the byte order of the ids, so lookups can binary search them
+        final byte[][] idBytes = new byte[n][];
+        Integer[] byId = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            idBytes[i] = ids.get(i).getBytes(StandardCharsets.UTF_8);
+            byId[i] = i;
+        }
+        Arrays.sort(byId, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return compareBytes(idBytes[a], idBytes[b]);
+            }
+        });
+        int[] remap = new int[n];
+        for (int i = 0; i < n; i++) {
+            remap[byId[i]] = i;
+        }
+
+        //listed friends in final ordinals, sorted, without duplicates or the user itself
+        int[][] out = new int[n][];
+        int[] inDegree = new int[n];
+        for (int i = 0; i < n; i++) {
+            int user = remap[i];
+            int[] list = listed.get(i);
+            out[user] = list == null ? new int[0] : normalize(list, remap, user);
+            for (int friend : out[user]) {
+                inDegree[friend]++;
+            }
+        }
+        //reverse lists, filled in user order so each comes out sorted
+        int[][] in = new int[n][];
+        for (int i = 0; i < n; i++) {
+            in[i] = new int[inDegree[i]];
+            inDegree[i] = 0;
+        }
+        for (int user = 0; user < n; user++) {
+            for (int friend : out[user]) {
+                in[friend][inDegree[friend]++] = user;
+            }
+        }
+
+        File target = new File(fileName);
+        File tmp = new File(fileName + ".tmp");
+        YELPCountingOutput output = new YELPCountingOutput(new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16));
+        try {
+            long[] sections = new long[7];
+            sections[0] = output.position;
+            int offset = 0;
+            for (int i = 0; i < n; i++) {
+                output.writeInt(offset);
+                offset += idBytes[byId[i]].length;
+            }
+            output.writeInt(offset);
+            sections[1] = output.position;
+            for (int i = 0; i < n; i++) {
+                output.write(idBytes[byId[i]]);
+            }
+            sections[2] = output.position;
+            writeLists(output, out, sections, 2);
+            writeLists(output, in, sections, 4);
+
+            output.writeInt(YELPFriendGraph.MAGIC);
+            output.writeInt(n);
+            for (long section : sections) {
+                output.writeLong(section);
+            }
+        } finally {
+            output.close();
+        }
+        if (target.exists() && !target.delete()) {
+            throw new IOException("cannot replace " + fileName);
+        }
+        if (!tmp.renameTo(target)) {
+            throw new IOException("cannot rename " + tmp + " to " + fileName);
+        }
+        System.out.println("Friend graph: " + n + " users, " + target.length() / (1024 * 1024) + " MB");
+    }
+
+    //offsets section at sections[first], the lists after it, ending at sections[first + 2]
+    private static void writeLists(YELPCountingOutput output, int[][] lists, long[] sections, int first) throws IOException {
+        //offsets go first, so lay the lists out before writing any of them
+        long[] offsets = new long[lists.length + 1];
+        long size = 0;
+        for (int i = 0; i < lists.length; i++) {
+            offsets[i] = size;
+            size += encodedLength(lists[i]);
+        }
+        offsets[lists.length] = size;
+        for (long o : offsets) {
+            output.writeLong(o);
+        }
+        sections[first + 1] = output.position;
+        for (int[] list : lists) {
+            output.writeVInt(list.length);
+            int previous = 0;
+            for (int value : list) {
+                output.writeVInt(value - previous);
+                previous = value;
+            }
+        }
+        sections[first + 2] = output.position;
+    }
+
+    private static long encodedLength(int[] list) {
+        long length = vIntLength(list.length);
+        int previous = 0;
+        for (int value : list) {
+            length += vIntLength(value - previous);
+            previous = value;
+        }
+        return length;
+    }
+
+    private static int vIntLength(int value) {
+        int length = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            length++;
+        }
+        return length;
+    }
+
+    private static int[] normalize(int[] list, int[] remap, int user) {
+        int[] result = new int[list.length];
+        for (int i = 0; i < list.length; i++) {
+            result[i] = remap[list[i]];
+        }
+        Arrays.sort(result);
+        int n = 0;
+        for (int i = 0; i < result.length; i++) {
+            if (result[i] != user && (n == 0 || result[n - 1] != result[i])) {
+                result[n++] = result[i];
+            }
+        }
+        return n == result.length ? result : Arrays.copyOf(result, n);
+    }
+
+    private int ordinal(String userId) {
+        Integer ordinal = ordinals.get(userId);
+        if (ordinal == null) {
+            ordinal = ids.size();
+            ordinals.put(userId, ordinal);
+            ids.add(userId);
+            listed.add(null);
+        }
+        return ordinal;
+    }
+
+    //ids are runs of id characters, everything else separates them
+    static List<String> parseFriends(String friends) {
+        List<String> result = new ArrayList<String>();
+        int start = -1;
+        for (int i = 0; i <= friends.length(); i++) {
+            boolean idChar = i < friends.length() && isIdChar(friends.charAt(i));
+            if (idChar && start < 0) {
+                start = i;
+            } else if (!idChar && start >= 0) {
+                String id = friends.substring(start, i);
+                if (!id.equals("None")) {
+                    result.add(id);
+                }
+                start = -1;
+            }
+        }
+        return result;
+    }
+
+    private static boolean isIdChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-' || c == '_';
+    }
+
+    private static int compareBytes(byte[] a, byte[] b) {
+        int n = Math.min(a.length, b.length);
+        for (int i = 0; i < n; i++) {
+            int cmp = (a[i] & 0xFF) - (b[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return a.length - b.length;
+    }
+}
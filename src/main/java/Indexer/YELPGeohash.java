@@ -0,0 +1,107 @@
+package Indexer;
+
+import java.util.Arrays;
+
+//geohash cells: a base 32 string names a latitude/longitude box, each character splits it 32 ways
+//and cells sharing a prefix are inside the cell of that prefix
+public class YELPGeohash {
+    private static final String BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz";
+
+    private YELPGeohash() {
+    }
+
+    //geohash of length precision of the cell containing the point
+    public static String encode(double lat, double lon, int precision) {
+        double minLat = -90, maxLat = 90, minLon = -180, maxLon = 180;
+        StringBuilder hash = new StringBuilder(precision);
+        boolean even = true;
+        int bits = 0, ch = 0;
+        while (hash.length() < precision) {
+            if (even) {
+                double mid = (minLon + maxLon) / 2;
+                if (lon >= mid) {
+                    ch = (ch << 1) | 1;
+                    minLon = mid;
+                } else {
+                    ch <<= 1;
+                    maxLon = mid;
+                }
+            } else {
+                double mid = (minLat + maxLat) / 2;
+                if (lat >= mid) {
+                    ch = (ch << 1) | 1;
+                    minLat = mid;
+                } else {
+                    ch <<= 1;
+                    maxLat = mid;
+                }
+            }
+            even = !even;
+            if (++bits == 5) {
+                hash.append(BASE32.charAt(ch));
+                bits = 0;
+                ch = 0;
+            }
+        }
+        return hash.toString();
+    }
+
+    //{minLat, maxLat, minLon, maxLon} of a cell
+    public static double[] bounds(String cell) {
+        double minLat = -90, maxLat = 90, minLon = -180, maxLon = 180;
+        boolean even = true;
+        for (int i = 0; i < cell.length(); i++) {
+            int ch = BASE32.indexOf(cell.charAt(i));
+            for (int bit = 4; bit >= 0; bit--) {
+                boolean set = ((ch >> bit) & 1) == 1;
+                if (even) {
+                    double mid = (minLon + maxLon) / 2;
+                    if (set) {
+                        minLon = mid;
+                    } else {
+                        maxLon = mid;
+                    }
+                } else {
+                    double mid = (minLat + maxLat) / 2;
+                    if (set) {
+                        minLat = mid;
+                    } else {
+                        maxLat = mid;
+                    }
+                }
+                even = !even;
+            }
+        }
+        return new double[]{minLat, maxLat, minLon, maxLon};
+    }
+
+    //the cell containing the point and the up to 8 cells around it, of the same precision.
+    //a point near the edge of its cell is closer to some of the neighbors than to most of its own cell
+    public static String[] around(double lat, double lon, int precision) {
+        double[] b = bounds(encode(lat, lon, precision));
+        double height = b[1] - b[0], width = b[3] - b[2];
+        double centerLat = (b[0] + b[1]) / 2, centerLon = (b[2] + b[3]) / 2;
+        String[] cells = new String[9];
+        int n = 0;
+        for (int dy = -1; dy <= 1; dy++) {
+            for (int dx = -1; dx <= 1; dx++) {
+                double y = centerLat + dy * height;
+                if (y < -90 || y > 90) {
+                    continue;
+                }
+                double x = centerLon + dx * width;
+                //across the antimeridian
+                x = x > 180 ? x - 360 : x < -180 ? x + 360 : x;
+                String cell = encode(y, x, precision);
+                boolean seen = false;
+                for (int i = 0; i < n; i++) {
+                    seen |= cells[i].equals(cell);
+                }
+                if (!seen) {
+                    cells[n++] = cell;
+                }
+            }
+        }
+        return n == cells.length ? cells : Arrays.copyOf(cells, n);
+    }
+}
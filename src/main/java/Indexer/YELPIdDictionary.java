@@ -0,0 +1,325 @@
+package Indexer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.SegmentReader;
+import org.apache.lucene.search.ScoreDoc;
+
+//read-only, memory-mapped map between Yelp ids, dense ordinals and doc ids of the user, location and
+//review indexes, written by YELPIdDictionaryWriter. ordinals are in id byte order per entity; an id
+//lookup jumps to the ids sharing its first two bytes and binary searches those. users and businesses
+//also map to the doc ids of their reviews, and every review back to its user and business, so joins
+//across the three indexes ("reviews by friends of X near Y") are int array operations that create
+//no strings. doc ids are those of the commits the dictionary was built from, check isCurrent.
+//safe for concurrent use
+public class YELPIdDictionary implements Closeable {
+    static final int MAGIC = 0x59494431; //"YID1"
+    //5 per entity, then doc to ordinal of users, businesses and reviews and review to user and business
+    static final int SECTIONS = 20;
+    static final int PREFIXES = 1 << 16;
+    //magic, count, maxDoc and fingerprint per entity, then the start of each section and the end of the last one
+    static final int FOOTER_BYTES = 4 + 3 * 16 + (SECTIONS + 1) * 8;
+
+    public enum Entity {
+        //in the user index
+        USER,
+        //in the location index
+        BUSINESS,
+        //in the review index
+        REVIEW
+    }
+
+    private final RandomAccessFile file;
+    private final int[] counts = new int[3];
+    private final int[] maxDocs = new int[3];
+    private final long[] fingerprints = new long[3];
+    private final ByteBuffer[] idBytes = new ByteBuffer[3];
+    private final ByteBuffer[] idOffsets = new ByteBuffer[3];
+    private final ByteBuffer[] prefixes = new ByteBuffer[3];
+    private final ByteBuffer[] ordToDoc = new ByteBuffer[3];
+    private final ByteBuffer[] docToOrd = new ByteBuffer[3];
+    //users and businesses only
+    private final ByteBuffer[] reviewOffsets = new ByteBuffer[2];
+    private final ByteBuffer[] reviewDocs = new ByteBuffer[2];
+    //review doc to user and business ordinal
+    private final ByteBuffer[] reviewTo = new ByteBuffer[2];
+
+    private YELPIdDictionary(RandomAccessFile file) throws IOException {
+        this.file = file;
+        FileChannel channel = file.getChannel();
+        long length = channel.size();
+        if (length < FOOTER_BYTES) {
+            throw new IOException("not an id dictionary file: too short");
+        }
+        ByteBuffer footer = ByteBuffer.allocate(FOOTER_BYTES);
+        channel.read(footer, length - FOOTER_BYTES);
+        footer.flip();
+        if (footer.getInt() != MAGIC) {
+            throw new IOException("not an id dictionary file: bad magic");
+        }
+        for (int e = 0; e < 3; e++) {
+            counts[e] = footer.getInt();
+            maxDocs[e] = footer.getInt();
+            fingerprints[e] = footer.getLong();
+        }
+        long[] sections = new long[SECTIONS + 1];
+        for (int i = 0; i < sections.length; i++) {
+            sections[i] = footer.getLong();
+        }
+        for (int e = 0; e < 3; e++) {
+            int first = 5 * e;
+            idBytes[e] = map(channel, sections[first], sections[first + 1]);
+            idOffsets[e] = map(channel, sections[first + 1], sections[first + 2]);
+            prefixes[e] = map(channel, sections[first + 2], sections[first + 3]);
+            ordToDoc[e] = map(channel, sections[first + 3], sections[first + 4]);
+            if (e < 2) {
+                long docsStart = sections[first + 4] + 4L * (counts[e] + 1);
+                reviewOffsets[e] = map(channel, sections[first + 4], docsStart);
+                reviewDocs[e] = map(channel, docsStart, sections[first + 5]);
+            }
+            docToOrd[e] = map(channel, sections[15 + e], sections[16 + e]);
+        }
+        reviewTo[0] = map(channel, sections[18], sections[19]);
+        reviewTo[1] = map(channel, sections[19], sections[20]);
+    }
+
+    public static YELPIdDictionary open(String fileName) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(fileName, "r");
+        try {
+            return new YELPIdDictionary(file);
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    //number of ids of entity, users and businesses include the ones only known from reviews
+    public int size(Entity entity) {
+        return counts[entity.ordinal()];
+    }
+
+    //true if reader has the documents the dictionary was built from, in the same order: the doc ids of
+    //entity's index are valid on it. false once that index was rewritten, reopened after changes or merged
+    public boolean isCurrent(Entity entity, IndexReader reader) {
+        return reader.maxDoc() == maxDocs[entity.ordinal()] && fingerprint(reader) == fingerprints[entity.ordinal()];
+    }
+
+    //the ordinal of id, -1 when the dictionary does not know it
+    public int ordinal(Entity entity, String id) {
+        int e = entity.ordinal();
+        byte[] key = id.getBytes(StandardCharsets.UTF_8);
+        int prefix = prefix(key, 0, key.length);
+        int lo = prefixes[e].getInt(prefix << 2);
+        int hi = prefixes[e].getInt((prefix + 1) << 2) - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = compareId(e, mid, key);
+            if (cmp < 0) {
+                lo = mid + 1;
+            } else if (cmp > 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    //ordinals of ids in increasing order, unknown ids left out
+    public int[] ordinals(Entity entity, String[] ids) {
+        int[] ords = new int[ids.length];
+        int n = 0;
+        for (String id : ids) {
+            int ord = ordinal(entity, id);
+            if (ord >= 0) {
+                ords[n++] = ord;
+            }
+        }
+        return sortedUnique(ords, n);
+    }
+
+    public String id(Entity entity, int ordinal) {
+        int e = entity.ordinal();
+        int start = idOffsets[e].getInt(ordinal << 2);
+        int end = idOffsets[e].getInt((ordinal + 1) << 2);
+        byte[] id = new byte[end - start];
+        for (int i = 0; i < id.length; i++) {
+            id[i] = idBytes[e].get(start + i);
+        }
+        return new String(id, StandardCharsets.UTF_8);
+    }
+
+    //the document of ordinal in entity's index, -1 for users and businesses only known from reviews
+    public int doc(Entity entity, int ordinal) {
+        return ordToDoc[entity.ordinal()].getInt(ordinal << 2);
+    }
+
+    //the ordinal of a document of entity's index, -1 for deleted documents
+    public int ordinalOfDoc(Entity entity, int doc) {
+        return docToOrd[entity.ordinal()].getInt(doc << 2);
+    }
+
+    //ordinals of the hits of a search on entity's index in increasing order, e.g. businesses near a point
+    public int[] ordinals(Entity entity, ScoreDoc[] hits) {
+        int[] ords = new int[hits.length];
+        int n = 0;
+        for (ScoreDoc hit : hits) {
+            int ord = ordinalOfDoc(entity, hit.doc);
+            if (ord >= 0) {
+                ords[n++] = ord;
+            }
+        }
+        return sortedUnique(ords, n);
+    }
+
+    //review doc ids of a user or business in increasing order
+    public int[] reviews(Entity entity, int ordinal) {
+        int e = reviewEntity(entity);
+        int start = reviewOffsets[e].getInt(ordinal << 2);
+        int end = reviewOffsets[e].getInt((ordinal + 1) << 2);
+        int[] docs = new int[end - start];
+        for (int i = 0; i < docs.length; i++) {
+            docs[i] = reviewDocs[e].getInt((start + i) << 2);
+        }
+        return docs;
+    }
+
+    //review doc ids of any of the users or businesses in increasing order
+    public int[] reviews(Entity entity, int[] ordinals) {
+        int e = reviewEntity(entity);
+        int total = 0;
+        for (int ord : ordinals) {
+            total += reviewCount(e, ord);
+        }
+        int[] docs = new int[total];
+        int n = 0;
+        for (int ord : ordinals) {
+            int start = reviewOffsets[e].getInt(ord << 2);
+            int end = reviewOffsets[e].getInt((ord + 1) << 2);
+            for (int i = start; i < end; i++) {
+                docs[n++] = reviewDocs[e].getInt(i << 2);
+            }
+        }
+        return sortedUnique(docs, n);
+    }
+
+    //user ordinal of a review document
+    public int userOfReview(int reviewDoc) {
+        return reviewTo[0].getInt(reviewDoc << 2);
+    }
+
+    //business ordinal of a review document
+    public int businessOfReview(int reviewDoc) {
+        return reviewTo[1].getInt(reviewDoc << 2);
+    }
+
+    //review doc ids written by any of users about any of businesses, both sorted ordinals, in increasing
+    //order. walks the reviews of whichever side has fewer and checks the other side of each
+    public int[] reviewsBy(int[] users, int[] businesses) {
+        long byUsers = 0;
+        for (int user : users) {
+            byUsers += reviewCount(0, user);
+        }
+        long ofBusinesses = 0;
+        for (int business : businesses) {
+            ofBusinesses += reviewCount(1, business);
+        }
+        boolean fromUsers = byUsers <= ofBusinesses;
+        int[] candidates = fromUsers ? reviews(Entity.USER, users) : reviews(Entity.BUSINESS, businesses);
+        int[] other = fromUsers ? businesses : users;
+        int n = 0;
+        for (int doc : candidates) {
+            int ord = fromUsers ? businessOfReview(doc) : userOfReview(doc);
+            if (Arrays.binarySearch(other, ord) >= 0) {
+                candidates[n++] = doc;
+            }
+        }
+        return Arrays.copyOf(candidates, n);
+    }
+
+    //doc ids as hits for YELPSearcher.printResult or project
+    public static ScoreDoc[] asHits(int[] docs) {
+        ScoreDoc[] hits = new ScoreDoc[docs.length];
+        for (int i = 0; i < docs.length; i++) {
+            hits[i] = new ScoreDoc(docs[i], Float.NaN);
+        }
+        return hits;
+    }
+
+    @Override
+    public void close() throws IOException {
+        //the mappings stay valid until they are garbage collected
+        file.close();
+    }
+
+    //identifies the documents of a reader and their order: its segments, their sizes and the live count
+    static long fingerprint(IndexReader reader) {
+        long h = reader.numDocs();
+        for (LeafReaderContext context : reader.leaves()) {
+            LeafReader leaf = context.reader();
+            String segment = leaf instanceof SegmentReader ? ((SegmentReader) leaf).getSegmentName() : leaf.toString();
+            h = 31 * h + segment.hashCode();
+            h = 31 * h + leaf.maxDoc();
+        }
+        return h;
+    }
+
+    //the first two bytes of an id, the entry of the prefix table its ordinal range starts at
+    static int prefix(byte[] id, int offset, int length) {
+        int first = length > 0 ? id[offset] & 0xFF : 0;
+        int second = length > 1 ? id[offset + 1] & 0xFF : 0;
+        return (first << 8) | second;
+    }
+
+    private static int reviewEntity(Entity entity) {
+        if (entity == Entity.REVIEW) {
+            throw new IllegalArgumentException("reviews of users or businesses only");
+        }
+        return entity.ordinal();
+    }
+
+    private int reviewCount(int e, int ordinal) {
+        return reviewOffsets[e].getInt((ordinal + 1) << 2) - reviewOffsets[e].getInt(ordinal << 2);
+    }
+
+    private int compareId(int e, int ordinal, byte[] key) {
+        int start = idOffsets[e].getInt(ordinal << 2);
+        int length = idOffsets[e].getInt((ordinal + 1) << 2) - start;
+        int n = Math.min(length, key.length);
+        for (int i = 0; i < n; i++) {
+            int cmp = (idBytes[e].get(start + i) & 0xFF) - (key[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return length - key.length;
+    }
+
+    private static int[] sortedUnique(int[] values, int n) {
+        Arrays.sort(values, 0, n);
+        int m = 0;
+        for (int i = 0; i < n; i++) {
+            if (m == 0 || values[m - 1] != values[i]) {
+                values[m++] = values[i];
+            }
+        }
+        return m == values.length ? values : Arrays.copyOf(values, m);
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, long start, long end) throws IOException {
+        if (end - start > Integer.MAX_VALUE) {
+            throw new IOException("id dictionary section of " + (end - start) + " bytes is too large to map");
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+    }
+}
@@ -0,0 +1,217 @@
+package Indexer;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+
+//builds the YELPIdDictionary of the committed user, review and location indexes. run it after indexing,
+//the dictionary holds doc ids and is only valid for the commits it was built from.
+//ids are read from the terms dictionaries in byte order and streamed to the file, so the heap holds a few
+//int arrays (4 bytes per document and per id) but never the ids themselves
+public class YELPIdDictionaryWriter {
+    private final String userIndex;
+    private final String reviewIndex;
+    private final String locationIndex;
+
+    public YELPIdDictionaryWriter(String userIndex, String reviewIndex, String locationIndex) {
+        this.userIndex = userIndex;
+        this.reviewIndex = reviewIndex;
+        this.locationIndex = locationIndex;
+    }
+
+    //write the dictionary to fileName, replacing it only once the new file is complete
+    public void write(String fileName) throws IOException {
+        IndexReader users = YELPBaseIndexer.openIndex(userIndex);
+        IndexReader reviews = YELPBaseIndexer.openIndex(reviewIndex);
+        IndexReader locations = YELPBaseIndexer.openIndex(locationIndex);
+        File target = new File(fileName);
+        File tmp = new File(fileName + ".tmp");
+        YELPCountingOutput output = new YELPCountingOutput(new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16));
+        int[] counts = new int[3];
+        try {
+            IndexReader[] readers = {users, locations, reviews};
+            long[] sections = new long[YELPIdDictionary.SECTIONS + 1];
+            int[] userDocToOrd = unmapped(users.maxDoc());
+            int[] locationDocToOrd = unmapped(locations.maxDoc());
+            int[] reviewDocToOrd = unmapped(reviews.maxDoc());
+            int[] reviewUser = unmapped(reviews.maxDoc());
+            int[] reviewBusiness = unmapped(reviews.maxDoc());
+
+            counts[0] = writeEntity(output, sections, 0, users, YELPBaseIndexer.USER_ID_FIELD, userDocToOrd,
+                    reviews, reviewUser);
+            counts[1] = writeEntity(output, sections, 5, locations, YELPBaseIndexer.BUSINESS_ID_FIELD, locationDocToOrd,
+                    reviews, reviewBusiness);
+            counts[2] = writeEntity(output, sections, 10, reviews, YELPBaseIndexer.REVIEW_ID_FIELD, reviewDocToOrd,
+                    null, null);
+            int[][] docSections = {userDocToOrd, locationDocToOrd, reviewDocToOrd, reviewUser, reviewBusiness};
+            for (int i = 0; i < docSections.length; i++) {
+                sections[15 + i] = output.position;
+                writeInts(output, docSections[i], docSections[i].length);
+            }
+            sections[YELPIdDictionary.SECTIONS] = output.position;
+
+            output.writeInt(YELPIdDictionary.MAGIC);
+            for (int i = 0; i < 3; i++) {
+                output.writeInt(counts[i]);
+                output.writeInt(readers[i].maxDoc());
+                output.writeLong(YELPIdDictionary.fingerprint(readers[i]));
+            }
+            for (long section : sections) {
+                output.writeLong(section);
+            }
+        } finally {
+            output.close();
+            users.close();
+            reviews.close();
+            locations.close();
+        }
+        if (target.exists() && !target.delete()) {
+            throw new IOException("cannot replace " + fileName);
+        }
+        if (!tmp.renameTo(target)) {
+            throw new IOException("cannot rename " + tmp + " to " + fileName);
+        }
+        System.out.println("Id dictionary: " + counts[0] + " users, " + counts[1] + " businesses, " + counts[2]
+                + " reviews, " + target.length() / (1024 * 1024) + " MB");
+    }
+
+    //the ids of field in own and in the reviews, merged in byte order, as five sections from sections[first]:
+    //id bytes, id offsets, prefix table, ordinal to doc in own, and for users and businesses the offsets of
+    //each one's reviews followed by the review doc ids. fills ownDocToOrd and reviewToOrd, returns the count
+    private static int writeEntity(YELPCountingOutput output, long[] sections, int first, IndexReader own, String field,
+                                   int[] ownDocToOrd, IndexReader reviews, int[] reviewToOrd) throws IOException {
+        TermsEnum ownTerms = terms(own, field);
+        TermsEnum reviewTerms = reviews == null ? null : terms(reviews, field);
+        Bits ownLive = MultiFields.getLiveDocs(own);
+        Bits reviewLive = reviews == null ? null : MultiFields.getLiveDocs(reviews);
+
+        IntList idOffsets = new IntList();
+        IntList ordToDoc = new IntList();
+        IntList reviewOffsets = new IntList();
+        IntList reviewDocs = new IntList();
+        int[] prefixes = new int[YELPIdDictionary.PREFIXES + 1];
+        int nextPrefix = 0;
+        PostingsEnum ownPostings = null;
+        PostingsEnum reviewPostings = null;
+
+        sections[first] = output.position;
+        int idBytes = 0;
+        BytesRef a = next(ownTerms);
+        BytesRef b = next(reviewTerms);
+        while (a != null || b != null) {
+            int cmp = a == null ? 1 : b == null ? -1 : a.compareTo(b);
+            BytesRef id = cmp <= 0 ? a : b;
+            int ord = ordToDoc.size();
+
+            idOffsets.add(idBytes);
+            output.write(id.bytes, id.offset, id.length);
+            idBytes += id.length;
+            int prefix = YELPIdDictionary.prefix(id.bytes, id.offset, id.length);
+            while (nextPrefix <= prefix) {
+                prefixes[nextPrefix++] = ord;
+            }
+
+            int doc = -1;
+            if (cmp <= 0) {
+                ownPostings = ownTerms.postings(ownPostings, PostingsEnum.NONE);
+                for (int d = ownPostings.nextDoc(); d != DocIdSetIterator.NO_MORE_DOCS; d = ownPostings.nextDoc()) {
+                    if (ownLive == null || ownLive.get(d)) {
+                        //an id indexed more than once maps to its first live document
+                        if (doc < 0) {
+                            doc = d;
+                        }
+                        ownDocToOrd[d] = ord;
+                    }
+                }
+            }
+            ordToDoc.add(doc);
+
+            if (reviews != null) {
+                reviewOffsets.add(reviewDocs.size());
+                if (cmp >= 0) {
+                    reviewPostings = reviewTerms.postings(reviewPostings, PostingsEnum.NONE);
+                    for (int d = reviewPostings.nextDoc(); d != DocIdSetIterator.NO_MORE_DOCS; d = reviewPostings.nextDoc()) {
+                        if (reviewLive == null || reviewLive.get(d)) {
+                            reviewDocs.add(d);
+                            reviewToOrd[d] = ord;
+                        }
+                    }
+                }
+            }
+
+            if (cmp <= 0) {
+                a = next(ownTerms);
+            }
+            if (cmp >= 0) {
+                b = next(reviewTerms);
+            }
+        }
+        int count = ordToDoc.size();
+        idOffsets.add(idBytes);
+        while (nextPrefix <= YELPIdDictionary.PREFIXES) {
+            prefixes[nextPrefix++] = count;
+        }
+
+        sections[first + 1] = output.position;
+        writeInts(output, idOffsets.values, idOffsets.size());
+        sections[first + 2] = output.position;
+        writeInts(output, prefixes, prefixes.length);
+        sections[first + 3] = output.position;
+        writeInts(output, ordToDoc.values, ordToDoc.size());
+        sections[first + 4] = output.position;
+        if (reviews != null) {
+            reviewOffsets.add(reviewDocs.size());
+            writeInts(output, reviewOffsets.values, reviewOffsets.size());
+            writeInts(output, reviewDocs.values, reviewDocs.size());
+        }
+        return count;
+    }
+
+    private static TermsEnum terms(IndexReader reader, String field) throws IOException {
+        Terms terms = MultiFields.getTerms(reader, field);
+        return terms == null ? null : terms.iterator();
+    }
+
+    private static BytesRef next(TermsEnum terms) throws IOException {
+        return terms == null ? null : terms.next();
+    }
+
+    private static int[] unmapped(int maxDoc) {
+        int[] ords = new int[maxDoc];
+        Arrays.fill(ords, -1);
+        return ords;
+    }
+
+    private static void writeInts(YELPCountingOutput output, int[] values, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            output.writeInt(values[i]);
+        }
+    }
+
+    private static class IntList {
+        int[] values = new int[1024];
+        private int size = 0;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, 2 * size);
+            }
+            values[size++] = value;
+        }
+
+        int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package Indexer;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.lucene.index.DocValuesType;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.PointValues;
+import org.apache.lucene.index.SegmentCommitInfo;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.index.StoredFieldVisitor;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.IOContext;
+
+//on-disk size of an index by file type and an estimate of it by field.
+//file sizes are exact, compound files are opened to see the files inside them. Lucene keeps no per field
+//byte counts, so each file type's bytes are split over the fields by what drives that file's size:
+//terms for the terms dictionary, postings for .doc, positions for .pos, sampled stored bytes for .fdt,
+//documents with a value for norms, doc values and points.
+//usage: YELPIndexReport <index dir> [<index dir> ...]
+public class YELPIndexReport {
+    private static final int STORED_SAMPLE = 10000;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("usage: YELPIndexReport <index dir> [<index dir> ...]");
+            return;
+        }
+        for (String dir : args) {
+            print(dir, System.out);
+        }
+    }
+
+    //a sharded index is reported as a whole, its file sizes added up over the shards
+    public static void print(String dir, PrintStream out) throws IOException {
+        List<String> shards = new ArrayList<String>();
+        for (int i = 0; Files.isDirectory(Paths.get(YELPBaseIndexer.shardDir(dir, i))); i++) {
+            shards.add(YELPBaseIndexer.shardDir(dir, i));
+        }
+        if (shards.isEmpty()) {
+            shards.add(dir);
+        }
+        Map<String, Long> bytesByType = new TreeMap<String, Long>();
+        for (String shard : shards) {
+            Directory directory = FSDirectory.open(Paths.get(shard));
+            try {
+                for (Map.Entry<String, Long> e : bytesByFileType(directory).entrySet()) {
+                    Long current = bytesByType.get(e.getKey());
+                    bytesByType.put(e.getKey(), (current == null ? 0 : current) + e.getValue());
+                }
+            } finally {
+                directory.close();
+            }
+        }
+        long total = 0;
+        for (long bytes : bytesByType.values()) {
+            total += bytes;
+        }
+        out.println("Index " + dir + ": " + mb(total) + " MB" + (shards.size() > 1 ? " in " + shards.size() + " shards" : ""));
+        for (Map.Entry<String, Long> e : bytesByType.entrySet()) {
+            out.println(String.format("  %-5s %-22s %10s MB  %5.1f%%", e.getKey(), describe(e.getKey()),
+                    mb(e.getValue()), total == 0 ? 0 : 100.0 * e.getValue() / total));
+        }
+
+        IndexReader reader = YELPBaseIndexer.openIndex(dir);
+        try {
+            printFields(reader, bytesByType, out);
+        } finally {
+            reader.close();
+        }
+    }
+
+    //bytes of the latest commit by file extension, looking inside compound files
+    static Map<String, Long> bytesByFileType(Directory directory) throws IOException {
+        Map<String, Long> bytes = new TreeMap<String, Long>();
+        SegmentInfos infos = SegmentInfos.readLatestCommit(directory);
+        for (SegmentCommitInfo commit : infos) {
+            if (commit.info.getUseCompoundFile()) {
+                Directory cfs = commit.info.getCodec().compoundFormat().getCompoundReader(directory, commit.info, IOContext.READ);
+                try {
+                    for (String file : cfs.listAll()) {
+                        add(bytes, file, cfs.fileLength(file));
+                    }
+                } finally {
+                    cfs.close();
+                }
+                //segment info and live docs stay outside the compound file
+                for (String file : commit.files()) {
+                    if (!file.endsWith(".cfs") && !file.endsWith(".cfe")) {
+                        add(bytes, file, directory.fileLength(file));
+                    }
+                }
+            } else {
+                for (String file : commit.files()) {
+                    add(bytes, file, directory.fileLength(file));
+                }
+            }
+        }
+        add(bytes, infos.getSegmentsFileName(), directory.fileLength(infos.getSegmentsFileName()));
+        return bytes;
+    }
+
+    private static void printFields(IndexReader reader, Map<String, Long> bytesByType, PrintStream out) throws IOException {
+        Map<String, FieldStats> fields = new TreeMap<String, FieldStats>();
+        int sampled = 0;
+        for (LeafReaderContext context : reader.leaves()) {
+            LeafReader leaf = context.reader();
+            for (FieldInfo info : leaf.getFieldInfos()) {
+                FieldStats stats = fields.get(info.name);
+                if (stats == null) {
+                    stats = new FieldStats(info);
+                    fields.put(info.name, stats);
+                }
+                Terms terms = leaf.terms(info.name);
+                if (terms != null) {
+                    stats.terms += Math.max(0, terms.size());
+                    stats.postings += Math.max(0, terms.getSumDocFreq());
+                    stats.positions += Math.max(0, terms.getSumTotalTermFreq());
+                }
+                if (info.hasNorms()) {
+                    stats.norms += terms == null ? 0 : terms.getDocCount();
+                }
+                if (info.getDocValuesType() != DocValuesType.NONE) {
+                    stats.docValues += countDocValues(leaf, info);
+                }
+                if (info.getPointDimensionCount() > 0) {
+                    PointValues points = leaf.getPointValues(info.name);
+                    stats.points += points == null ? 0 : points.size();
+                }
+            }
+            //stored bytes are measured on the first documents only
+            StoredSizeVisitor visitor = new StoredSizeVisitor(fields);
+            for (int doc = 0; doc < leaf.maxDoc() && sampled < STORED_SAMPLE; doc++, sampled++) {
+                leaf.document(doc, visitor);
+            }
+        }
+
+        long terms = 0, postings = 0, positions = 0, norms = 0, docValues = 0, points = 0, stored = 0, vectors = 0;
+        for (FieldStats s : fields.values()) {
+            terms += s.terms;
+            postings += s.postings;
+            positions += s.hasPositions() ? s.positions : 0;
+            norms += s.norms;
+            docValues += s.docValues;
+            points += s.points;
+            stored += s.storedSample;
+            vectors += s.info.hasVectors() ? s.positions : 0;
+        }
+
+        out.println("  field                  index options                 dv         vectors  terms      est. MB");
+        for (FieldStats s : fields.values()) {
+            double bytes = share(bytesByType, s.terms, terms, "tim", "tip")
+                    + share(bytesByType, s.postings, postings, "doc")
+                    + share(bytesByType, s.hasPositions() ? s.positions : 0, positions, "pos", "pay")
+                    + share(bytesByType, s.norms, norms, "nvd", "nvm")
+                    + share(bytesByType, s.docValues, docValues, "dvd", "dvm")
+                    + share(bytesByType, s.points, points, "dim", "dii")
+                    + share(bytesByType, s.storedSample, stored, "fdt", "fdx")
+                    + share(bytesByType, s.info.hasVectors() ? s.positions : 0, vectors, "tvd", "tvx");
+            out.println(String.format("  %-22s %-29s %-10s %-8s %-10d %8s", s.info.name, s.info.getIndexOptions(),
+                    s.info.getDocValuesType(), s.info.hasVectors() ? "yes" : "no", s.terms, mb((long) bytes)));
+        }
+    }
+
+    //bytes of the given file types attributed to a field with part of the total driver
+    private static double share(Map<String, Long> bytesByType, long part, long total, String... types) {
+        if (part <= 0 || total <= 0) {
+            return 0;
+        }
+        long bytes = 0;
+        for (String type : types) {
+            Long b = bytesByType.get(type);
+            bytes += b == null ? 0 : b;
+        }
+        return (double) bytes * part / total;
+    }
+
+    private static long countDocValues(LeafReader leaf, FieldInfo info) throws IOException {
+        DocIdSetIterator values;
+        switch (info.getDocValuesType()) {
+            case NUMERIC:
+                values = leaf.getNumericDocValues(info.name);
+                break;
+            case BINARY:
+                values = leaf.getBinaryDocValues(info.name);
+                break;
+            case SORTED:
+                values = leaf.getSortedDocValues(info.name);
+                break;
+            case SORTED_NUMERIC:
+                values = leaf.getSortedNumericDocValues(info.name);
+                break;
+            case SORTED_SET:
+                values = leaf.getSortedSetDocValues(info.name);
+                break;
+            default:
+                return 0;
+        }
+        if (values == null) {
+            return 0;
+        }
+        long count = values.cost();
+        //sorted values cost about their term bytes more than a number per document
+        return info.getDocValuesType() == DocValuesType.SORTED || info.getDocValuesType() == DocValuesType.SORTED_SET
+                ? 4 * count : count;
+    }
+
+    private static void add(Map<String, Long> bytes, String file, long length) {
+        int dot = file.lastIndexOf('.');
+        String type = file.startsWith("segments") ? "segments" : dot < 0 ? file : file.substring(dot + 1);
+        Long current = bytes.get(type);
+        bytes.put(type, (current == null ? 0 : current) + length);
+    }
+
+    private static String describe(String type) {
+        switch (type) {
+            case "fdt": return "stored fields";
+            case "fdx": return "stored fields index";
+            case "tim": return "terms dictionary";
+            case "tip": return "terms index";
+            case "doc": return "postings (docs, freqs)";
+            case "pos": return "positions";
+            case "pay": return "payloads, offsets";
+            case "tvd": return "term vectors";
+            case "tvx": return "term vectors index";
+            case "nvd": return "norms";
+            case "nvm": return "norms metadata";
+            case "dvd": return "doc values";
+            case "dvm": return "doc values metadata";
+            case "dim": return "points";
+            case "dii": return "points index";
+            case "liv": return "live docs";
+            case "fnm": return "field infos";
+            case "si": return "segment info";
+            case "segments": return "commit";
+            default: return "";
+        }
+    }
+
+    private static String mb(long bytes) {
+        return String.format("%.1f", bytes / (1024.0 * 1024.0));
+    }
+
+    private static class FieldStats {
+        final FieldInfo info;
+        long terms;
+        long postings;
+        long positions;
+        long norms;
+        long docValues;
+        long points;
+        long storedSample;
+
+        FieldStats(FieldInfo info) {
+            this.info = info;
+        }
+
+        boolean hasPositions() {
+            return info.getIndexOptions().compareTo(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS) >= 0;
+        }
+    }
+
+    //adds up the stored bytes of every field
+    private static class StoredSizeVisitor extends StoredFieldVisitor {
+        private final Map<String, FieldStats> fields;
+
+        StoredSizeVisitor(Map<String, FieldStats> fields) {
+            this.fields = fields;
+        }
+
+        @Override
+        public Status needsField(FieldInfo fieldInfo) {
+            return Status.YES;
+        }
+
+        @Override
+        public void stringField(FieldInfo fieldInfo, byte[] value) {
+            add(fieldInfo, value.length);
+        }
+
+        @Override
+        public void binaryField(FieldInfo fieldInfo, byte[] value) {
+            add(fieldInfo, value.length);
+        }
+
+        @Override
+        public void intField(FieldInfo fieldInfo, int value) {
+            add(fieldInfo, 4);
+        }
+
+        @Override
+        public void longField(FieldInfo fieldInfo, long value) {
+            add(fieldInfo, 8);
+        }
+
+        @Override
+        public void floatField(FieldInfo fieldInfo, float value) {
+            add(fieldInfo, 4);
+        }
+
+        @Override
+        public void doubleField(FieldInfo fieldInfo, double value) {
+            add(fieldInfo, 8);
+        }
+
+        private void add(FieldInfo fieldInfo, int bytes) {
+            FieldStats stats = fields.get(fieldInfo.name);
+            if (stats != null) {
+                stats.storedSample += bytes;
+            }
+        }
+    }
+}
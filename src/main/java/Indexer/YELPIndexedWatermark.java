@@ -0,0 +1,30 @@
+package Indexer;
+
+import java.util.TreeSet;
+
+//the byte offset of a dump below which every line has been written, while workers finish batches
+//or chunks out of order. the offset a periodic commit can be checkpointed at
+class YELPIndexedWatermark {
+    //start offsets of the ranges handed out and not finished yet
+    private final TreeSet<Long> pending = new TreeSet<Long>();
+    private long finished;
+
+    YELPIndexedWatermark(long offset) {
+        this.finished = offset;
+    }
+
+    //the range starting at start is being indexed
+    synchronized void started(long start) {
+        pending.add(start);
+    }
+
+    //every line of [start, end) was written
+    synchronized void finished(long start, long end) {
+        pending.remove(start);
+        finished = Math.max(finished, end);
+    }
+
+    synchronized long offset() {
+        return pending.isEmpty() ? finished : Math.min(finished, pending.first());
+    }
+}
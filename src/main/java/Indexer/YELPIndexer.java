@@ -1,91 +1,76 @@
 package Indexer;
 
-import java.io.File;
 import java.io.IOException;
-import java.nio.file.Paths;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.List;
-import java.util.Scanner;
-
-import org.apache.lucene.analysis.Analyzer;
-import org.apache.lucene.analysis.standard.StandardAnalyzer;
-import org.apache.lucene.document.*;
-import org.apache.lucene.index.IndexOptions;
-import org.apache.lucene.index.IndexWriter;
-import org.apache.lucene.index.IndexWriterConfig;
-import org.apache.lucene.index.IndexWriterConfig.OpenMode;
-import org.apache.lucene.index.IndexableField;
-import org.apache.lucene.search.similarities.Similarity;
-import org.apache.lucene.store.Directory;
-import org.apache.lucene.store.FSDirectory;
-import org.json.JSONObject;
 
-public class YELPIndexer {
-    private IndexWriter writer = null;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.search.similarities.Similarity;
 
-    private static final DateFormat sdf = new SimpleDateFormat("yyyy/MM/dd HH:mm:ss");
+public class YELPIndexer extends YELPBaseIndexer {
 
     public YELPIndexer(String dir, Similarity similarity) throws IOException {
-        //specify the directory to store the Lucene index
-        Directory indexDir = FSDirectory.open(Paths.get(dir));
-
-        //specify the analyzer used in indexing
-        Analyzer analyzer = new StandardAnalyzer();
-        IndexWriterConfig cfg = new IndexWriterConfig(analyzer);
-        cfg.setOpenMode(OpenMode.CREATE);
-        cfg.setSimilarity(similarity);
-
-        //create the IndexWriter
-        writer = new IndexWriter(indexDir, cfg);
+        this(dir, similarity, YELPIndexerOptions.rebuild());
     }
 
+    public YELPIndexer(String dir, Similarity similarity, YELPIndexerOptions options) throws IOException {
+        super(dir, similarity, options);
+    }
 
-    public void indexYelps(String fileName) throws Exception {
-
-        System.out.println("Start indexing "+fileName+" "+sdf.format(new Date()));
-
-        //read a JSON file
-        Scanner in = new Scanner(new File(fileName));
-        int lineNumber = 1;
-        String jLine = "";
-
-        while (in.hasNextLine()) {
+    //friend lists of the indexed users, null when no friend graph is built
+    private YELPFriendGraphWriter friendGraph = null;
+    private String friendGraphFile = null;
+
+    //also build a YELPFriendGraph from the friends of every user record, written to fileName once indexing
+    //finishes. an incremental run starts from the users already committed to the index, so the graph also
+    //covers the lines a resumed run skips
+    public YELPIndexer setFriendGraph(String fileName) throws IOException {
+        friendGraphFile = fileName;
+        friendGraph = new YELPFriendGraphWriter();
+        if (isIncremental()) {
+            DirectoryReader previous = DirectoryReader.open(getWriter());
             try {
-                jLine = in.nextLine().trim();
-                //parse the JSON file and extract the values for "question" and "answer"
-                JSONObject jObj = new JSONObject(jLine);
+                friendGraph.addUsers(previous);
+            } finally {
+                previous.close();
+            }
+        }
+        return this;
+    }
 
 
-               String userId = jObj.getString("user_id");
-               String name = jObj.getString("name");
-               int reviewCount = Integer.parseInt(jObj.getString("review_count"));
-               String yelpSince = jObj.getString("yelping_since");
-               int useful =Integer.parseInt( jObj.getString("useful"));
-               String friends = jObj.getString("friends");
+    //JSON fields read from each user record
+    private static final String[] FIELDS = {"user_id", "name", "review_count", "yelping_since", "useful", "friends"};
+    private static final int USER_ID = 0, NAME = 1, REVIEW_COUNT = 2, YELPING_SINCE = 3, USEFUL = 4, FRIENDS = 5;
 
-                //create a document for each JSON record
-                Document doc=getDocument(userId, name,reviewCount,yelpSince,useful,friends);
+    @Override
+    protected String[] getFields() {
+        return FIELDS;
+    }
 
-                //index the document
-                writer.addDocument(doc);
+    //the JSON fields read from each record, e.g. for a YELPSnapshotWriter
+    public static String[] jsonFields() {
+        return FIELDS.clone();
+    }
 
-                lineNumber++;
+    @Override
+    protected int getKeyField() {
+        return USER_ID;
+    }
 
-            } catch (Exception e) {
-              //  System.out.println("Error at: " + lineNumber + "\t" + jLine);
-                e.printStackTrace();
-            }
+    @Override
+    protected Document getDocument(YELPRecord record) throws Exception {
+        String userId = record.getString(USER_ID);
+        String name = record.getString(NAME);
+        int reviewCount = record.getInt(REVIEW_COUNT);
+        String yelpSince = record.getString(YELPING_SINCE);
+        int useful = record.getInt(USEFUL);
+        String friends = record.getString(FRIENDS);
+        if (friendGraph != null) {
+            friendGraph.addUser(userId, friends);
         }
-        //close the file reader
-        in.close();
-        System.out.println("Index completed at " + sdf.format(new Date()));
-        System.out.println("Total number of documents indexed: " + writer.maxDoc());
-
-        //close the index writer.
-        writer.close();
 
+        //create a document for each JSON record
+        return getDocument(userId, name,reviewCount,yelpSince,useful,friends);
     }
 
 
@@ -94,24 +79,26 @@ public class YELPIndexer {
                                    String friends) throws Exception {
         Document doc = new Document();
 
-        FieldType ft = new FieldType(TextField.TYPE_STORED);
-        //ft.setIndexOptions(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS);
-
-        ft.setIndexOptions(IndexOptions.DOCS_AND_FREQS);
-        ft.setStoreTermVectors(true);
-
-        doc.add(new Field("user_id", userId, ft));
+        schema.add(doc, USER_ID_FIELD, userId);
 
 //		doc.add(new Field("question", question, ft));
-        doc.add(new Field("name", name, ft));
-        doc.add(new NumericDocValuesField("review_count",reviewCount));
+        schema.add(doc, "name", name);
+        schema.add(doc, "review_count", (long) reviewCount);
         //TODO: figure out how to do date and time index
      //   doc.add(new DateFormat.Field("yelping_since", yelpSince));
-        doc.add(new NumericDocValuesField("useful",usefulCount));
+        schema.add(doc, "useful", (long) usefulCount);
 
 
-        doc.add(new TextField("friends", friends , Field.Store.YES));
+        //stored for display only, friend lookups go through the YELPFriendGraph
+        schema.add(doc, YELPFriendGraphWriter.FRIENDS_FIELD, friends);
 
         return doc;
     }
+
+    @Override
+    protected void finishIndexing() throws IOException {
+        if (friendGraph != null) {
+            friendGraph.write(friendGraphFile);
+        }
+    }
 }
@@ -0,0 +1,214 @@
+package Indexer;
+
+import Metrics.YELPMetrics;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.codecs.lucene50.Lucene50StoredFieldsFormat;
+import org.apache.lucene.codecs.lucene70.Lucene70Codec;
+import org.apache.lucene.index.ConcurrentMergeScheduler;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.IndexWriterConfig.OpenMode;
+import org.apache.lucene.index.MergePolicy;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.index.TieredMergePolicy;
+import org.apache.lucene.search.similarities.Similarity;
+
+//how an indexer opens and writes its index
+public class YELPIndexerOptions {
+    public static final double BULK_RAM_BUFFER_MB = 1024;
+    public static final long BULK_COMMIT_INTERVAL_MS = 5 * 60 * 1000;
+
+    private boolean incremental = false;
+    private int searchSegments = 0;
+    private long expectedIndexMB = 0;
+    private YELPFieldSchema schema = YELPFieldSchema.yelp();
+    private Lucene50StoredFieldsFormat.Mode storedFieldsMode = Lucene50StoredFieldsFormat.Mode.BEST_SPEED;
+    private int shards = 1;
+    private YELPMetrics metrics = YELPMetrics.global();
+    private double ramBufferMB = IndexWriterConfig.DEFAULT_RAM_BUFFER_SIZE_MB;
+    private int mergeThreads = ConcurrentMergeScheduler.AUTO_DETECT_MERGES_AND_THREADS;
+    private boolean deferMerges = false;
+    private boolean compoundFiles = true;
+    private long commitIntervalMs = 0;
+    private int forceMergeSegments = 0;
+
+    //rebuild the index from scratch on every run
+    public static YELPIndexerOptions rebuild() {
+        return new YELPIndexerOptions();
+    }
+
+    //rebuild for a cold load of a whole dump: segments are flushed from a large RAM buffer, not merged until
+    //every line was written, not packed into compound files, and a commit every BULK_COMMIT_INTERVAL_MS
+    //records how far the dump was read. a run that dies midway is resumed from its last commit by
+    //starting it again with setIncremental(true)
+    public static YELPIndexerOptions bulkLoad() {
+        //the buffer is per writer and per shard, leave most of the heap to the workers
+        double heapMB = Runtime.getRuntime().maxMemory() / (1024.0 * 1024.0);
+        return new YELPIndexerOptions()
+                .setRAMBufferMB(Math.max(IndexWriterConfig.DEFAULT_RAM_BUFFER_SIZE_MB, Math.min(BULK_RAM_BUFFER_MB, heapMB / 4)))
+                .setDeferMerges(true)
+                .setCompoundFiles(false)
+                .setCommitInterval(BULK_COMMIT_INTERVAL_MS);
+    }
+
+    //keep the existing index: records are upserted on their id, unchanged records are skipped
+    //and a dump that only grew since the last run is read from where that run stopped
+    public static YELPIndexerOptions incremental() {
+        return new YELPIndexerOptions().setIncremental(true);
+    }
+
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    public YELPIndexerOptions setIncremental(boolean incremental) {
+        this.incremental = incremental;
+        return this;
+    }
+
+    //shape the index for segment-parallel search: segments stop merging at about
+    //expectedIndexMB / segments, which leaves roughly that many large segments of similar size
+    //instead of one huge segment that a single search thread has to score alone
+    public YELPIndexerOptions setSearchSegments(int segments, long expectedIndexMB) {
+        this.searchSegments = segments;
+        this.expectedIndexMB = expectedIndexMB;
+        return this;
+    }
+
+    public int getShards() {
+        return shards;
+    }
+
+    //hash partition the documents over shards directories under the index directory, each with its own
+    //writer, so ingestion is not bound by one IndexWriter. only for indexers with a shard field
+    //(YELPReviewIndexer shards on business_id), YELPSearcher searches the shards as one index
+    public YELPIndexerOptions setShards(int shards) {
+        if (shards < 1) {
+            throw new IllegalArgumentException("shards must be positive: " + shards);
+        }
+        this.shards = shards;
+        return this;
+    }
+
+    public YELPMetrics getMetrics() {
+        return metrics;
+    }
+
+    //record ingestion counters into metrics instead of YELPMetrics.global(): index.docs, index.skipped,
+    //index.failed.<exception> per parse failure reason, index.commits, the index.docs_per_sec gauge and
+    //index.flush_ms, index.merge_ms and index.commit_ms histograms. null records nothing
+    public YELPIndexerOptions setMetrics(YELPMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    //MB of buffered documents before the largest thread's segment is flushed, Lucene's default is 16.
+    //larger buffers flush fewer, bigger segments and leave less to merge
+    public YELPIndexerOptions setRAMBufferMB(double ramBufferMB) {
+        this.ramBufferMB = ramBufferMB;
+        return this;
+    }
+
+    //concurrent merge threads per writer: 1 for spinning disks, a few for SSDs.
+    //ConcurrentMergeScheduler.AUTO_DETECT_MERGES_AND_THREADS (default) lets Lucene guess from the disk
+    public YELPIndexerOptions setMergeThreads(int mergeThreads) {
+        if (mergeThreads < 1 && mergeThreads != ConcurrentMergeScheduler.AUTO_DETECT_MERGES_AND_THREADS) {
+            throw new IllegalArgumentException("merge threads must be positive: " + mergeThreads);
+        }
+        this.mergeThreads = mergeThreads;
+        return this;
+    }
+
+    public boolean isDeferMerges() {
+        return deferMerges;
+    }
+
+    //merge nothing while the run writes, then merge once after the last line: every document is copied
+    //by one round of merges instead of being merged again and again as segments pile up
+    public YELPIndexerOptions setDeferMerges(boolean deferMerges) {
+        this.deferMerges = deferMerges;
+        return this;
+    }
+
+    //false writes every segment as separate files, which saves copying each new segment into a .cfs
+    //but needs more open files
+    public YELPIndexerOptions setCompoundFiles(boolean compoundFiles) {
+        this.compoundFiles = compoundFiles;
+        return this;
+    }
+
+    public long getCommitInterval() {
+        return commitIntervalMs;
+    }
+
+    //commit every commitIntervalMs with a YELPSourceCheckpoint below which every line is indexed,
+    //0 (default) commits once at the end
+    public YELPIndexerOptions setCommitInterval(long commitIntervalMs) {
+        this.commitIntervalMs = commitIntervalMs;
+        return this;
+    }
+
+    public int getForceMergeSegments() {
+        return forceMergeSegments;
+    }
+
+    //merge the index down to at most maxSegments segments before the final commit, 0 (default) does not.
+    //for indexes that are only read afterwards, the merge costs about as much as writing them
+    public YELPIndexerOptions setForceMerge(int maxSegments) {
+        if (maxSegments < 0) {
+            throw new IllegalArgumentException("maxSegments must not be negative: " + maxSegments);
+        }
+        this.forceMergeSegments = maxSegments;
+        return this;
+    }
+
+    public YELPFieldSchema getSchema() {
+        return schema;
+    }
+
+    //index the fields as schema declares them instead of YELPFieldSchema.yelp()
+    public YELPIndexerOptions setSchema(YELPFieldSchema schema) {
+        this.schema = schema;
+        return this;
+    }
+
+    //BEST_SPEED (default) compresses stored fields in small LZ4 blocks, BEST_COMPRESSION uses DEFLATE on
+    //larger blocks: a much smaller .fdt for the review text at the cost of slower document loads
+    public YELPIndexerOptions setStoredFieldsCompression(Lucene50StoredFieldsFormat.Mode mode) {
+        this.storedFieldsMode = mode;
+        return this;
+    }
+
+    IndexWriterConfig newIndexWriterConfig(Analyzer analyzer, Similarity similarity) {
+        IndexWriterConfig cfg = new IndexWriterConfig(analyzer);
+        cfg.setOpenMode(incremental ? OpenMode.CREATE_OR_APPEND : OpenMode.CREATE);
+        if (similarity != null) {
+            cfg.setSimilarity(similarity);
+        }
+        cfg.setCodec(new Lucene70Codec(storedFieldsMode));
+        cfg.setRAMBufferSizeMB(ramBufferMB);
+        cfg.setUseCompoundFile(compoundFiles);
+        cfg.setMergePolicy(deferMerges ? NoMergePolicy.INSTANCE : newMergePolicy());
+        ConcurrentMergeScheduler scheduler = metrics != null ? new YELPTimedMergeScheduler(metrics) : new ConcurrentMergeScheduler();
+        if (mergeThreads != ConcurrentMergeScheduler.AUTO_DETECT_MERGES_AND_THREADS) {
+            //a few merges may queue up behind the running ones before indexing threads are stalled
+            scheduler.setMaxMergesAndThreads(mergeThreads + 5, mergeThreads);
+        }
+        cfg.setMergeScheduler(scheduler);
+        if (metrics != null) {
+            cfg.setInfoStream(new YELPFlushTimeInfoStream(metrics));
+        }
+        return cfg;
+    }
+
+    //the merge policy of the finished index, also set live on the writers at the end of a run with deferred merges
+    MergePolicy newMergePolicy() {
+        TieredMergePolicy mergePolicy = new TieredMergePolicy();
+        if (searchSegments > 0) {
+            mergePolicy.setMaxMergedSegmentMB(Math.max(64, expectedIndexMB / searchSegments));
+        }
+        if (!compoundFiles) {
+            mergePolicy.setNoCFSRatio(0);
+        }
+        return mergePolicy;
+    }
+}
@@ -0,0 +1,431 @@
+package Indexer;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.lucene.document.Document;
+
+//pipelined ingestion: one buffered reader stage, a pool of parse/document-building workers
+//and concurrent addDocument calls into the shared (thread-safe) IndexWriter.
+//runMapped() replaces the reader stage with memory-mapped chunks read by the workers themselves,
+//runSnapshot() does the same for a YELPSnapshotWriter file
+public class YELPIndexingPipeline {
+    public static final int DEFAULT_BATCH_SIZE = 256;
+    public static final int DEFAULT_BATCH_BYTES = 1 << 20;
+    public static final long DEFAULT_REPORT_INTERVAL_MS = 10000;
+
+    //marks the end of the input for a worker, one per worker is queued
+    private static final Batch END_OF_INPUT = new Batch(0, 0);
+
+    private final YELPBaseIndexer indexer;
+    private final int numThreads;
+    private final int queueDepth;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private long reportIntervalMs = DEFAULT_REPORT_INTERVAL_MS;
+
+    private final AtomicLong indexed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong bytesRead = new AtomicLong();
+    private long totalBytes = 0;
+    private long startTime;
+    //how far the dump is indexed, for checkpoint commits
+    private YELPIndexedWatermark watermark;
+
+    public YELPIndexingPipeline(YELPBaseIndexer indexer, int numThreads, int queueDepth) {
+        if (numThreads < 1 || queueDepth < 1) {
+            throw new IllegalArgumentException("numThreads and queueDepth must be positive");
+        }
+        this.indexer = indexer;
+        this.numThreads = numThreads;
+        this.queueDepth = queueDepth;
+    }
+
+    //number of lines handed to a worker at a time, larger batches mean less queue contention.
+    //a batch is also cut once it holds DEFAULT_BATCH_BYTES of JSON
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public void setReportInterval(long reportIntervalMs) {
+        this.reportIntervalMs = reportIntervalMs;
+    }
+
+    public long getIndexedCount() {
+        return indexed.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    //records an incremental run found unchanged
+    public long getSkippedCount() {
+        return skipped.get();
+    }
+
+    //run the whole file through the pipeline, returns once every line has been added to the writer
+    public long run(String fileName) throws Exception {
+        return run(fileName, 0);
+    }
+
+    //same as run(fileName), starting at a line start offset bytes into the file
+    public long run(String fileName, long offset) throws Exception {
+        //open the dump first, a missing file must not leave a pool behind
+        FileInputStream file = new FileInputStream(fileName);
+        YELPLineReader in = new YELPLineReader(file);
+        try {
+            file.getChannel().position(offset);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        BlockingQueue<Batch> queue = new ArrayBlockingQueue<Batch>(queueDepth);
+        ExecutorService workers = Executors.newFixedThreadPool(numThreads);
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+        startTime = System.nanoTime();
+        watermark = new YELPIndexedWatermark(offset);
+
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (int i = 0; i < numThreads; i++) {
+                futures.add(workers.submit(new Worker(queue)));
+            }
+            reporter.scheduleAtFixedRate(new Runnable() {
+                @Override
+                public void run() {
+                    report();
+                }
+            }, reportIntervalMs, reportIntervalMs, TimeUnit.MILLISECONDS);
+            scheduleCommits(reporter, fileName);
+
+            try {
+                Batch batch = new Batch(batchSize, DEFAULT_BATCH_BYTES);
+                batch.offset = offset;
+                watermark.started(offset);
+                while (in.next()) {
+                    int len = in.end() - in.start();
+                    if (batch.count == batchSize || (batch.count > 0 && batch.used + len > batch.data.length)) {
+                        queue.put(batch);
+                        Batch next = new Batch(batchSize, DEFAULT_BATCH_BYTES);
+                        next.offset = batch.end;
+                        watermark.started(next.offset);
+                        batch = next;
+                    }
+                    batch.add(in.array(), in.start(), len, in.lineNumber());
+                    batch.end = offset + in.position();
+                }
+                if (batch.count > 0) {
+                    queue.put(batch);
+                } else {
+                    watermark.finished(batch.offset, batch.offset);
+                }
+            } finally {
+                in.close();
+                for (int i = 0; i < numThreads; i++) {
+                    queue.put(END_OF_INPUT);
+                }
+                workers.shutdown();
+            }
+
+            for (Future<?> f : futures) {
+                f.get();
+            }
+        } finally {
+            //workers only still run if reading failed
+            workers.shutdownNow();
+            stop(reporter);
+        }
+        report();
+        return indexed.get();
+    }
+
+    //map the file and index it as numChunks newline aligned chunks, numThreads chunks at a time.
+    //more chunks than threads keeps every thread busy when chunks index at different speeds
+    public long runMapped(String fileName, int numChunks) throws Exception {
+        return runMapped(fileName, numChunks, 0);
+    }
+
+    //same as runMapped(fileName, numChunks) for the part of the file after offset
+    public long runMapped(String fileName, int numChunks, long offset) throws Exception {
+        YELPMappedChunkReader reader = new YELPMappedChunkReader(fileName, numChunks, offset);
+        ExecutorService workers = Executors.newFixedThreadPool(numThreads);
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+        totalBytes = reader.size() - offset;
+        startTime = System.nanoTime();
+        watermark = new YELPIndexedWatermark(offset);
+        for (YELPMappedChunkReader.Chunk chunk : reader.getChunks()) {
+            watermark.started(chunk.getStart());
+        }
+
+        reporter.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                report();
+            }
+        }, reportIntervalMs, reportIntervalMs, TimeUnit.MILLISECONDS);
+        scheduleCommits(reporter, fileName);
+
+        try {
+            List<Future<Long>> futures = new ArrayList<Future<Long>>();
+            for (YELPMappedChunkReader.Chunk chunk : reader.getChunks()) {
+                futures.add(workers.submit(new ChunkWorker(reader, chunk)));
+            }
+            for (Future<Long> f : futures) {
+                f.get();
+            }
+        } finally {
+            workers.shutdownNow();
+            stop(reporter);
+            reader.close();
+        }
+        report();
+        return indexed.get();
+    }
+
+    //index a YELPSnapshotReader file in about numChunks chunks, numThreads chunks at a time. there are no
+    //checkpoint commits, a snapshot is converted from the whole dump and re-indexed from its start
+    public long runSnapshot(String fileName, int numChunks) throws Exception {
+        YELPSnapshotReader reader = new YELPSnapshotReader(fileName);
+        ExecutorService workers = Executors.newFixedThreadPool(numThreads);
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+        totalBytes = reader.size();
+        startTime = System.nanoTime();
+
+        reporter.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                report();
+            }
+        }, reportIntervalMs, reportIntervalMs, TimeUnit.MILLISECONDS);
+
+        try {
+            List<Future<Long>> futures = new ArrayList<Future<Long>>();
+            for (YELPMappedChunkReader.Chunk chunk : reader.getChunks(numChunks)) {
+                futures.add(workers.submit(new SnapshotWorker(reader, chunk)));
+            }
+            for (Future<Long> f : futures) {
+                f.get();
+            }
+        } finally {
+            workers.shutdownNow();
+            stop(reporter);
+            reader.close();
+        }
+        report();
+        return indexed.get();
+    }
+
+    //let a checkpoint commit in progress finish, interrupting it could leave the writer unusable
+    private static void stop(ScheduledExecutorService reporter) throws InterruptedException {
+        reporter.shutdown();
+        reporter.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    }
+
+    //checkpoint commits on the reporter thread, while the workers keep writing
+    private void scheduleCommits(ScheduledExecutorService scheduler, final String fileName) {
+        long interval = indexer.commitInterval();
+        if (interval <= 0) {
+            return;
+        }
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    indexer.checkpoint(fileName, watermark.offset());
+                } catch (Exception e) {
+                    //the next commit or the final one tries again
+                    e.printStackTrace();
+                }
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    private void report() {
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        long docs = indexed.get();
+        String progress = "";
+        if (totalBytes > 0) {
+            progress = ", " + (bytesRead.get() >> 20) + "/" + (totalBytes >> 20) + " MB";
+        }
+        System.out.println("Indexed " + docs + " docs in " + String.format("%.1f", seconds) + "s ("
+                + String.format("%.0f", seconds > 0 ? docs / seconds : 0) + " docs/sec, " + failed.get() + " failed"
+                + (skipped.get() > 0 ? ", " + skipped.get() + " unchanged" : "") + progress + ")");
+        indexer.docsPerSecond();
+    }
+
+    //lines copied back to back into one block, so a batch costs a few allocations instead of a String per line
+    private static class Batch {
+        byte[] data;
+        int used = 0;
+        int count = 0;
+        //file offsets of the first line and past the last one
+        long offset;
+        long end;
+        final int[] starts;
+        final int[] ends;
+        final long[] lineNumbers;
+
+        Batch(int maxLines, int bytes) {
+            data = new byte[bytes];
+            starts = new int[maxLines];
+            ends = new int[maxLines];
+            lineNumbers = new long[maxLines];
+        }
+
+        void add(byte[] src, int offset, int len, long lineNumber) {
+            if (used + len > data.length) {
+                //a single line larger than the block
+                byte[] bigger = new byte[used + len];
+                System.arraycopy(data, 0, bigger, 0, used);
+                data = bigger;
+            }
+            System.arraycopy(src, offset, data, used, len);
+            starts[count] = used;
+            ends[count] = used + len;
+            lineNumbers[count] = lineNumber;
+            used += len;
+            count++;
+        }
+    }
+
+    private class Worker implements Runnable {
+        private final BlockingQueue<Batch> queue;
+
+        Worker(BlockingQueue<Batch> queue) {
+            this.queue = queue;
+        }
+
+        @Override
+        public void run() {
+            YELPJsonRecord record = indexer.newRecord();
+            try {
+                Batch batch;
+                while ((batch = queue.take()) != END_OF_INPUT) {
+                    ByteBuffer view = ByteBuffer.wrap(batch.data);
+                    for (int i = 0; i < batch.count; i++) {
+                        try {
+                            Document doc = indexer.parseLine(view, batch.starts[i], batch.ends[i], record);
+                            if (doc != null) {
+                                indexer.write(doc);
+                                indexed.incrementAndGet();
+                            } else {
+                                skipped.incrementAndGet();
+                                indexer.skipped();
+                            }
+                        } catch (Exception e) {
+                            failed.incrementAndGet();
+                            indexer.failed(e);
+                            System.out.println("Error at: " + batch.lineNumbers[i] + "\t" + new String(batch.data,
+                                    batch.starts[i], batch.ends[i] - batch.starts[i], StandardCharsets.UTF_8));
+                            e.printStackTrace();
+                        }
+                    }
+                    watermark.finished(batch.offset, batch.end);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private class ChunkWorker implements Callable<Long>, YELPMappedChunkReader.LineHandler {
+        private final YELPMappedChunkReader reader;
+        private final YELPMappedChunkReader.Chunk chunk;
+        private final YELPJsonRecord record = indexer.newRecord();
+
+        ChunkWorker(YELPMappedChunkReader reader, YELPMappedChunkReader.Chunk chunk) {
+            this.reader = reader;
+            this.chunk = chunk;
+        }
+
+        @Override
+        public Long call() throws Exception {
+            long start = System.nanoTime();
+            long lines = reader.read(chunk, this);
+            watermark.finished(chunk.getStart(), chunk.getEnd());
+            bytesRead.addAndGet(chunk.length());
+            System.out.println("Finished " + chunk + ": " + lines + " lines, " + (chunk.length() >> 20) + " MB in "
+                    + String.format("%.1f", (System.nanoTime() - start) / 1e9) + "s");
+            return lines;
+        }
+
+        @Override
+        public void line(MappedByteBuffer buf, int start, int end, long fileOffset) {
+            try {
+                Document doc = indexer.parseLine(buf, start, end, record);
+                if (doc != null) {
+                    indexer.write(doc);
+                    indexed.incrementAndGet();
+                } else {
+                    skipped.incrementAndGet();
+                    indexer.skipped();
+                }
+            } catch (Exception e) {
+                failed.incrementAndGet();
+                indexer.failed(e);
+                byte[] line = new byte[end - start];
+                ByteBuffer src = buf.duplicate();
+                src.position(start);
+                src.get(line);
+                System.out.println("Error at byte " + fileOffset + "\t" + new String(line, StandardCharsets.UTF_8));
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private class SnapshotWorker implements Callable<Long>, YELPSnapshotReader.RecordHandler {
+        private final YELPSnapshotReader reader;
+        private final YELPMappedChunkReader.Chunk chunk;
+        private final YELPSnapshotRecord record;
+
+        SnapshotWorker(YELPSnapshotReader reader, YELPMappedChunkReader.Chunk chunk) {
+            this.reader = reader;
+            this.chunk = chunk;
+            this.record = indexer.newRecord(reader);
+        }
+
+        @Override
+        public Long call() throws Exception {
+            long start = System.nanoTime();
+            long records = reader.read(chunk, record, this);
+            bytesRead.addAndGet(chunk.length());
+            System.out.println("Finished " + chunk + ": " + records + " records, " + (chunk.length() >> 20) + " MB in "
+                    + String.format("%.1f", (System.nanoTime() - start) / 1e9) + "s");
+            return records;
+        }
+
+        @Override
+        public void record(YELPSnapshotRecord record, long fileOffset) {
+            try {
+                Document doc = indexer.toDocument(record, record.checksum());
+                if (doc != null) {
+                    indexer.write(doc);
+                    indexed.incrementAndGet();
+                } else {
+                    skipped.incrementAndGet();
+                    indexer.skipped();
+                }
+            } catch (Exception e) {
+                failed.incrementAndGet();
+                indexer.failed(e);
+                System.out.println("Error at byte " + fileOffset + " of the snapshot");
+                e.printStackTrace();
+            }
+        }
+    }
+}
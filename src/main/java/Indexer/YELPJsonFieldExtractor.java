@@ -0,0 +1,192 @@
+package Indexer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+//streaming extractor for the top level fields of one JSON line.
+//it walks the raw UTF-8 bytes once, only remembers where the configured fields are,
+//skips everything else without building objects and stops as soon as every field was seen.
+//the extractor holds no state per line and can be shared by all worker threads.
+public class YELPJsonFieldExtractor {
+    private final String[] fieldNames;
+    private final byte[][] keys;
+
+    public YELPJsonFieldExtractor(String... fieldNames) {
+        this.fieldNames = fieldNames;
+        this.keys = new byte[fieldNames.length][];
+        for (int i = 0; i < fieldNames.length; i++) {
+            keys[i] = fieldNames[i].getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    public String[] getFieldNames() {
+        return fieldNames;
+    }
+
+    public YELPJsonRecord newRecord() {
+        return new YELPJsonRecord(fieldNames);
+    }
+
+    //locate the configured fields of the JSON object in buf[start, end) and point record at them.
+    //heap buffers are read in place, direct and mapped buffers are copied into the record first.
+    //throws IllegalArgumentException if the line is not a well formed JSON object
+    public YELPJsonRecord extract(ByteBuffer buf, int start, int end, YELPJsonRecord record) {
+        if (buf.hasArray()) {
+            return extract(buf.array(), buf.arrayOffset() + start, buf.arrayOffset() + end, record);
+        }
+        byte[] line = record.lineBuffer(end - start);
+        ByteBuffer src = buf.duplicate();
+        src.limit(end).position(start);
+        src.get(line, 0, end - start);
+        return extract(line, 0, end - start, record);
+    }
+
+    public YELPJsonRecord extract(byte[] line, YELPJsonRecord record) {
+        return extract(line, 0, line.length, record);
+    }
+
+    public YELPJsonRecord extract(byte[] buf, int start, int end, YELPJsonRecord record) {
+        record.reset(buf, start, end);
+        int remaining = keys.length;
+        int i = skipWhitespace(buf, start, end);
+        expect(buf, i++, end, '{');
+        i = skipWhitespace(buf, i, end);
+        if (i < end && buf[i] == '}') {
+            return record;
+        }
+
+        while (remaining > 0) {
+            //key
+            expect(buf, i, end, '"');
+            int keyStart = i + 1;
+            i = skipString(buf, keyStart, end);
+            int field = match(buf, keyStart, i - 1);
+            i = skipWhitespace(buf, i, end);
+            expect(buf, i++, end, ':');
+            i = skipWhitespace(buf, i, end);
+            if (i >= end) {
+                throw malformed(i);
+            }
+
+            //value
+            byte b = buf[i];
+            int valueStart;
+            int valueEnd;
+            boolean hasEscapes = false;
+            if (b == '"') {
+                //same walk as skipString, also noting whether the value needs unescaping
+                valueStart = ++i;
+                while (true) {
+                    if (i >= end) {
+                        throw malformed(end);
+                    }
+                    byte c = buf[i++];
+                    if (c == '\\') {
+                        hasEscapes = true;
+                        i++;
+                    } else if (c == '"') {
+                        break;
+                    }
+                }
+                valueEnd = i - 1;
+            } else if (b == '{' || b == '[') {
+                valueStart = i;
+                i = skipContainer(buf, i, end);
+                valueEnd = i;
+            } else {
+                valueStart = i;
+                while (i < end) {
+                    byte c = buf[i];
+                    if (c == ',' || c == '}' || (c >= 0 && c <= ' ')) {
+                        break;
+                    }
+                    i++;
+                }
+                valueEnd = i;
+            }
+            if (field >= 0 && !record.has(field)) {
+                record.set(field, valueStart, valueEnd, hasEscapes);
+                remaining--;
+            }
+
+            i = skipWhitespace(buf, i, end);
+            if (i >= end) {
+                throw malformed(i);
+            }
+            b = buf[i++];
+            if (b == '}') {
+                break;
+            } else if (b != ',') {
+                throw malformed(i - 1);
+            }
+            i = skipWhitespace(buf, i, end);
+        }
+        return record;
+    }
+
+    private int match(byte[] buf, int start, int end) {
+        int len = end - start;
+        for (int f = 0; f < keys.length; f++) {
+            byte[] key = keys[f];
+            if (key.length != len) {
+                continue;
+            }
+            int k = 0;
+            while (k < len && buf[start + k] == key[k]) {
+                k++;
+            }
+            if (k == len) {
+                return f;
+            }
+        }
+        return -1;
+    }
+
+    //i is the first byte after the opening quote, returns the index after the closing quote
+    private static int skipString(byte[] buf, int i, int end) {
+        while (i < end) {
+            byte b = buf[i++];
+            if (b == '\\') {
+                i++;
+            } else if (b == '"') {
+                return i;
+            }
+        }
+        throw malformed(end);
+    }
+
+    //i is at the opening bracket, returns the index after the matching closing bracket
+    private static int skipContainer(byte[] buf, int i, int end) {
+        int depth = 0;
+        while (i < end) {
+            byte b = buf[i++];
+            if (b == '"') {
+                i = skipString(buf, i, end);
+            } else if (b == '{' || b == '[') {
+                depth++;
+            } else if (b == '}' || b == ']') {
+                if (--depth == 0) {
+                    return i;
+                }
+            }
+        }
+        throw malformed(end);
+    }
+
+    private static int skipWhitespace(byte[] buf, int i, int end) {
+        while (i < end && buf[i] <= ' ' && buf[i] >= 0) {
+            i++;
+        }
+        return i;
+    }
+
+    private static void expect(byte[] buf, int i, int end, char c) {
+        if (i >= end || buf[i] != c) {
+            throw malformed(i);
+        }
+    }
+
+    private static IllegalArgumentException malformed(int offset) {
+        return new IllegalArgumentException("Malformed JSON at byte " + offset);
+    }
+}
@@ -0,0 +1,251 @@
+package Indexer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+//field values located by YELPJsonFieldExtractor, kept as byte ranges of the source line.
+//nothing is decoded until a getter asks for it, and the record is reused line after line,
+//so one instance per thread is enough
+public class YELPJsonRecord implements YELPRecord {
+    private final String[] fieldNames;
+    private byte[] buf;
+    private int lineStart;
+    private int lineEnd;
+    private final int[] starts;
+    private final int[] ends;
+    private final boolean[] escaped;
+    private byte[] scratch = new byte[256];
+    private byte[] line = new byte[0];
+
+    //exact powers of ten, dividing an exact mantissa by one of them rounds correctly
+    private static final double[] POW10 = new double[16];
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; i++) {
+            POW10[i] = POW10[i - 1] * 10;
+        }
+    }
+
+    public YELPJsonRecord(String[] fieldNames) {
+        this.fieldNames = fieldNames;
+        this.starts = new int[fieldNames.length];
+        this.ends = new int[fieldNames.length];
+        this.escaped = new boolean[fieldNames.length];
+    }
+
+    //holds a copy of lines that do not live in a heap array
+    byte[] lineBuffer(int len) {
+        if (line.length < len) {
+            line = new byte[Math.max(len, line.length * 2)];
+        }
+        return line;
+    }
+
+    void reset(byte[] buf, int lineStart, int lineEnd) {
+        this.buf = buf;
+        this.lineStart = lineStart;
+        this.lineEnd = lineEnd;
+        for (int i = 0; i < starts.length; i++) {
+            starts[i] = -1;
+        }
+    }
+
+    void set(int field, int start, int end, boolean hasEscapes) {
+        starts[field] = start;
+        ends[field] = end;
+        escaped[field] = hasEscapes;
+    }
+
+    //CRC32 of the whole JSON line, used to detect changed records between incremental runs
+    public long checksum() {
+        CRC32 crc = new CRC32();
+        crc.update(buf, lineStart, lineEnd - lineStart);
+        return crc.getValue();
+    }
+
+    @Override
+    public boolean has(int field) {
+        return starts[field] >= 0;
+    }
+
+    @Override
+    public String getString(int field) {
+        check(field);
+        int start = starts[field];
+        int len = ends[field] - start;
+        if (escaped[field]) {
+            len = unescape(start, ends[field]);
+            return new String(scratch, 0, len, StandardCharsets.UTF_8);
+        }
+        return new String(buf, start, len, StandardCharsets.UTF_8);
+    }
+
+    //the decoded UTF-8 bytes of field, e.g. for a YELPSnapshotWriter
+    byte[] getBytes(int field) {
+        check(field);
+        int start = starts[field];
+        if (escaped[field]) {
+            int len = unescape(start, ends[field]);
+            byte[] value = new byte[len];
+            System.arraycopy(scratch, 0, value, 0, len);
+            return value;
+        }
+        byte[] value = new byte[ends[field] - start];
+        System.arraycopy(buf, start, value, 0, value.length);
+        return value;
+    }
+
+    //plain [-]digits[.digits] values are parsed in place, anything else (exponents, quoted
+    //numbers with escapes) falls back to Double.parseDouble
+    @Override
+    public double getDouble(int field) {
+        check(field);
+        int i = starts[field];
+        int end = ends[field];
+        boolean negative = false;
+        if (i < end && buf[i] == '-') {
+            negative = true;
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int fraction = 0;
+        boolean dot = false;
+        for (; i < end; i++) {
+            byte b = buf[i];
+            if (b >= '0' && b <= '9') {
+                if (++digits > 15) {
+                    return Double.parseDouble(getString(field).trim());
+                }
+                mantissa = mantissa * 10 + (b - '0');
+                if (dot) {
+                    fraction++;
+                }
+            } else if (b == '.' && !dot) {
+                dot = true;
+            } else {
+                return Double.parseDouble(getString(field).trim());
+            }
+        }
+        if (digits == 0) {
+            throw new NumberFormatException("Field " + fieldNames[field] + " is not a number");
+        }
+        double value = mantissa;
+        if (fraction > 0) {
+            value = value / POW10[fraction];
+        }
+        return negative ? -value : value;
+    }
+
+    @Override
+    public int getInt(int field) {
+        check(field);
+        int i = starts[field];
+        int end = ends[field];
+        boolean negative = false;
+        if (i < end && buf[i] == '-') {
+            negative = true;
+            i++;
+        }
+        if (i == end || end - i > 9) {
+            return Integer.parseInt(getString(field).trim());
+        }
+        int value = 0;
+        for (; i < end; i++) {
+            byte b = buf[i];
+            if (b < '0' || b > '9') {
+                return Integer.parseInt(getString(field).trim());
+            }
+            value = value * 10 + (b - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    private void check(int field) {
+        if (starts[field] < 0) {
+            throw new IllegalArgumentException("Field " + fieldNames[field] + " not found");
+        }
+    }
+
+    private void ensureScratch(int len) {
+        if (scratch.length < len) {
+            scratch = new byte[Math.max(len, scratch.length * 2)];
+        }
+    }
+
+    //decode JSON escapes of [start, end) into scratch as UTF-8, returns the decoded length
+    private int unescape(int start, int end) {
+        //escapes never make the value longer
+        ensureScratch(end - start);
+        int n = 0;
+        int i = start;
+        while (i < end) {
+            byte b = buf[i++];
+            if (b != '\\' || i == end) {
+                scratch[n++] = b;
+                continue;
+            }
+            byte c = buf[i++];
+            switch (c) {
+                case 'n': scratch[n++] = '\n'; break;
+                case 't': scratch[n++] = '\t'; break;
+                case 'r': scratch[n++] = '\r'; break;
+                case 'b': scratch[n++] = '\b'; break;
+                case 'f': scratch[n++] = '\f'; break;
+                case 'u':
+                    int cp = hex4(i, end);
+                    i += 4;
+                    if (Character.isHighSurrogate((char) cp) && i + 6 <= end
+                            && buf[i] == '\\' && buf[i + 1] == 'u') {
+                        int low = hex4(i + 2, end);
+                        if (Character.isLowSurrogate((char) low)) {
+                            cp = Character.toCodePoint((char) cp, (char) low);
+                            i += 6;
+                        }
+                    }
+                    if (Character.isSurrogate((char) cp) && cp <= 0xFFFF) {
+                        cp = 0xFFFD;
+                    }
+                    n = writeUtf8(cp, n);
+                    break;
+                default:
+                    //covers \" \\ and \/
+                    scratch[n++] = c;
+            }
+        }
+        return n;
+    }
+
+    private int hex4(int i, int end) {
+        if (i + 4 > end) {
+            throw new IllegalArgumentException("Truncated unicode escape");
+        }
+        int cp = 0;
+        for (int k = i; k < i + 4; k++) {
+            cp = (cp << 4) | Character.digit((char) buf[k], 16);
+        }
+        if (cp < 0) {
+            throw new IllegalArgumentException("Bad unicode escape");
+        }
+        return cp;
+    }
+
+    private int writeUtf8(int cp, int n) {
+        if (cp < 0x80) {
+            scratch[n++] = (byte) cp;
+        } else if (cp < 0x800) {
+            scratch[n++] = (byte) (0xC0 | (cp >> 6));
+            scratch[n++] = (byte) (0x80 | (cp & 0x3F));
+        } else if (cp < 0x10000) {
+            scratch[n++] = (byte) (0xE0 | (cp >> 12));
+            scratch[n++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+            scratch[n++] = (byte) (0x80 | (cp & 0x3F));
+        } else {
+            scratch[n++] = (byte) (0xF0 | (cp >> 18));
+            scratch[n++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+            scratch[n++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+            scratch[n++] = (byte) (0x80 | (cp & 0x3F));
+        }
+        return n;
+    }
+}
@@ -0,0 +1,144 @@
+package Indexer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+//reads a JSONL dump line by line as raw bytes into one reusable buffer.
+//unlike Scanner there is no regex matching and no charset decoding, a line is only
+//a [start, end) range of buffer() and stays valid until the next call to next()
+public class YELPLineReader implements Closeable {
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+    private final InputStream in;
+    private byte[] buf;
+    private ByteBuffer view;
+    private int pos = 0;
+    private int limit = 0;
+    private boolean eof = false;
+    //bytes of the input dropped from the front of buf
+    private long consumed = 0;
+
+    private int lineStart;
+    private int lineEnd;
+    private long lineNumber = 0;
+
+    public YELPLineReader(InputStream in) {
+        this(in, DEFAULT_BUFFER_SIZE);
+    }
+
+    public YELPLineReader(InputStream in, int bufferSize) {
+        this.in = in;
+        this.buf = new byte[bufferSize];
+        this.view = ByteBuffer.wrap(buf);
+    }
+
+    //advance to the next non-blank line, returns false at the end of the input
+    public boolean next() throws IOException {
+        while (true) {
+            int nl = indexOfNewline(pos);
+            while (nl < 0 && !eof) {
+                //the bytes already scanned hold no newline, only look at what fill() adds
+                int scanned = limit - pos;
+                fill();
+                nl = indexOfNewline(pos + scanned);
+            }
+            if (nl < 0 && pos >= limit) {
+                return false;
+            }
+            int end = nl < 0 ? limit : nl;
+            lineNumber++;
+            lineStart = pos;
+            lineEnd = end;
+            pos = nl < 0 ? limit : nl + 1;
+            trim();
+            if (lineEnd > lineStart) {
+                return true;
+            }
+        }
+    }
+
+    //the buffer holding the current line, replaced when a line does not fit
+    public ByteBuffer buffer() {
+        return view;
+    }
+
+    public byte[] array() {
+        return buf;
+    }
+
+    public int start() {
+        return lineStart;
+    }
+
+    public int end() {
+        return lineEnd;
+    }
+
+    //1-based number of the current line in the file, blank lines included
+    public long lineNumber() {
+        return lineNumber;
+    }
+
+    //bytes of the input up to the end of the current line and its newline, where the next line starts
+    public long position() {
+        return consumed + pos;
+    }
+
+    //decode the current line, only meant for error messages
+    public String lineAsString() {
+        return new String(buf, lineStart, lineEnd - lineStart, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private int indexOfNewline(int from) {
+        for (int i = from; i < limit; i++) {
+            if (buf[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    //move the unread tail to the front and read more, growing the buffer for very long lines
+    private void fill() throws IOException {
+        if (pos > 0) {
+            System.arraycopy(buf, pos, buf, 0, limit - pos);
+            consumed += pos;
+            limit -= pos;
+            pos = 0;
+        }
+        if (limit == buf.length) {
+            byte[] bigger = new byte[buf.length * 2];
+            System.arraycopy(buf, 0, bigger, 0, limit);
+            buf = bigger;
+            view = ByteBuffer.wrap(buf);
+        }
+        int n = in.read(buf, limit, buf.length - limit);
+        if (n < 0) {
+            eof = true;
+        } else {
+            limit += n;
+        }
+    }
+
+    private void trim() {
+        while (lineStart < lineEnd && isWhitespace(buf[lineStart])) {
+            lineStart++;
+        }
+        while (lineEnd > lineStart && isWhitespace(buf[lineEnd - 1])) {
+            lineEnd--;
+        }
+    }
+
+    //ASCII control and space only, UTF-8 continuation bytes are negative
+    private static boolean isWhitespace(byte b) {
+        return b >= 0 && b <= ' ';
+    }
+}
@@ -1,94 +1,128 @@
 package Indexer;
 
-import org.apache.lucene.analysis.Analyzer;
-import org.apache.lucene.analysis.standard.StandardAnalyzer;
-import org.apache.lucene.document.*;
-import org.apache.lucene.index.IndexOptions;
-import org.apache.lucene.index.IndexWriter;
-import org.apache.lucene.index.IndexWriterConfig;
-import org.apache.lucene.search.similarities.Similarity;
-import org.apache.lucene.store.Directory;
-import org.apache.lucene.store.FSDirectory;
-import org.json.JSONObject;
-
-import java.io.File;
-import java.io.IOException;
-import java.nio.file.Paths;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.Scanner;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DirectoryReader;
 
-public class YELPLocationIndexer {
-    private IndexWriter writer = null;
-    private static final DateFormat sdf = new SimpleDateFormat("yyyy/MM/dd HH:mm:ss");
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+public class YELPLocationIndexer extends YELPBaseIndexer {
+    public static final String NAME_FIELD = "resteraunt_name";
+    //one lower case term per category, e.g. "mexican"
+    public static final String CATEGORIES_FIELD = "categories";
+    public static final String GEO_FIELD = "geo_point";
+    //the business's own review count and average rating from the dump, weights of YELPSuggester names
+    public static final String REVIEW_COUNT_FIELD = "review_count";
+    public static final String STARS_FIELD = "star";
 
     public YELPLocationIndexer(String dir) throws IOException {
-        //specify the directory to store the Lucene index
-        Directory indexDir = FSDirectory.open(Paths.get(dir));
-        //specify the analyzer used in indexing
-        StandardAnalyzer analyzer = new StandardAnalyzer();
-        IndexWriterConfig cfg = new IndexWriterConfig(analyzer);
-        cfg.setOpenMode(IndexWriterConfig.OpenMode.CREATE);
-
-        writer = new IndexWriter(indexDir,cfg);
+        this(dir, YELPIndexerOptions.rebuild());
     }
 
-    public void indexYelpsResterauntLocation(String fileName) throws Exception {
-
-        System.out.println("Start indexing "+fileName+" "+sdf.format(new Date()));
+    public YELPLocationIndexer(String dir, YELPIndexerOptions options) throws IOException {
+        super(dir, null, options);
+    }
 
-        //read a JSON file
-        Scanner in = new Scanner(new File(fileName));
-        int lineNumber = 1;
-        String jLine = "";
+    public void indexYelpsResterauntLocation(String fileName) throws Exception {
+        indexYelps(fileName);
+    }
 
-        while (in.hasNextLine()) {
+    //business names for type-ahead, null when no suggester is built
+    private YELPSuggesterBuilder suggester = null;
+    private String suggesterFile = null;
+
+    //also build a YELPSuggester from the names, locations and weights of the business records, written to
+    //fileName once indexing finishes. an incremental run starts from the businesses already indexed
+    public YELPLocationIndexer setSuggester(YELPSuggesterBuilder builder, String fileName) throws IOException {
+        suggesterFile = fileName;
+        suggester = builder;
+        if (isIncremental()) {
+            DirectoryReader previous = DirectoryReader.open(getWriter());
             try {
-                jLine = in.nextLine().trim();
-                //parse the JSON file and extract the values for "question" and "answer"
-                JSONObject jObj = new JSONObject(jLine);
-
+                suggester.addBusinesses(previous);
+            } finally {
+                previous.close();
+            }
+        }
+        return this;
+    }
 
-                String businessId = jObj.getString("business_id");
-                String name = jObj.getString("name");
-                double latitude = Double.parseDouble(jObj.getString("latitude"));
-                double longitude = Double.parseDouble(jObj.getString("longitude"));
+    //JSON fields read from each business record
+    private static final String[] FIELDS = {"business_id", "name", "latitude", "longitude", "categories", "stars",
+            "review_count"};
+    private static final int BUSINESS_ID = 0, NAME = 1, LATITUDE = 2, LONGITUDE = 3, CATEGORIES = 4, STARS = 5,
+            REVIEW_COUNT = 6;
 
-                //create a document for each JSON record
-                Document doc=getDocument(latitude,longitude,businessId, name);
+    @Override
+    protected String[] getFields() {
+        return FIELDS;
+    }
 
-                //index the document
-                writer.addDocument(doc);
+    //the JSON fields read from each record, e.g. for a YELPSnapshotWriter
+    public static String[] jsonFields() {
+        return FIELDS.clone();
+    }
 
-                lineNumber++;
+    @Override
+    protected int getKeyField() {
+        return BUSINESS_ID;
+    }
 
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+    @Override
+    protected Document getDocument(YELPRecord record) throws Exception {
+        String businessId = record.getString(BUSINESS_ID);
+        String name = record.getString(NAME);
+        double latitude = record.getDouble(LATITUDE);
+        double longitude = record.getDouble(LONGITUDE);
+        String categories = record.has(CATEGORIES) ? record.getString(CATEGORIES) : null;
+        double stars = record.has(STARS) ? record.getDouble(STARS) : 0;
+        long reviewCount = record.has(REVIEW_COUNT) ? record.getInt(REVIEW_COUNT) : 0;
+        if (suggester != null) {
+            suggester.addBusiness(businessId, name, latitude, longitude, reviewCount, stars);
         }
-        //close the file reader
-        in.close();
-        System.out.println("Index completed at " + sdf.format(new Date()));
-        System.out.println("Total number of documents indexed: " + writer.maxDoc());
-
-        //close the index writer.
-        writer.close();
 
+        //create a document for each JSON record
+        return getDocument(latitude,longitude,businessId, name, categories, stars, reviewCount);
     }
 
-    protected Document getDocument(double latitude, double longitude, String businessid, String name) {
+    protected Document getDocument(double latitude, double longitude, String businessid, String name, String categories,
+                                   double stars, long reviewCount) {
         Document doc = new Document();
 
-        FieldType ft = new FieldType(TextField.TYPE_STORED);
-        ft.setIndexOptions(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS);
-        //ft.setIndexOptions(IndexOptions.DOCS_AND_FREQS);
-        ft.setStoreTermVectors(true);
-
-        doc.add(new StoredField("business_id", businessid, ft));
-        doc.add(new StoredField("resteraunt_name",name));
-        doc.add(new LatLonPoint("geo_point", latitude,longitude));
+        schema.add(doc, BUSINESS_ID_FIELD, businessid);
+        schema.add(doc, NAME_FIELD, name);
+        schema.addPoint(doc, GEO_FIELD, latitude, longitude);
+        for (String category : parseCategories(categories)) {
+            schema.add(doc, CATEGORIES_FIELD, category);
+        }
+        schema.add(doc, STARS_FIELD, stars);
+        schema.add(doc, REVIEW_COUNT_FIELD, reviewCount);
 
         return doc;
     }
+
+    @Override
+    protected void finishIndexing() throws IOException {
+        if (suggester != null) {
+            suggester.write(suggesterFile);
+        }
+    }
+
+    //categories are a JSON array in some dumps and a comma separated string in others, the raw
+    //value of either is split into lower case names
+    static List<String> parseCategories(String categories) {
+        List<String> names = new ArrayList<String>();
+        if (categories == null || categories.equals("null")) {
+            return names;
+        }
+        for (String name : categories.split("[\\[\\]\",]+")) {
+            name = name.trim();
+            if (!name.isEmpty()) {
+                names.add(name.toLowerCase(Locale.ROOT));
+            }
+        }
+        return names;
+    }
 }
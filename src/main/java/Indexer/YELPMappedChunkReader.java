@@ -0,0 +1,160 @@
+package Indexer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+//memory-maps a JSONL dump and splits it into newline aligned chunks that can be read
+//by independent threads. lines are handed out as ranges of the mapped buffer, nothing is
+//decoded or copied by the reader itself
+public class YELPMappedChunkReader implements Closeable {
+    //a single mapping is limited to 2GB, big files get at least size / MAX_CHUNK_BYTES chunks
+    public static final long MAX_CHUNK_BYTES = 1L << 30;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final long size;
+    private final List<Chunk> chunks;
+
+    public YELPMappedChunkReader(String fileName, int numChunks) throws IOException {
+        this(fileName, numChunks, 0);
+    }
+
+    //only chunk the part of the file from offset on, which must be a line start
+    public YELPMappedChunkReader(String fileName, int numChunks, long offset) throws IOException {
+        if (numChunks < 1) {
+            throw new IllegalArgumentException("numChunks must be positive");
+        }
+        file = new RandomAccessFile(fileName, "r");
+        channel = file.getChannel();
+        size = channel.size();
+        numChunks = (int) Math.max(numChunks, (size - offset + MAX_CHUNK_BYTES - 1) / MAX_CHUNK_BYTES);
+        chunks = Collections.unmodifiableList(split(numChunks, Math.min(offset, size)));
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public List<Chunk> getChunks() {
+        return chunks;
+    }
+
+    //called for every non-blank line of a chunk, buf[start, end) is only valid during the call
+    public interface LineHandler {
+        void line(MappedByteBuffer buf, int start, int end, long fileOffset) throws Exception;
+    }
+
+    //map the chunk and feed its lines to handler, returns the number of lines read
+    public long read(Chunk chunk, LineHandler handler) throws Exception {
+        MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, chunk.start, chunk.end - chunk.start);
+        int limit = buf.limit();
+        long lines = 0;
+        int lineStart = 0;
+        while (lineStart < limit) {
+            int lineEnd = lineStart;
+            while (lineEnd < limit && buf.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            int next = lineEnd + 1;
+
+            //trim, \r from windows line ends included
+            while (lineStart < lineEnd && isWhitespace(buf.get(lineStart))) {
+                lineStart++;
+            }
+            while (lineEnd > lineStart && isWhitespace(buf.get(lineEnd - 1))) {
+                lineEnd--;
+            }
+            if (lineEnd > lineStart) {
+                handler.line(buf, lineStart, lineEnd, chunk.start + lineStart);
+                lines++;
+            }
+            lineStart = next;
+        }
+        return lines;
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    //cut at roughly equal offsets, then move every cut past the next newline
+    private List<Chunk> split(int numChunks, long offset) throws IOException {
+        List<Chunk> result = new ArrayList<Chunk>(numChunks);
+        long start = offset;
+        for (int i = 1; i <= numChunks && start < size; i++) {
+            long end = i == numChunks ? size : nextLineStart(offset + (size - offset) / numChunks * i);
+            if (end > start) {
+                result.add(new Chunk(result.size(), start, end));
+                start = end;
+            }
+        }
+        return result;
+    }
+
+    private long nextLineStart(long pos) throws IOException {
+        if (pos <= 0) {
+            return 0;
+        }
+        ByteBuffer probe = ByteBuffer.allocate(8192);
+        while (pos < size) {
+            probe.clear();
+            int n = channel.read(probe, pos);
+            if (n <= 0) {
+                break;
+            }
+            for (int i = 0; i < n; i++) {
+                if (probe.get(i) == '\n') {
+                    return pos + i + 1;
+                }
+            }
+            pos += n;
+        }
+        return size;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b >= 0 && b <= ' ';
+    }
+
+    //a [start, end) byte range of the file that starts at a line start and ends after a newline
+    public static class Chunk {
+        private final int index;
+        private final long start;
+        private final long end;
+
+        Chunk(int index, long start, long end) {
+            this.index = index;
+            this.start = start;
+            this.end = end;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public long getStart() {
+            return start;
+        }
+
+        public long getEnd() {
+            return end;
+        }
+
+        public long length() {
+            return end - start;
+        }
+
+        @Override
+        public String toString() {
+            return "chunk " + index + " [" + start + ", " + end + ")";
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package Indexer;
+
+//the fields one indexer consumes from a single Yelp record, addressed by their position
+//in the indexer's field list instead of by name
+public interface YELPRecord {
+
+    //true if the field was present in the record
+    boolean has(int field);
+
+    String getString(int field);
+
+    double getDouble(int field);
+
+    int getInt(int field);
+}
@@ -1,90 +1,91 @@
 package Indexer;
 
-import java.io.File;
 import java.io.IOException;
-import java.nio.file.Paths;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.List;
-import java.util.Scanner;
-
-import org.apache.lucene.analysis.Analyzer;
-import org.apache.lucene.analysis.standard.StandardAnalyzer;
-import org.apache.lucene.document.*;
-import org.apache.lucene.index.IndexOptions;
-import org.apache.lucene.index.IndexWriter;
-import org.apache.lucene.index.IndexWriterConfig;
-import org.apache.lucene.index.IndexWriterConfig.OpenMode;
-import org.apache.lucene.index.IndexableField;
-import org.apache.lucene.search.similarities.Similarity;
-import org.apache.lucene.store.Directory;
-import org.apache.lucene.store.FSDirectory;
-import org.json.JSONObject;
-
-public class YELPReviewIndexer {
-    private IndexWriter writer = null;
-
-    private static final DateFormat sdf = new SimpleDateFormat("yyyy/MM/dd HH:mm:ss");
 
-    public YELPReviewIndexer(String dir, Similarity similarity) throws IOException {
-        //specify the directory to store the Lucene index
-        Directory indexDir = FSDirectory.open(Paths.get(dir));
+import org.apache.lucene.document.Document;
+import org.apache.lucene.search.similarities.Similarity;
 
-        //specify the analyzer used in indexing
-        Analyzer analyzer = new StandardAnalyzer();
-        IndexWriterConfig cfg = new IndexWriterConfig(analyzer);
-        cfg.setOpenMode(OpenMode.CREATE);
-        cfg.setSimilarity(similarity);
+public class YELPReviewIndexer extends YELPBaseIndexer {
+    //review date as days since 1970-01-01
+    public static final String DATE_FIELD = "date";
+    //usefulness of the reviewer, 0 until YELPReviewerWeightJoiner fills it in from the user index
+    public static final String REVIEWER_WEIGHT_FIELD = "reviewer_weight";
 
-        //create the IndexWriter
-        writer = new IndexWriter(indexDir, cfg);
+    //similarity only affects query time scoring: Classic and BM25 encode the same length norms,
+    //so one review index serves both models and the scoring model is chosen in YELPSearcher
+    public YELPReviewIndexer(String dir) throws IOException {
+        this(dir, null, YELPIndexerOptions.rebuild());
     }
 
+    public YELPReviewIndexer(String dir, YELPIndexerOptions options) throws IOException {
+        this(dir, null, options);
+    }
 
-    public void indexYelps(String fileName) throws Exception {
-
-        System.out.println("Start indexing "+fileName+" "+sdf.format(new Date()));
-
-        //read a JSON file
-        Scanner in = new Scanner(new File(fileName));
-        int lineNumber = 1;
-        String jLine = "";
+    public YELPReviewIndexer(String dir, Similarity similarity) throws IOException {
+        this(dir, similarity, YELPIndexerOptions.rebuild());
+    }
 
-        while (in.hasNextLine()) {
-            try {
-                jLine = in.nextLine().trim();
-                //parse the JSON file and extract the values for "question" and "answer"
-                JSONObject jObj = new JSONObject(jLine);
+    public YELPReviewIndexer(String dir, Similarity similarity, YELPIndexerOptions options) throws IOException {
+        super(dir, similarity, options);
+    }
 
 
-                String userId = jObj.getString("user_id");
-                String business = jObj.getString("business_id");
-                double ranking = Double.parseDouble(jObj.getString("stars"));
-                String review = jObj.getString("text");
+    //JSON fields read from each review record
+    private static final String[] FIELDS = {"review_id", "user_id", "business_id", "stars", "text", "date"};
+    private static final int REVIEW_ID = 0, USER_ID = 1, BUSINESS_ID = 2, STARS = 3, TEXT = 4, DATE = 5;
 
+    @Override
+    protected String[] getFields() {
+        return FIELDS;
+    }
 
-                //create a document for each JSON record
-                Document doc=getDocument(userId, business,ranking,review);
+    //the JSON fields read from each record, e.g. for a YELPSnapshotWriter
+    public static String[] jsonFields() {
+        return FIELDS.clone();
+    }
 
-                //index the document
-                writer.addDocument(doc);
+    @Override
+    protected int getKeyField() {
+        return REVIEW_ID;
+    }
 
-                lineNumber++;
+    //the reviews of a business stay in one shard
+    @Override
+    protected String getShardField() {
+        return BUSINESS_ID_FIELD;
+    }
 
-            } catch (Exception e) {
-                System.out.println("Error at: " + lineNumber + "\t" + jLine);
-                e.printStackTrace();
-            }
+    @Override
+    protected Document getDocument(YELPRecord record) throws Exception {
+        String reviewId = record.getString(REVIEW_ID);
+        String userId = record.getString(USER_ID);
+        String business = record.getString(BUSINESS_ID);
+        double ranking = record.getDouble(STARS);
+        String review = record.getString(TEXT);
+
+        //create a document for each JSON record
+        Document doc = getDocument(userId, business,ranking,review);
+        schema.add(doc, REVIEW_ID_FIELD, reviewId);
+        if (record.has(DATE)) {
+            schema.add(doc, DATE_FIELD, epochDay(record.getString(DATE)));
         }
-        //close the file reader
-        in.close();
-        System.out.println("Index completed at " + sdf.format(new Date()));
-        System.out.println("Total number of documents indexed: " + writer.maxDoc());
-
-        //close the index writer.
-        writer.close();
+        //doc values can only be updated in place when the field already exists
+        schema.add(doc, REVIEWER_WEIGHT_FIELD, 0.0);
+        return doc;
+    }
 
+    //days since 1970-01-01 of a "yyyy-MM-dd" date, anything after the day is ignored
+    static long epochDay(String date) {
+        long y = Long.parseLong(date.substring(0, 4));
+        int m = Integer.parseInt(date.substring(5, 7));
+        int d = Integer.parseInt(date.substring(8, 10));
+        //days from civil, with years starting in March so the leap day is last
+        y -= m <= 2 ? 1 : 0;
+        long era = (y >= 0 ? y : y - 399) / 400;
+        long yoe = y - era * 400;
+        long doy = (153 * (m + (m > 2 ? -3 : 9)) + 2) / 5 + d - 1;
+        long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097 + doe - 719468;
     }
 
 
@@ -92,20 +93,12 @@ public class YELPReviewIndexer {
     protected Document getDocument(String userId, String business, double star, String review) throws Exception {
         Document doc = new Document();
 
-        FieldType ft = new FieldType(TextField.TYPE_STORED);
-        //ft.setIndexOptions(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS);
-
-        ft.setIndexOptions(IndexOptions.DOCS_AND_FREQS);
-        ft.setStoreTermVectors(true);
-
-        doc.add(new Field("user_id", userId, ft));
-
-
-        doc.add(new Field("business_id", business, ft));
-        doc.add(new DoubleDocValuesField("star",star));
+        schema.add(doc, USER_ID_FIELD, userId);
+        schema.add(doc, BUSINESS_ID_FIELD, business);
+        schema.add(doc, "star", star);
 
 
-        doc.add(new TextField("review", review , Field.Store.YES));
+        schema.add(doc, "review", review);
 
         return doc;
     }
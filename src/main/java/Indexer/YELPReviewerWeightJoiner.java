@@ -0,0 +1,102 @@
+package Indexer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.Bits;
+
+//follow-up job to user and review indexing: copies how useful each reviewer is from the user index into
+//the reviewer_weight doc values of all their reviews, so ranking reads it per review without a join at
+//query time. the column is updated in place, no review is reindexed. run it again after either index
+//changed, reviews written since the last run have weight 0
+public class YELPReviewerWeightJoiner {
+    private static final DateFormat sdf = new SimpleDateFormat("yyyy/MM/dd HH:mm:ss");
+
+    private final String userIndex;
+    private final String reviewIndex;
+
+    public YELPReviewerWeightJoiner(String userIndex, String reviewIndex) {
+        this.userIndex = userIndex;
+        this.reviewIndex = reviewIndex;
+    }
+
+    //log(1 + useful votes the user received), 0 for users nobody found useful
+    public static double reviewerWeight(long useful) {
+        return Math.log1p(Math.max(0, useful));
+    }
+
+    public void run() throws IOException {
+        System.out.println("Start joining reviewer weights into " + reviewIndex + " " + sdf.format(new Date()));
+        List<IndexWriter> writers = openReviews(reviewIndex);
+        long users = 0;
+        try {
+            DirectoryReader reader = DirectoryReader.open(FSDirectory.open(Paths.get(userIndex)));
+            try {
+                for (LeafReaderContext context : reader.leaves()) {
+                    LeafReader leaf = context.reader();
+                    SortedDocValues ids = leaf.getSortedDocValues(YELPBaseIndexer.USER_ID_FIELD);
+                    NumericDocValues useful = leaf.getNumericDocValues("useful");
+                    Bits live = leaf.getLiveDocs();
+                    if (ids == null) {
+                        continue;
+                    }
+                    for (int doc = ids.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = ids.nextDoc()) {
+                        if (live != null && !live.get(doc)) {
+                            continue;
+                        }
+                        long votes = useful != null && useful.advanceExact(doc) ? useful.longValue() : 0;
+                        long weight = Double.doubleToRawLongBits(reviewerWeight(votes));
+                        Term user = new Term(YELPBaseIndexer.USER_ID_FIELD, ids.binaryValue().utf8ToString());
+                        for (IndexWriter writer : writers) {
+                            writer.updateNumericDocValue(user, YELPReviewIndexer.REVIEWER_WEIGHT_FIELD, weight);
+                        }
+                        users++;
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+            for (IndexWriter writer : writers) {
+                writer.commit();
+            }
+            System.out.println("Joined the weights of " + users + " users at " + sdf.format(new Date()));
+        } finally {
+            for (IndexWriter writer : writers) {
+                writer.close();
+            }
+        }
+    }
+
+    //a writer on the review index, or one per shard when it is sharded
+    private static List<IndexWriter> openReviews(String dir) throws IOException {
+        List<String> dirs = new ArrayList<String>();
+        if (!Files.isDirectory(Paths.get(YELPBaseIndexer.shardDir(dir, 0)))) {
+            dirs.add(dir);
+        }
+        for (int i = 0; Files.isDirectory(Paths.get(YELPBaseIndexer.shardDir(dir, i))); i++) {
+            dirs.add(YELPBaseIndexer.shardDir(dir, i));
+        }
+        YELPIndexerOptions options = YELPIndexerOptions.incremental();
+        List<IndexWriter> writers = new ArrayList<IndexWriter>();
+        for (String d : dirs) {
+            writers.add(new IndexWriter(FSDirectory.open(Paths.get(d)), options.newIndexWriterConfig(new StandardAnalyzer(), null)));
+        }
+        return writers;
+    }
+}
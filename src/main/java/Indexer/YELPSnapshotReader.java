@@ -0,0 +1,131 @@
+package Indexer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+//memory-maps a snapshot written by YELPSnapshotWriter and splits it at block boundaries into chunks
+//that independent threads read. records are handed out as YELPSnapshotRecord views of the mapped
+//buffer: a field is only copied out when an indexer asks for its value
+public class YELPSnapshotReader implements Closeable {
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final String[] fieldNames;
+    private final long recordCount;
+    private final long[] blocks;
+    //where the records end and the block offsets start
+    private final long end;
+
+    public YELPSnapshotReader(String fileName) throws IOException {
+        file = new RandomAccessFile(fileName, "r");
+        try {
+            channel = file.getChannel();
+            long size = channel.size();
+            if (size < 8 + YELPSnapshotWriter.FOOTER_BYTES || file.readInt() != YELPSnapshotWriter.MAGIC) {
+                throw new IOException("not a snapshot file: " + fileName);
+            }
+            fieldNames = new String[file.readInt()];
+            for (int i = 0; i < fieldNames.length; i++) {
+                byte[] name = new byte[file.readInt()];
+                file.readFully(name);
+                fieldNames[i] = new String(name, StandardCharsets.UTF_8);
+            }
+            file.seek(size - YELPSnapshotWriter.FOOTER_BYTES);
+            recordCount = file.readLong();
+            blocks = new long[file.readInt()];
+            end = file.readLong();
+            if (file.readInt() != YELPSnapshotWriter.MAGIC) {
+                throw new IOException("incomplete snapshot file: " + fileName);
+            }
+            file.seek(end);
+            for (int i = 0; i < blocks.length; i++) {
+                blocks[i] = file.readLong();
+            }
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    public String[] getFieldNames() {
+        return fieldNames.clone();
+    }
+
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    //bytes of records
+    public long size() {
+        return blocks.length == 0 ? 0 : end - blocks[0];
+    }
+
+    //about numChunks chunks of whole blocks, more when a chunk would exceed YELPMappedChunkReader.MAX_CHUNK_BYTES
+    public List<YELPMappedChunkReader.Chunk> getChunks(int numChunks) {
+        if (numChunks < 1) {
+            throw new IllegalArgumentException("numChunks must be positive");
+        }
+        List<YELPMappedChunkReader.Chunk> chunks = new ArrayList<YELPMappedChunkReader.Chunk>();
+        long target = Math.max(1, size() / numChunks);
+        int first = 0;
+        while (first < blocks.length) {
+            int last = first + 1;
+            while (last < blocks.length && blocks[last] - blocks[first] < target
+                    && blockEnd(last) - blocks[first] <= YELPMappedChunkReader.MAX_CHUNK_BYTES) {
+                last++;
+            }
+            chunks.add(new YELPMappedChunkReader.Chunk(chunks.size(), blocks[first], blockEnd(last - 1)));
+            first = last;
+        }
+        return chunks;
+    }
+
+    //a record view that reads the fields, in this order, from the snapshot's fields
+    public YELPSnapshotRecord newRecord(String[] fields) {
+        List<String> available = Arrays.asList(fieldNames);
+        int[] columns = new int[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            columns[i] = available.indexOf(fields[i]);
+            if (columns[i] < 0) {
+                throw new IllegalArgumentException("snapshot has no field " + fields[i] + ", it holds "
+                        + available + ". convert the dump again with the fields of this indexer");
+            }
+        }
+        return new YELPSnapshotRecord(fields, columns, fieldNames.length);
+    }
+
+    //called for every record of a chunk, record only points at it during the call
+    public interface RecordHandler {
+        void record(YELPSnapshotRecord record, long fileOffset) throws Exception;
+    }
+
+    //map the chunk and feed its records to handler through record, returns the number of records read
+    public long read(YELPMappedChunkReader.Chunk chunk, YELPSnapshotRecord record, RecordHandler handler) throws Exception {
+        MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, chunk.getStart(), chunk.length());
+        int limit = buf.limit();
+        long records = 0;
+        int pos = 0;
+        while (pos < limit) {
+            int next = record.reset(buf, pos);
+            handler.record(record, chunk.getStart() + pos);
+            records++;
+            pos = next;
+        }
+        return records;
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    private long blockEnd(int block) {
+        return block + 1 < blocks.length ? blocks[block + 1] : end;
+    }
+}
@@ -0,0 +1,113 @@
+package Indexer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+//one record of a mapped YELPSnapshotReader chunk, the fields of an indexer addressed by their position
+//in its field list. values are read straight from the mapping, and reused record after record like a
+//YELPJsonRecord, so one instance per thread is enough
+public class YELPSnapshotRecord implements YELPRecord {
+    private final String[] fieldNames;
+    //snapshot column of each indexer field
+    private final int[] columns;
+    private final int[] starts;
+    private final int[] lengths;
+    private ByteBuffer buf;
+    //positioned copy of buf for bulk reads
+    private ByteBuffer view;
+    private long crc;
+    private byte[] scratch = new byte[256];
+
+    YELPSnapshotRecord(String[] fieldNames, int[] columns, int snapshotFields) {
+        this.fieldNames = fieldNames;
+        this.columns = columns;
+        this.starts = new int[snapshotFields];
+        this.lengths = new int[snapshotFields];
+    }
+
+    //point at the record starting at pos, returns where the next one starts
+    int reset(ByteBuffer buf, int pos) {
+        if (this.buf != buf) {
+            this.buf = buf;
+            view = buf.duplicate();
+        }
+        int body = buf.getInt(pos);
+        crc = buf.getLong(pos + 4);
+        int lengthsAt = pos + 12;
+        int value = lengthsAt + 4 * lengths.length;
+        for (int i = 0; i < lengths.length; i++) {
+            lengths[i] = buf.getInt(lengthsAt + 4 * i);
+            starts[i] = value;
+            if (lengths[i] > 0) {
+                value += lengths[i];
+            }
+        }
+        return pos + 4 + body;
+    }
+
+    //CRC32 of the JSON line the record was converted from, the same as YELPJsonRecord.checksum()
+    public long checksum() {
+        return crc;
+    }
+
+    @Override
+    public boolean has(int field) {
+        return lengths[columns[field]] >= 0;
+    }
+
+    @Override
+    public String getString(int field) {
+        int len = copy(field);
+        return new String(scratch, 0, len, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public double getDouble(int field) {
+        return Double.parseDouble(getString(field).trim());
+    }
+
+    //plain [-]digits values are parsed in place, anything else falls back to Integer.parseInt
+    @Override
+    public int getInt(int field) {
+        int column = check(field);
+        int i = starts[column];
+        int end = i + lengths[column];
+        boolean negative = false;
+        if (i < end && buf.get(i) == '-') {
+            negative = true;
+            i++;
+        }
+        if (i == end || end - i > 9) {
+            return Integer.parseInt(getString(field).trim());
+        }
+        int value = 0;
+        for (; i < end; i++) {
+            byte b = buf.get(i);
+            if (b < '0' || b > '9') {
+                return Integer.parseInt(getString(field).trim());
+            }
+            value = value * 10 + (b - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    private int check(int field) {
+        int column = columns[field];
+        if (lengths[column] < 0) {
+            throw new IllegalArgumentException("Field " + fieldNames[field] + " not found");
+        }
+        return column;
+    }
+
+    //copy the value of field into scratch, returns its length
+    private int copy(int field) {
+        int column = check(field);
+        int len = lengths[column];
+        if (scratch.length < len) {
+            scratch = new byte[Math.max(len, scratch.length * 2)];
+        }
+        view.position(starts[column]);
+        view.get(scratch, 0, len);
+        return len;
+    }
+}
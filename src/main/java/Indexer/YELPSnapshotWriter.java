@@ -0,0 +1,109 @@
+package Indexer;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+//converts a JSONL dump once into a YELPSnapshotReader file holding only the given fields, already
+//unescaped, so rebuilds with another schema or similarity skip the JSON parsing.
+//a record is its body length, the CRC32 of its JSON line (unchanged records are still detected by
+//incremental runs), the byte length of every field (-1 when missing) and the field bytes. the file
+//starts with the field names and ends with the offset of every BLOCK_BYTES block of records, where
+//readers can split it
+public class YELPSnapshotWriter {
+    static final int MAGIC = 0x59534e31; //"YSN1"
+    static final int BLOCK_BYTES = 1 << 20;
+    //record count, block count, start of the block offsets and magic
+    static final int FOOTER_BYTES = 8 + 4 + 8 + 4;
+
+    private static final DateFormat sdf = new SimpleDateFormat("yyyy/MM/dd HH:mm:ss");
+
+    private final String[] fields;
+
+    //fields to keep, e.g. YELPReviewIndexer.jsonFields() or more for schema experiments
+    public YELPSnapshotWriter(String... fields) {
+        this.fields = fields.clone();
+    }
+
+    //convert fileName to snapshotFile, replacing it only once the new file is complete.
+    //returns the number of records, lines that are not JSON objects are reported and left out
+    public long write(String fileName, String snapshotFile) throws IOException {
+        System.out.println("Start converting " + fileName + " " + sdf.format(new Date()));
+        File target = new File(snapshotFile);
+        File tmp = new File(snapshotFile + ".tmp");
+        YELPJsonFieldExtractor extractor = new YELPJsonFieldExtractor(fields);
+        YELPJsonRecord record = extractor.newRecord();
+        YELPLineReader in = new YELPLineReader(new FileInputStream(fileName));
+        YELPCountingOutput out = new YELPCountingOutput(new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16));
+        List<Long> blocks = new ArrayList<Long>();
+        long records = 0;
+        long failed = 0;
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(fields.length);
+            for (String field : fields) {
+                byte[] name = field.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(name.length);
+                out.write(name);
+            }
+            byte[][] values = new byte[fields.length][];
+            while (in.next()) {
+                int body = 8 + 4 * fields.length;
+                try {
+                    extractor.extract(in.array(), in.start(), in.end(), record);
+                    for (int i = 0; i < fields.length; i++) {
+                        values[i] = record.has(i) ? record.getBytes(i) : null;
+                        body += values[i] == null ? 0 : values[i].length;
+                    }
+                } catch (Exception e) {
+                    failed++;
+                    System.out.println("Error at: " + in.lineNumber() + "\t" + in.lineAsString());
+                    e.printStackTrace();
+                    continue;
+                }
+                if (blocks.isEmpty() || out.position - blocks.get(blocks.size() - 1) >= BLOCK_BYTES) {
+                    blocks.add(out.position);
+                }
+                out.writeInt(body);
+                out.writeLong(record.checksum());
+                for (byte[] value : values) {
+                    out.writeInt(value == null ? -1 : value.length);
+                }
+                for (byte[] value : values) {
+                    if (value != null) {
+                        out.write(value);
+                    }
+                }
+                records++;
+            }
+            long blocksStart = out.position;
+            for (long block : blocks) {
+                out.writeLong(block);
+            }
+            out.writeLong(records);
+            out.writeInt(blocks.size());
+            out.writeLong(blocksStart);
+            out.writeInt(MAGIC);
+        } finally {
+            in.close();
+            out.close();
+        }
+        if (target.exists() && !target.delete()) {
+            throw new IOException("cannot replace " + snapshotFile);
+        }
+        if (!tmp.renameTo(target)) {
+            throw new IOException("cannot rename " + tmp + " to " + snapshotFile);
+        }
+        System.out.println("Converted " + records + " records to " + snapshotFile + " (" + (target.length() >> 20) + " MB"
+                + (failed > 0 ? ", " + failed + " lines failed" : "") + ") " + sdf.format(new Date()));
+        return records;
+    }
+}
@@ -0,0 +1,123 @@
+package Indexer;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.apache.lucene.index.IndexWriter;
+
+//remembers how much of a dump file an index has consumed, stored in the commit user data.
+//a dump that was only appended to keeps the same bytes up to the checkpoint, which is checked
+//with a CRC of every byte before the offset, so a record changed in place is never skipped
+public class YELPSourceCheckpoint {
+    private static final String SOURCE_FILE = "source_file";
+    private static final String SOURCE_OFFSET = "source_offset";
+    private static final String PREFIX_CRC = "source_prefix_crc";
+
+    private final String fileName;
+    private final long offset;
+    private final long prefixCrc;
+
+    private YELPSourceCheckpoint(String fileName, long offset, long prefixCrc) {
+        this.fileName = fileName;
+        this.offset = offset;
+        this.prefixCrc = prefixCrc;
+    }
+
+    //checkpoint for the first offset bytes of fileName
+    public static YELPSourceCheckpoint of(String fileName, long offset) throws IOException {
+        return new Tracker(fileName).at(offset);
+    }
+
+    //the checkpoint of the last commit, null if the index was never committed with one
+    //or with one of an older format
+    public static YELPSourceCheckpoint load(IndexWriter writer) {
+        Map<String, String> data = new HashMap<String, String>();
+        Iterable<Map.Entry<String, String>> live = writer.getLiveCommitData();
+        if (live != null) {
+            for (Map.Entry<String, String> e : live) {
+                data.put(e.getKey(), e.getValue());
+            }
+        }
+        if (!data.containsKey(SOURCE_OFFSET) || !data.containsKey(PREFIX_CRC)) {
+            return null;
+        }
+        return new YELPSourceCheckpoint(data.get(SOURCE_FILE), Long.parseLong(data.get(SOURCE_OFFSET)),
+                Long.parseLong(data.get(PREFIX_CRC)));
+    }
+
+    //record the checkpoint with the next commit of writer
+    public void save(IndexWriter writer) {
+        Map<String, String> data = new HashMap<String, String>();
+        data.put(SOURCE_FILE, fileName);
+        data.put(SOURCE_OFFSET, Long.toString(offset));
+        data.put(PREFIX_CRC, Long.toString(prefixCrc));
+        writer.setLiveCommitData(data.entrySet());
+    }
+
+    //offset to resume fileName from: the checkpoint if the file still starts with the same bytes, else 0.
+    //reads the file up to the checkpoint
+    public long resumeOffset(String fileName) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(fileName, "r");
+        try {
+            if (!fileName.equals(this.fileName) || file.length() < offset) {
+                return 0;
+            }
+            CRC32 crc = new CRC32();
+            update(crc, file, 0, offset);
+            return crc.getValue() == prefixCrc ? offset : 0;
+        } finally {
+            file.close();
+        }
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    //checkpoints of one file at growing offsets, each only reads the bytes since the one before
+    static class Tracker {
+        private final String fileName;
+        private final CRC32 crc = new CRC32();
+        private long offset = 0;
+
+        Tracker(String fileName) {
+            this.fileName = fileName;
+        }
+
+        String getFileName() {
+            return fileName;
+        }
+
+        synchronized YELPSourceCheckpoint at(long offset) throws IOException {
+            if (offset < this.offset) {
+                crc.reset();
+                this.offset = 0;
+            }
+            RandomAccessFile file = new RandomAccessFile(fileName, "r");
+            try {
+                update(crc, file, this.offset, offset);
+            } finally {
+                file.close();
+            }
+            this.offset = offset;
+            return new YELPSourceCheckpoint(fileName, offset, crc.getValue());
+        }
+    }
+
+    private static void update(CRC32 crc, RandomAccessFile file, long start, long end) throws IOException {
+        byte[] buf = new byte[64 * 1024];
+        file.seek(start);
+        long remaining = end - start;
+        while (remaining > 0) {
+            int n = file.read(buf, 0, (int) Math.min(buf.length, remaining));
+            if (n < 0) {
+                throw new IOException("the file ends before byte " + end);
+            }
+            crc.update(buf, 0, n);
+            remaining -= n;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package Indexer;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.geo.GeoEncodingUtils;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.MultiDocValues;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.index.SortedNumericDocValues;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+
+//follow-up job to review indexing: rolls the star of every review up per business and per user into a
+//small stats index, one document per business or user with its review count, average stars and star
+//histogram as doc values. dashboards read those columns instead of scanning the reviews.
+//business documents also get the business location when a location index is given, so businesses
+//near a point can be ranked by rating. the stats index is rebuilt from scratch on every run
+public class YELPStatsAggregator {
+    //"business" or "user"
+    public static final String ENTITY_FIELD = "entity";
+    public static final String BUSINESS = "business";
+    public static final String USER = "user";
+    public static final String REVIEW_COUNT_FIELD = "review_count";
+    public static final String AVG_STARS_FIELD = "avg_stars";
+    public static final String GEO_FIELD = YELPLocationIndexer.GEO_FIELD;
+
+    private static final DateFormat sdf = new SimpleDateFormat("yyyy/MM/dd HH:mm:ss");
+
+    private final String reviewIndex;
+    private final String statsIndex;
+    private String locationIndex = null;
+
+    public YELPStatsAggregator(String reviewIndex, String statsIndex) {
+        this.reviewIndex = reviewIndex;
+        this.statsIndex = statsIndex;
+    }
+
+    //number of reviews with stars rounded to stars, 1 to 5
+    public static String starsField(int stars) {
+        return "stars_" + stars;
+    }
+
+    //copy business locations from this location index into the business stats
+    public YELPStatsAggregator setLocationIndex(String locationIndex) {
+        this.locationIndex = locationIndex;
+        return this;
+    }
+
+    public void run() throws IOException {
+        System.out.println("Start aggregating " + reviewIndex + " " + sdf.format(new Date()));
+        IndexReader reviews = YELPBaseIndexer.openIndex(reviewIndex);
+        try {
+            Stats businesses = aggregate(reviews, YELPBaseIndexer.BUSINESS_ID_FIELD);
+            Stats users = aggregate(reviews, YELPBaseIndexer.USER_ID_FIELD);
+            Map<String, Long> locations = locationIndex == null ? new HashMap<String, Long>() : readLocations(locationIndex);
+
+            YELPIndexerOptions options = YELPIndexerOptions.rebuild();
+            YELPFieldSchema schema = options.getSchema();
+            IndexWriter writer = new IndexWriter(FSDirectory.open(Paths.get(statsIndex)),
+                    options.newIndexWriterConfig(new StandardAnalyzer(), null));
+            try {
+                write(writer, schema, BUSINESS, YELPBaseIndexer.BUSINESS_ID_FIELD, businesses, locations);
+                write(writer, schema, USER, YELPBaseIndexer.USER_ID_FIELD, users, null);
+                writer.commit();
+                System.out.println("Aggregated " + businesses.size() + " businesses and " + users.size() + " users at "
+                        + sdf.format(new Date()));
+            } finally {
+                writer.close();
+            }
+        } finally {
+            reviews.close();
+        }
+    }
+
+    //review count, star sum and histogram by global ordinal of the id in field
+    private static Stats aggregate(IndexReader reader, String field) throws IOException {
+        SortedDocValues ids = MultiDocValues.getSortedValues(reader, field);
+        NumericDocValues stars = MultiDocValues.getNumericValues(reader, "star");
+        Bits live = MultiFields.getLiveDocs(reader);
+        Stats stats = new Stats(ids);
+        if (ids == null) {
+            return stats;
+        }
+        for (int doc = ids.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = ids.nextDoc()) {
+            if (live != null && !live.get(doc)) {
+                continue;
+            }
+            if (stars == null || !stars.advanceExact(doc)) {
+                continue;
+            }
+            double star = Double.longBitsToDouble(stars.longValue());
+            int ord = ids.ordValue();
+            stats.count[ord]++;
+            stats.sum[ord] += star;
+            int bucket = (int) Math.round(star);
+            stats.histogram[ord * 5 + Math.max(1, Math.min(5, bucket)) - 1]++;
+        }
+        return stats;
+    }
+
+    //business id to encoded (latitude << 32 | longitude), as LatLonDocValuesField stores it
+    private static Map<String, Long> readLocations(String locationIndex) throws IOException {
+        Map<String, Long> locations = new HashMap<String, Long>();
+        DirectoryReader reader = DirectoryReader.open(FSDirectory.open(Paths.get(locationIndex)));
+        try {
+            for (LeafReaderContext context : reader.leaves()) {
+                LeafReader leaf = context.reader();
+                SortedDocValues ids = leaf.getSortedDocValues(YELPBaseIndexer.BUSINESS_ID_FIELD);
+                SortedNumericDocValues points = leaf.getSortedNumericDocValues(GEO_FIELD);
+                Bits live = leaf.getLiveDocs();
+                if (ids == null || points == null) {
+                    continue;
+                }
+                for (int doc = points.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = points.nextDoc()) {
+                    if ((live == null || live.get(doc)) && ids.advanceExact(doc)) {
+                        locations.put(ids.binaryValue().utf8ToString(), points.nextValue());
+                    }
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return locations;
+    }
+
+    private static void write(IndexWriter writer, YELPFieldSchema schema, String entity, String idField, Stats stats,
+                              Map<String, Long> locations) throws IOException {
+        for (int ord = 0; ord < stats.size(); ord++) {
+            if (stats.count[ord] == 0) {
+                continue;
+            }
+            BytesRef id = stats.ids.lookupOrd(ord);
+            String idString = id.utf8ToString();
+            Document doc = new Document();
+            schema.add(doc, ENTITY_FIELD, entity);
+            schema.add(doc, idField, idString);
+            schema.add(doc, REVIEW_COUNT_FIELD, stats.count[ord]);
+            schema.add(doc, AVG_STARS_FIELD, stats.sum[ord] / stats.count[ord]);
+            for (int s = 1; s <= 5; s++) {
+                schema.add(doc, starsField(s), (long) stats.histogram[ord * 5 + s - 1]);
+            }
+            Long location = locations == null ? null : locations.get(idString);
+            if (location != null) {
+                schema.addPoint(doc, GEO_FIELD, GeoEncodingUtils.decodeLatitude((int) (location >> 32)),
+                        GeoEncodingUtils.decodeLongitude((int) (long) location));
+            }
+            writer.addDocument(doc);
+        }
+    }
+
+    private static class Stats {
+        final SortedDocValues ids;
+        final long[] count;
+        final double[] sum;
+        final int[] histogram;
+
+        Stats(SortedDocValues ids) {
+            this.ids = ids;
+            int n = ids == null ? 0 : ids.getValueCount();
+            count = new long[n];
+            sum = new double[n];
+            histogram = new int[5 * n];
+        }
+
+        int size() {
+            return count.length;
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package Indexer;
+
+import Metrics.YELPMetrics;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.lucene.store.DataInput;
+import org.apache.lucene.store.DataOutput;
+import org.apache.lucene.store.InputStreamDataInput;
+import org.apache.lucene.store.OutputStreamDataOutput;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IntsRef;
+import org.apache.lucene.util.IntsRefBuilder;
+import org.apache.lucene.util.fst.FST;
+import org.apache.lucene.util.fst.PositiveIntOutputs;
+import org.apache.lucene.util.fst.Util;
+
+//type-ahead over business names and the review vocabulary, built by YELPSuggesterBuilder.
+//one in-memory FST maps every key to the cost MAX_WEIGHT - weight, so the heaviest completions of a
+//prefix are the cheapest paths below it and a lookup walks the prefix and a few paths past it instead of
+//searching the index. business names are keyed by the normalized text from every word on ("grill" finds
+//"Joe's Grill"), once on their own and once behind the geohash cell of the business for lookups near a
+//point. immutable and safe for concurrent lookups
+public class YELPSuggester {
+    static final int MAGIC = 0x59534731; //"YSG1"
+    static final long MAX_WEIGHT = Integer.MAX_VALUE;
+
+    //first byte of a key: a business name, a business name in a geohash cell, a review term
+    static final int NAME = 1;
+    static final int NEAR = 2;
+    static final int TERM = 3;
+    //ends the text of a name key, followed by the name's ordinal in 4 bytes
+    static final int END = 0;
+
+    private static final Comparator<Long> BY_COST = new Comparator<Long>() {
+        @Override
+        public int compare(Long a, Long b) {
+            return a.compareTo(b);
+        }
+    };
+
+    private final FST<Long> fst;
+    private final String[] names;
+    private final int geoPrecision;
+    private YELPMetrics metrics = YELPMetrics.global();
+
+    YELPSuggester(FST<Long> fst, String[] names, int geoPrecision) {
+        this.fst = fst;
+        this.names = names;
+        this.geoPrecision = geoPrecision;
+    }
+
+    //a completion and its weight
+    public static class Suggestion {
+        private final String text;
+        private final long weight;
+
+        Suggestion(String text, long weight) {
+            this.text = text;
+            this.weight = weight;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public long getWeight() {
+            return weight;
+        }
+
+        @Override
+        public String toString() {
+            return text + " (" + weight + ")";
+        }
+    }
+
+    //record lookup latencies as suggest.<names|near|terms>.latency_us into metrics instead of
+    //YELPMetrics.global(), null records nothing
+    public YELPSuggester setMetrics(YELPMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    //the n heaviest business names with a word starting with prefix, multi word prefixes included
+    public List<Suggestion> suggest(String prefix, int n) throws IOException {
+        long start = System.nanoTime();
+        String text = normalizePrefix(prefix);
+        List<Suggestion> result = text.isEmpty() ? new ArrayList<Suggestion>() : names(key(NAME, null, text), n);
+        record("names", start);
+        return result;
+    }
+
+    //the n heaviest business names starting with prefix among the businesses in the geohash cell of
+    //the point and the cells around it
+    public List<Suggestion> suggest(String prefix, double lat, double lon, int n) throws IOException {
+        long start = System.nanoTime();
+        String text = normalizePrefix(prefix);
+        List<Suggestion> result = new ArrayList<Suggestion>();
+        if (!text.isEmpty()) {
+            Map<String, Suggestion> best = new HashMap<String, Suggestion>();
+            for (String cell : YELPGeohash.around(lat, lon, geoPrecision)) {
+                for (Suggestion s : names(key(NEAR, cell, text), n)) {
+                    Suggestion seen = best.get(s.getText());
+                    if (seen == null || seen.getWeight() < s.getWeight()) {
+                        best.put(s.getText(), s);
+                    }
+                }
+            }
+            result.addAll(best.values());
+            Collections.sort(result, new Comparator<Suggestion>() {
+                @Override
+                public int compare(Suggestion a, Suggestion b) {
+                    return Long.compare(b.getWeight(), a.getWeight());
+                }
+            });
+            if (result.size() > n) {
+                result = new ArrayList<Suggestion>(result.subList(0, n));
+            }
+        }
+        record("near", start);
+        return result;
+    }
+
+    //the n review terms starting with prefix that the most reviews use
+    public List<Suggestion> completeTerm(String prefix, int n) throws IOException {
+        long start = System.nanoTime();
+        String text = normalize(prefix);
+        List<Suggestion> result = new ArrayList<Suggestion>();
+        if (!text.isEmpty()) {
+            for (Util.Result<Long> r : top(key(TERM, null, text), n, null)) {
+                result.add(new Suggestion(decode(r.input, 1, r.input.length - 1), MAX_WEIGHT - r.output));
+            }
+        }
+        record("terms", start);
+        return result;
+    }
+
+    //query with its last word completed from the review vocabulary, for the review search box
+    public List<Suggestion> completeQuery(String query, int n) throws IOException {
+        String text = normalizePrefix(query);
+        List<Suggestion> result = new ArrayList<Suggestion>();
+        if (text.isEmpty() || text.endsWith(" ")) {
+            return result;
+        }
+        int last = text.lastIndexOf(' ') + 1;
+        for (Suggestion term : completeTerm(text.substring(last), n)) {
+            result.add(new Suggestion(text.substring(0, last) + term.getText(), term.getWeight()));
+        }
+        return result;
+    }
+
+    //number of distinct business names
+    public int size() {
+        return names.length;
+    }
+
+    public long ramBytesUsed() {
+        return fst.ramBytesUsed();
+    }
+
+    //write the suggester to fileName, replacing it only once the new file is complete
+    public void save(String fileName) throws IOException {
+        File target = new File(fileName);
+        File tmp = new File(fileName + ".tmp");
+        OutputStream stream = new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16);
+        try {
+            DataOutput out = new OutputStreamDataOutput(stream);
+            out.writeInt(MAGIC);
+            out.writeVInt(geoPrecision);
+            out.writeVInt(names.length);
+            for (String name : names) {
+                out.writeString(name);
+            }
+            fst.save(out);
+        } finally {
+            stream.close();
+        }
+        if (target.exists() && !target.delete()) {
+            throw new IOException("cannot replace " + fileName);
+        }
+        if (!tmp.renameTo(target)) {
+            throw new IOException("cannot rename " + tmp + " to " + fileName);
+        }
+    }
+
+    public static YELPSuggester load(String fileName) throws IOException {
+        InputStream stream = new BufferedInputStream(new FileInputStream(fileName), 1 << 16);
+        try {
+            DataInput in = new InputStreamDataInput(stream);
+            if (in.readInt() != MAGIC) {
+                throw new IOException("not a suggester file: " + fileName);
+            }
+            int geoPrecision = in.readVInt();
+            String[] names = new String[in.readVInt()];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = in.readString();
+            }
+            return new YELPSuggester(new FST<Long>(in, PositiveIntOutputs.getSingleton()), names, geoPrecision);
+        } finally {
+            stream.close();
+        }
+    }
+
+    //lower case words of letters and digits separated by single spaces, accents and apostrophes dropped
+    static String normalize(String text) {
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD).toLowerCase(Locale.ROOT);
+        StringBuilder normalized = new StringBuilder(decomposed.length());
+        boolean gap = false;
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (gap && normalized.length() > 0) {
+                    normalized.append(' ');
+                }
+                normalized.append(c);
+                gap = false;
+            } else if (c != '\'' && c != '\u2019' && Character.getType(c) != Character.NON_SPACING_MARK) {
+                gap = true;
+            }
+        }
+        return normalized.toString();
+    }
+
+    //key bytes: the kind, the geohash cell for NEAR keys, then the normalized text
+    static byte[] key(int kind, String cell, String text) {
+        byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+        int cellLength = cell == null ? 0 : cell.length();
+        byte[] key = new byte[1 + cellLength + utf8.length];
+        key[0] = (byte) kind;
+        for (int i = 0; i < cellLength; i++) {
+            key[1 + i] = (byte) cell.charAt(i);
+        }
+        System.arraycopy(utf8, 0, key, 1 + cellLength, utf8.length);
+        return key;
+    }
+
+    //a typed prefix ending in a separator only completes whole words
+    private static String normalizePrefix(String prefix) {
+        String text = normalize(prefix);
+        if (!text.isEmpty() && !Character.isLetterOrDigit(prefix.charAt(prefix.length() - 1))) {
+            return text + " ";
+        }
+        return text;
+    }
+
+    private List<Suggestion> names(byte[] prefix, int n) throws IOException {
+        List<Suggestion> result = new ArrayList<Suggestion>();
+        //a name is reached through several of its words when more than one starts with the prefix
+        final Set<Integer> seen = new HashSet<Integer>();
+        for (Util.Result<Long> r : top(prefix, n, seen)) {
+            result.add(new Suggestion(names[ordinal(r.input)], MAX_WEIGHT - r.output));
+        }
+        return result;
+    }
+
+    //the n cheapest keys starting with prefix, at most one per name ordinal when seen is given
+    private List<Util.Result<Long>> top(byte[] prefix, int n, final Set<Integer> seen) throws IOException {
+        FST.BytesReader reader = fst.getBytesReader();
+        FST.Arc<Long> arc = fst.getFirstArc(new FST.Arc<Long>());
+        long output = 0;
+        for (byte b : prefix) {
+            if (fst.findTargetArc(b & 0xFF, arc, arc, reader) == null) {
+                return Collections.emptyList();
+            }
+            output += arc.output;
+        }
+        Util.TopNSearcher<Long> searcher = new Util.TopNSearcher<Long>(fst, n, 4 * n + 16, BY_COST) {
+            @Override
+            protected boolean acceptResult(IntsRef input, Long cost) {
+                return seen == null || seen.add(ordinal(input));
+            }
+        };
+        IntsRefBuilder start = new IntsRefBuilder();
+        Util.toIntsRef(new BytesRef(prefix), start);
+        searcher.addStartPaths(arc, output, true, start);
+        return searcher.search().topN;
+    }
+
+    private static int ordinal(IntsRef input) {
+        int end = input.offset + input.length;
+        return (input.ints[end - 4] << 24) | (input.ints[end - 3] << 16) | (input.ints[end - 2] << 8) | input.ints[end - 1];
+    }
+
+    private static String decode(IntsRef input, int from, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) input.ints[input.offset + from + i];
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void record(String kind, long start) {
+        YELPMetrics m = metrics;
+        if (m != null) {
+            m.record("suggest." + kind + ".latency_us", (System.nanoTime() - start) / 1000);
+        }
+    }
+}
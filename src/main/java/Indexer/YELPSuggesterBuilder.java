@@ -0,0 +1,276 @@
+package Indexer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.document.DocumentStoredFieldVisitor;
+import org.apache.lucene.geo.GeoEncodingUtils;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.SortedNumericDocValues;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IntsRefBuilder;
+import org.apache.lucene.util.fst.Builder;
+import org.apache.lucene.util.fst.FST;
+import org.apache.lucene.util.fst.PositiveIntOutputs;
+import org.apache.lucene.util.fst.Util;
+
+//collects businesses while they are indexed, or from a location index, and builds a YELPSuggester.
+//records may arrive from several pipeline workers at once, a later record of the same business
+//replaces the earlier one. businesses with the same normalized name are one suggestion with the weight
+//of the heaviest of them, per geohash cell for lookups near a point
+public class YELPSuggesterBuilder {
+    public enum Weight {
+        //most reviewed first
+        REVIEW_COUNT,
+        //best rated first in half stars, most reviewed first among equally rated
+        RATING
+    }
+
+    public static final int DEFAULT_GEO_PRECISION = 4;
+    //suggestions for a name start at no more than this many of its words
+    static final int MAX_WORDS = 8;
+
+    private final Map<String, Business> businesses = new HashMap<String, Business>();
+    private Weight weight = Weight.REVIEW_COUNT;
+    private int geoPrecision = DEFAULT_GEO_PRECISION;
+    private String vocabularyIndex = null;
+    private String vocabularyField = null;
+    private int minDocFreq = 1;
+
+    public YELPSuggesterBuilder setWeight(Weight weight) {
+        this.weight = weight;
+        return this;
+    }
+
+    //geohash length of the cells for lookups near a point, 4 is a cell of about 39 x 20 km
+    public YELPSuggesterBuilder setGeoPrecision(int geoPrecision) {
+        if (geoPrecision < 1 || geoPrecision > 12) {
+            throw new IllegalArgumentException("geohash precision must be 1 to 12: " + geoPrecision);
+        }
+        this.geoPrecision = geoPrecision;
+        return this;
+    }
+
+    //also complete the terms of field in the committed index in dir (e.g. "review" of the review index)
+    //used by at least minDocFreq documents, weighted by their document frequency. read when building
+    public YELPSuggesterBuilder setVocabulary(String dir, String field, int minDocFreq) {
+        this.vocabularyIndex = dir;
+        this.vocabularyField = field;
+        this.minDocFreq = minDocFreq;
+        return this;
+    }
+
+    //record one business, lat and lon are NaN when its location is unknown
+    public synchronized void addBusiness(String businessId, String name, double lat, double lon, long reviewCount,
+                                         double stars) {
+        if (name == null || name.isEmpty()) {
+            businesses.remove(businessId);
+            return;
+        }
+        businesses.put(businessId, new Business(name, lat, lon, reviewCount, stars));
+    }
+
+    //take over the businesses of a location index, e.g. to rebuild the suggester without re-reading the dump
+    public void addBusinesses(IndexReader locations) throws IOException {
+        for (LeafReaderContext context : locations.leaves()) {
+            LeafReader leaf = context.reader();
+            Bits live = leaf.getLiveDocs();
+            SortedNumericDocValues points = leaf.getSortedNumericDocValues(YELPLocationIndexer.GEO_FIELD);
+            NumericDocValues reviewCounts = leaf.getNumericDocValues(YELPLocationIndexer.REVIEW_COUNT_FIELD);
+            NumericDocValues stars = leaf.getNumericDocValues(YELPLocationIndexer.STARS_FIELD);
+            for (int doc = 0; doc < leaf.maxDoc(); doc++) {
+                if (live != null && !live.get(doc)) {
+                    continue;
+                }
+                DocumentStoredFieldVisitor visitor = new DocumentStoredFieldVisitor(
+                        YELPBaseIndexer.BUSINESS_ID_FIELD, YELPLocationIndexer.NAME_FIELD);
+                leaf.document(doc, visitor);
+                double lat = Double.NaN, lon = Double.NaN;
+                if (points != null && points.advanceExact(doc)) {
+                    long point = points.nextValue();
+                    lat = GeoEncodingUtils.decodeLatitude((int) (point >> 32));
+                    lon = GeoEncodingUtils.decodeLongitude((int) point);
+                }
+                long reviewCount = reviewCounts != null && reviewCounts.advanceExact(doc) ? reviewCounts.longValue() : 0;
+                double star = stars != null && stars.advanceExact(doc) ? Double.longBitsToDouble(stars.longValue()) : 0;
+                addBusiness(visitor.getDocument().get(YELPBaseIndexer.BUSINESS_ID_FIELD),
+                        visitor.getDocument().get(YELPLocationIndexer.NAME_FIELD), lat, lon, reviewCount, star);
+            }
+        }
+    }
+
+    public void addBusinesses(String locationIndex) throws IOException {
+        IndexReader reader = YELPBaseIndexer.openIndex(locationIndex);
+        try {
+            addBusinesses(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    public synchronized YELPSuggester build() throws IOException {
+        //one ordinal per normalized name, shown as the heaviest business's spelling
+        Map<String, Integer> ordinals = new HashMap<String, Integer>();
+        List<String> names = new ArrayList<String>();
+        List<Long> nameWeights = new ArrayList<Long>();
+        List<Entry> entries = new ArrayList<Entry>();
+        for (Business business : businesses.values()) {
+            String normalized = YELPSuggester.normalize(business.name);
+            if (normalized.isEmpty()) {
+                continue;
+            }
+            long w = weightOf(business);
+            Integer ord = ordinals.get(normalized);
+            if (ord == null) {
+                ord = names.size();
+                ordinals.put(normalized, ord);
+                names.add(business.name);
+                nameWeights.add(w);
+            } else if (nameWeights.get(ord) < w) {
+                names.set(ord, business.name);
+                nameWeights.set(ord, w);
+            }
+            String cell = Double.isNaN(business.lat) ? null : YELPGeohash.encode(business.lat, business.lon, geoPrecision);
+            int words = 0;
+            for (int i = 0; i < normalized.length() && words < MAX_WORDS; i++) {
+                if (i == 0 || normalized.charAt(i - 1) == ' ') {
+                    String suffix = normalized.substring(i);
+                    entries.add(new Entry(nameKey(YELPSuggester.NAME, null, suffix, ord), w));
+                    if (cell != null) {
+                        entries.add(new Entry(nameKey(YELPSuggester.NEAR, cell, suffix, ord), w));
+                    }
+                    words++;
+                }
+            }
+        }
+        if (vocabularyIndex != null) {
+            addVocabulary(entries);
+        }
+
+        Collections.sort(entries, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry a, Entry b) {
+                int cmp = compareBytes(a.key, b.key);
+                return cmp != 0 ? cmp : Long.compare(b.weight, a.weight);
+            }
+        });
+        PositiveIntOutputs outputs = PositiveIntOutputs.getSingleton();
+        Builder<Long> builder = new Builder<Long>(FST.INPUT_TYPE.BYTE1, outputs);
+        IntsRefBuilder scratch = new IntsRefBuilder();
+        //a key no lookup starts with, so an empty builder still has an FST
+        byte[] last = new byte[]{0};
+        builder.add(Util.toIntsRef(new BytesRef(last), scratch), YELPSuggester.MAX_WEIGHT);
+        for (Entry entry : entries) {
+            //the same name twice in a cell, the heaviest sorts first
+            if (compareBytes(last, entry.key) == 0) {
+                continue;
+            }
+            builder.add(Util.toIntsRef(new BytesRef(entry.key), scratch), YELPSuggester.MAX_WEIGHT - entry.weight);
+            last = entry.key;
+        }
+        return new YELPSuggester(builder.finish(), names.toArray(new String[names.size()]), geoPrecision);
+    }
+
+    //build and save to fileName
+    public void write(String fileName) throws IOException {
+        YELPSuggester suggester = build();
+        suggester.save(fileName);
+        System.out.println("Suggester: " + suggester.size() + " names, " + suggester.ramBytesUsed() / 1024 + " KB");
+    }
+
+    private long weightOf(Business business) {
+        long w;
+        if (weight == Weight.RATING) {
+            w = Math.round(business.stars * 2) * 1000000L + Math.min(business.reviewCount, 999999);
+        } else {
+            w = business.reviewCount;
+        }
+        return Math.max(0, Math.min(YELPSuggester.MAX_WEIGHT, w));
+    }
+
+    private void addVocabulary(List<Entry> entries) throws IOException {
+        IndexReader reader = YELPBaseIndexer.openIndex(vocabularyIndex);
+        try {
+            Terms terms = MultiFields.getTerms(reader, vocabularyField);
+            if (terms == null) {
+                return;
+            }
+            TermsEnum te = terms.iterator();
+            for (BytesRef term = te.next(); term != null; term = te.next()) {
+                //single letters are not worth completing to
+                if (te.docFreq() < minDocFreq || term.length < 2) {
+                    continue;
+                }
+                byte[] key = new byte[1 + term.length];
+                key[0] = (byte) YELPSuggester.TERM;
+                System.arraycopy(term.bytes, term.offset, key, 1, term.length);
+                entries.add(new Entry(key, Math.min(YELPSuggester.MAX_WEIGHT, te.docFreq())));
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    //kind, cell, text, END and the 4 byte ordinal
+    private static byte[] nameKey(int kind, String cell, String text, int ord) {
+        byte[] prefix = YELPSuggester.key(kind, cell, text);
+        byte[] key = new byte[prefix.length + 5];
+        System.arraycopy(prefix, 0, key, 0, prefix.length);
+        int i = prefix.length;
+        key[i] = (byte) YELPSuggester.END;
+        key[i + 1] = (byte) (ord >>> 24);
+        key[i + 2] = (byte) (ord >>> 16);
+        key[i + 3] = (byte) (ord >>> 8);
+        key[i + 4] = (byte) ord;
+        return key;
+    }
+
+    private static int compareBytes(byte[] a, byte[] b) {
+        int n = Math.min(a.length, b.length);
+        for (int i = 0; i < n; i++) {
+            int cmp = (a[i] & 0xFF) - (b[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return a.length - b.length;
+    }
+
+    private static class Business {
+        final String name;
+        final double lat;
+        final double lon;
+        final long reviewCount;
+        final double stars;
+
+        Business(String name, double lat, double lon, long reviewCount, double stars) {
+            this.name = name;
+            this.lat = lat;
+            this.lon = lon;
+            this.reviewCount = reviewCount;
+            this.stars = stars;
+        }
+    }
+
+    private static class Entry {
+        final byte[] key;
+        final long weight;
+
+        Entry(byte[] key, long weight) {
+            this.key = key;
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package Indexer;
+
+import Metrics.YELPMetrics;
+
+import java.io.IOException;
+
+import org.apache.lucene.index.ConcurrentMergeScheduler;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.MergePolicy;
+
+//the default merge scheduler, recording every merge's duration and size into metrics
+class YELPTimedMergeScheduler extends ConcurrentMergeScheduler {
+    private final YELPMetrics metrics;
+
+    YELPTimedMergeScheduler(YELPMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    protected void doMerge(IndexWriter writer, MergePolicy.OneMerge merge) throws IOException {
+        long start = System.nanoTime();
+        try {
+            super.doMerge(writer, merge);
+        } finally {
+            metrics.record("index.merge_ms", (System.nanoTime() - start) / 1000000);
+            metrics.increment("index.merges");
+            metrics.add("index.merged_docs", merge.totalMaxDoc);
+        }
+    }
+}
@@ -1,26 +1,40 @@
+import Evaluation.YELPEvaluationModel;
+import Evaluation.YELPEvaluationReport;
+import Evaluation.YELPEvaluator;
+import Indexer.YELPBaseIndexer;
+import Indexer.YELPFriendGraph;
+import Indexer.YELPFriendGraphWriter;
+import Indexer.YELPIdDictionary;
+import Indexer.YELPIdDictionaryWriter;
 import Indexer.YELPIndexer;
+import Indexer.YELPIndexerOptions;
 import Indexer.YELPLocationIndexer;
 import Indexer.YELPReviewIndexer;
-import org.apache.lucene.benchmark.quality.trec.TrecJudge;
-import org.apache.lucene.benchmark.quality.trec.TrecTopicsReader;
-import org.apache.lucene.benchmark.quality.utils.SimpleQQParser;
-import org.apache.lucene.benchmark.quality.utils.SubmissionReport;
+import Indexer.YELPReviewerWeightJoiner;
+import Indexer.YELPSnapshotWriter;
+import Indexer.YELPStatsAggregator;
+import Indexer.YELPSuggester;
+import Indexer.YELPSuggesterBuilder;
+import Metrics.YELPMetrics;
+import Searcher.YELPJsonExporter;
+import Searcher.YELPRanking;
+import Searcher.YELPResults;
+import Searcher.YELPSearcher;
 import org.apache.lucene.document.LatLonPoint;
 import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.FieldDoc;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.search.similarities.BM25Similarity;
 import org.apache.lucene.search.similarities.ClassicSimilarity;
-import org.apache.lucene.benchmark.quality.*;
-import org.apache.lucene.store.Directory;
-import org.apache.lucene.store.FSDirectory;
 
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.BufferedReader;
-import java.io.FileReader;
+import java.io.FileWriter;
 import java.io.PrintWriter;
-import java.nio.file.Paths;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Arrays;
 
@@ -31,35 +45,84 @@ public class Main {
     public static final String REVIEW_DATA_FILE = "yelp/yelp_academic_dataset_review.json";
     public static final String LOCATION_DATA_FILE = "yelp/yelp_academic_dataset_business.json";
     public static final String INDEX_PATH = "yelp/luceneIndex";
-    public static final String COS_INDEX_PATH = "yelp/luceneReviewCosIndex";
-    public static final String BM25_INDEX_PATH = "yelp/luceneReviewBM25Index";
+    public static final String REVIEW_INDEX_PATH = "yelp/luceneReviewIndex";
     public static final String LOCATION_INDEX_PATH = "yelp/luceneLocationIndex";
+    public static final String FRIEND_GRAPH_PATH = "yelp/friends.graph";
+    public static final String STATS_INDEX_PATH = "yelp/luceneStatsIndex";
+    public static final String ID_DICTIONARY_PATH = "yelp/ids.dict";
+    public static final String SUGGESTER_PATH = "yelp/suggest.fst";
+    public static final String REVIEW_SNAPSHOT_FILE = "yelp/reviews.snapshot";
 
 
     public static void main(String[] arg) throws Exception {
         boolean preformIndexForUser = false; //set to true if indexing for the first time. true;
         boolean preformIndexForReview = false; //set to true if indexing for the first time. true;
         boolean preformIndexForLocation = false; //set to true if indexing for the first time. true;
+        boolean preformStatsAggregation = false; //set to true after the review or location index changed. true;
+        boolean preformReviewerWeightJoin = false; //set to true after the user or review index changed. true;
+        boolean preformIdDictionary = false; //set to true after any index changed, the dictionary holds their doc ids. true;
+        boolean preformSuggesterRebuild = false; //set to true to rebuild the suggester from the location and review indexes without reindexing. true;
+        boolean incrementalIndex = false; //set to true to upsert new/changed records into the existing indexes instead of rebuilding
+        boolean reviewSnapshot = false; //set to true to index the reviews from a binary snapshot of their fields, converted from the dump once, when re-indexing often with other schemas or similarities
+        boolean bulkLoad = false; //set to true for cold builds: large RAM buffer, merges after loading, checkpoint commits. with incrementalIndex too it resumes a crashed bulk load
         // To perform indexing. If there is no change to the data file, index only need to be created once
+        YELPIndexerOptions indexOptions = (bulkLoad ? YELPIndexerOptions.bulkLoad() : YELPIndexerOptions.rebuild()).setIncremental(incrementalIndex);
+        int indexThreads = Runtime.getRuntime().availableProcessors(); // parse/addDocument workers, 1 to index sequentially
+        int indexQueueDepth = 4 * indexThreads; // line batches buffered between the reader and the workers
+        int reviewShards = 1; // >1 splits the review index by business_id into that many shards, each with its own writer
+        // search latencies and ingestion counters, browse them with jconsole under yelp:type=Metrics
+        YELPMetrics.global().register();
 
         if (preformIndexForUser) {
-            YELPIndexer indexer = new YELPIndexer(INDEX_PATH, new ClassicSimilarity());
-            indexer.indexYelps(DATA_FILE);
+            YELPIndexer indexer = new YELPIndexer(INDEX_PATH, new ClassicSimilarity(), indexOptions);
+            indexer.setFriendGraph(FRIEND_GRAPH_PATH);
+            indexer.indexYelpsParallel(DATA_FILE, indexThreads, indexQueueDepth);
         }
 
         if (preformIndexForReview) {
-            YELPReviewIndexer classicIndexer = new YELPReviewIndexer(COS_INDEX_PATH, new ClassicSimilarity());
-            classicIndexer.indexYelps(REVIEW_DATA_FILE);
-
-            YELPReviewIndexer indexer = new YELPReviewIndexer(BM25_INDEX_PATH, new BM25Similarity());
-            indexer.indexYelps(REVIEW_DATA_FILE);
+            // one index for both models, the similarity is picked by the searcher
+            // the review dump is the big one, map it and let every worker read its own chunks
+            YELPIndexerOptions reviewOptions = (bulkLoad ? YELPIndexerOptions.bulkLoad() : YELPIndexerOptions.rebuild()).setIncremental(incrementalIndex);
+            YELPReviewIndexer indexer = new YELPReviewIndexer(REVIEW_INDEX_PATH, reviewOptions.setShards(reviewShards));
+            if (reviewSnapshot) {
+                // converted again when the dump is newer, incremental runs still skip the unchanged reviews
+                File snapshot = new File(REVIEW_SNAPSHOT_FILE);
+                if (!snapshot.exists() || snapshot.lastModified() < new File(REVIEW_DATA_FILE).lastModified()) {
+                    new YELPSnapshotWriter(YELPReviewIndexer.jsonFields()).write(REVIEW_DATA_FILE, REVIEW_SNAPSHOT_FILE);
+                }
+                indexer.indexSnapshot(REVIEW_SNAPSHOT_FILE, indexThreads, 4 * indexThreads);
+            } else {
+                indexer.indexYelpsMapped(REVIEW_DATA_FILE, indexThreads, 4 * indexThreads);
+            }
         }
 
 
         if (preformIndexForLocation) {
-            YELPLocationIndexer locationIndexer = new YELPLocationIndexer(LOCATION_INDEX_PATH);
-            locationIndexer.indexYelpsResterauntLocation(LOCATION_DATA_FILE);
+            YELPLocationIndexer locationIndexer = new YELPLocationIndexer(LOCATION_INDEX_PATH, indexOptions);
+            // type-ahead over the business names, plus the review vocabulary for the review search box
+            locationIndexer.setSuggester(new YELPSuggesterBuilder().setVocabulary(REVIEW_INDEX_PATH, "review", 5), SUGGESTER_PATH);
+            locationIndexer.indexYelpsParallel(LOCATION_DATA_FILE, indexThreads, indexQueueDepth);
+
+        }
 
+        if (preformReviewerWeightJoin) {
+            new YELPReviewerWeightJoiner(INDEX_PATH, REVIEW_INDEX_PATH).run();
+        }
+
+        if (preformStatsAggregation) {
+            // per business and per user review counts and ratings, read from the review index
+            new YELPStatsAggregator(REVIEW_INDEX_PATH, STATS_INDEX_PATH).setLocationIndex(LOCATION_INDEX_PATH).run();
+        }
+
+        // also when a location index built without a suggester is searched for the first time
+        if (preformSuggesterRebuild || !new File(SUGGESTER_PATH).exists()) {
+            YELPSuggesterBuilder suggesterBuilder = new YELPSuggesterBuilder().setVocabulary(REVIEW_INDEX_PATH, "review", 5);
+            suggesterBuilder.addBusinesses(LOCATION_INDEX_PATH);
+            suggesterBuilder.write(SUGGESTER_PATH);
+        }
+
+        if (preformIdDictionary) {
+            new YELPIdDictionaryWriter(INDEX_PATH, REVIEW_INDEX_PATH, LOCATION_INDEX_PATH).write(ID_DICTIONARY_PATH);
         }
 
 
@@ -69,16 +132,34 @@ public class Main {
         YELPSearcher searcherQ1 = new YELPSearcher(INDEX_PATH);
 
         // Question 1
-        ScoreDoc[] hits = searcherQ1.search("friends", "wXyx23jwrL-O2kvw8hrA7g", 20);
+        if (!new File(FRIEND_GRAPH_PATH).exists()) {
+            // a user index built without a friend graph, take the friend lists it stores
+            System.out.println("No friend graph in " + FRIEND_GRAPH_PATH + ", building it from " + INDEX_PATH);
+            YELPFriendGraphWriter friendGraphWriter = new YELPFriendGraphWriter();
+            IndexReader users = YELPBaseIndexer.openIndex(INDEX_PATH);
+            try {
+                friendGraphWriter.addUsers(users);
+            } finally {
+                users.close();
+            }
+            friendGraphWriter.write(FRIEND_GRAPH_PATH);
+        }
+        YELPFriendGraph friendGraph = YELPFriendGraph.open(FRIEND_GRAPH_PATH);
+        String[] friends = friendGraph.friendsOf("wXyx23jwrL-O2kvw8hrA7g");
+        ScoreDoc[] hits = searcherQ1.searchKeys(Arrays.asList(friends).subList(0, Math.min(20, friends.length)), 20);
         System.out.println("\n=================Results for friends search=============\n");
         ArrayList<String> result1 = new ArrayList<String>();
         result1.add("name");
         result1.add("friends");
         searcherQ1.printResult(hits, result1);
+        friendGraph.close();
 
 
         //search index
-        YELPSearcher searcherQ2a = new YELPSearcher(COS_INDEX_PATH);
+        YELPSearcher searcherQ2a = new YELPSearcher(REVIEW_INDEX_PATH, new ClassicSimilarity());
+        searcherQ2a.setParallelism(Runtime.getRuntime().availableProcessors(), 4);
+        //repeated lookups are answered from the last minute of results until the reader reopens
+        searcherQ2a.setResultCache(1000, 60000);
 
         // Question 2
         ScoreDoc[] hitsQ2 = searcherQ2a.searchPhraseQuery("business_id: lPkRneUrVwfJotHOVry36g AND review: nice", 20);
@@ -90,14 +171,27 @@ public class Main {
 
         searcherQ2a.printResult(hitsQ2, result2);
 
-        //search index
-        YELPSearcher searcherQ2b = new YELPSearcher(BM25_INDEX_PATH);
+        //same review index and reader, scored with BM25
+        YELPSearcher searcherQ2b = searcherQ2a.withSimilarity(new BM25Similarity());
 
         // Question 2
         ScoreDoc[] hitsQ2b = searcherQ2b.searchPhraseQuery("business_id: lPkRneUrVwfJotHOVry36g AND review: nice", 20);
         System.out.println("\n=================Results for BM25 review search=============\n");
         searcherQ2b.printResult(hitsQ2b, result2);
 
+        // BM25 blended with stars, reviewer usefulness and recency, only the top 100 by text score re-ranked
+        ScoreDoc[] hitsQ2c = searcherQ2b.searchReranked("review", "nice", new YELPRanking(), 100, 20);
+        System.out.println("\n=================Results for re-ranked review search=============\n");
+        searcherQ2b.printResult(hitsQ2c, result2);
+
+        // every review of the business, streamed to a JSON lines file without collecting the hits
+        Writer exportFile = new BufferedWriter(new FileWriter("yelp/export_reviews.json"));
+        long exported = searcherQ2a.exportId("business_id", "lPkRneUrVwfJotHOVry36g",
+                new YELPResults().setStoredFields("review_id", "user_id").addNumericField("star", true),
+                new YELPJsonExporter(exportFile, new String[]{"review_id", "user_id"}, new String[]{"star"}));
+        exportFile.close();
+        System.out.println("Exported " + exported + " reviews");
+
         // -- Create 20 queries, and retrieve top 10 results. You should use two retrieval models, and evaluation
         //their performance. You need to design the experiments.
 
@@ -107,27 +201,12 @@ public class Main {
         searcherQ2a.printResult(hitsq2_1, result2);
 
 
-        // Evaluation - WIP
-        File qrelsFile = new File("yelp/qrels.txt");
-        File queriesFile = new File("yelp/queries.txt");
-        String docNameField = "filename";
-        PrintWriter logger = new PrintWriter(System.out, true);
-        TrecTopicsReader qReader = new TrecTopicsReader();
-        Directory dir = FSDirectory.open(Paths.get(COS_INDEX_PATH));
-        IndexSearcher searcher = new IndexSearcher(searcherQ2a.getReader());
-
-        QualityQuery[] qqs = qReader.readQueries(new BufferedReader(new FileReader(queriesFile)));
-        Judge judge = new TrecJudge(new BufferedReader(new FileReader(qrelsFile)));
-        boolean judgeValidation = judge.validateData(qqs, logger);
-        System.out.println("Validating data:" + judgeValidation);
-        QualityQueryParser qqParser = new SimpleQQParser("title", "review");
-        QualityBenchmark qrun = new QualityBenchmark(qqs, qqParser, searcher, docNameField);
-        SubmissionReport submitLog = null;
-        QualityStats[] stats = qrun.execute(judge, submitLog, logger);
-
-        QualityStats avg = QualityStats.average(stats);
-        avg.log("SUMMARY", 2, logger, "  ");
-        dir.close();
+        // Evaluation: the topics against classic, a bm25 k1/b grid and lm-dirichlet on the same reader,
+        // quality and latency side by side
+        YELPEvaluator evaluator = YELPEvaluator.trec(searcherQ2a, "yelp/queries.txt", "yelp/qrels.txt");
+        System.out.println("Validating data:" + evaluator.validate(new PrintWriter(System.out, true)));
+        YELPEvaluationReport evaluation = evaluator.run(YELPEvaluationModel.standard());
+        System.out.println(evaluation);
 
 
         // Q5 search a place in atlanta knowing atlanta is 33 and -84
@@ -140,6 +219,70 @@ public class Main {
 
         searcherLocation.printResult(docs, result5);
 
+        // the 5 nearest mexican places to downtown atlanta within 10km, then the next 5
+        searcherLocation.setGeoCellCache(1000, 6);
+        ScoreDoc[] nearest = searcherLocation.searchNearest(33.749, -84.388, 10000, null, "mexican", 5);
+        searcherLocation.printResult(nearest, result5);
+        if (nearest.length > 0) {
+            searcherLocation.printResult(searcherLocation.searchNearestAfter((FieldDoc) nearest[nearest.length - 1],
+                    33.749, -84.388, 10000, null, "mexican", 5), result5);
+        }
+
+        // type-ahead: names with a word starting with "mex", the same near downtown atlanta, and a review query
+        YELPSuggester suggester = YELPSuggester.load(SUGGESTER_PATH);
+        System.out.println("\n=================Suggestions=============\n");
+        System.out.println(suggester.suggest("mex", 5));
+        System.out.println(suggester.suggest("mex", 33.749, -84.388, 5));
+        System.out.println(suggester.completeQuery("great mexi", 5));
+
+        // reviews by the friends from question 1 of businesses within 10km of downtown atlanta, joined on the
+        // id dictionary's int arrays instead of id queries. its doc ids are those of the last preformIdDictionary run
+        System.out.println("\n=================Reviews by friends nearby=============\n");
+        if (new File(ID_DICTIONARY_PATH).exists()) {
+            YELPIdDictionary ids = YELPIdDictionary.open(ID_DICTIONARY_PATH);
+            IndexSearcher locations = searcherLocation.getSearcher();
+            IndexSearcher reviews = searcherQ2a.getSearcher();
+            try {
+                if (ids.isCurrent(YELPIdDictionary.Entity.BUSINESS, locations.getIndexReader())
+                        && ids.isCurrent(YELPIdDictionary.Entity.REVIEW, reviews.getIndexReader())) {
+                    int[] friendOrds = ids.ordinals(YELPIdDictionary.Entity.USER, friends);
+                    // search and print on the readers checked above, the dictionary's doc ids are only valid there
+                    TopDocs nearby = locations.search(LatLonPoint.newDistanceQuery(YELPLocationIndexer.GEO_FIELD, 33.749, -84.388, 10000), 10000);
+                    int[] nearbyOrds = ids.ordinals(YELPIdDictionary.Entity.BUSINESS, nearby.scoreDocs);
+                    ScoreDoc[] friendReviews = YELPIdDictionary.asHits(ids.reviewsBy(friendOrds, nearbyOrds));
+                    searcherQ2a.printResult(reviews, friendReviews, result2);
+                } else {
+                    System.out.println("The id dictionary is older than the location or review index, set preformIdDictionary to rebuild it");
+                }
+            } finally {
+                searcherLocation.release(locations);
+                searcherQ2a.release(reviews);
+                ids.close();
+            }
+        } else {
+            System.out.println("No id dictionary in " + ID_DICTIONARY_PATH + ", set preformIdDictionary to build it");
+        }
+
+        // best rated businesses around atlanta with at least 20 reviews, and the rating distribution of all businesses
+        if (new File(STATS_INDEX_PATH).exists()) {
+            YELPSearcher searcherStats = new YELPSearcher(STATS_INDEX_PATH);
+            ScoreDoc[] topRated = searcherStats.searchTopRatedNear(33, -84, 300000, 20, 5);
+            System.out.println("\n=================Top rated businesses=============\n");
+            ArrayList<String> resultStats = new ArrayList<String>();
+            resultStats.add("business_id");
+            searcherStats.printResult(topRated, resultStats);
+            if (topRated.length > 0) {
+                System.out.println(searcherStats.getStats(YELPStatsAggregator.BUSINESS,
+                        searcherStats.project(topRated, new YELPResults().setStoredFields("business_id")).getString(0, "business_id")));
+            }
+            System.out.println("Businesses by rating, 1 to 5 stars in half stars: "
+                    + Arrays.toString(searcherStats.countByRating(YELPStatsAggregator.BUSINESS, 0)));
+        } else {
+            System.out.println("No stats index in " + STATS_INDEX_PATH + ", set preformStatsAggregation to build it");
+        }
+
+        System.out.println(YELPMetrics.global());
+
     }
 }
 
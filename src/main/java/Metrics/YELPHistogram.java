@@ -0,0 +1,94 @@
+package Metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+//distribution of non-negative values such as latencies in microseconds or hit counts, lock free.
+//values go into log-linear buckets, four per power of two, so a percentile is exact to about 20%
+//whatever the range, in 2KB per histogram
+public class YELPHistogram {
+    private static final int BUCKETS = 4 * 62 + 4;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts.incrementAndGet(bucket(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+        }
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long n = count.get();
+        return n == 0 ? 0 : (double) sum.get() / n;
+    }
+
+    //the value p (0 to 1) of the recorded values are at or below, as the upper bound of its bucket
+    public long getPercentile(double p) {
+        long n = count.get();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(p * n));
+        long seen = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            seen += counts.get(b);
+            if (seen >= rank) {
+                return Math.min(max.get(), lowerBound(b + 1) - 1);
+            }
+        }
+        return max.get();
+    }
+
+    public void reset() {
+        for (int b = 0; b < BUCKETS; b++) {
+            counts.set(b, 0);
+        }
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    //0 to 3 have their own bucket, larger values split every power of two in four
+    static int bucket(long value) {
+        if (value < 4) {
+            return (int) value;
+        }
+        int exp = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exp - 2)) & 3;
+        return 4 * (exp - 1) + sub;
+    }
+
+    static long lowerBound(int bucket) {
+        if (bucket < 4) {
+            return bucket;
+        }
+        if (bucket >= BUCKETS) {
+            return Long.MAX_VALUE;
+        }
+        int exp = bucket / 4 + 1;
+        return (long) (4 + bucket % 4) << (exp - 2);
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + getCount() + " mean=" + String.format("%.1f", getMean()) + " p50=" + getPercentile(0.5)
+                + " p90=" + getPercentile(0.9) + " p99=" + getPercentile(0.99) + " max=" + getMax();
+    }
+}
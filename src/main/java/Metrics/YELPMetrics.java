@@ -0,0 +1,164 @@
+package Metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+//named counters, gauges and histograms recorded by the searchers and indexers, global() unless one is
+//set on them. register() publishes every metric as a JMX attribute (yelp:type=Metrics,name=...).
+//to feed another metrics system, subclass and override add, setGauge and record, or poll snapshot()
+public class YELPMetrics {
+    private static final YELPMetrics GLOBAL = new YELPMetrics("global");
+
+    private final String name;
+    private final ConcurrentMap<String, AtomicLong> counters = new ConcurrentHashMap<String, AtomicLong>();
+    private final ConcurrentMap<String, AtomicLong> gauges = new ConcurrentHashMap<String, AtomicLong>();
+    private final ConcurrentMap<String, YELPHistogram> histograms = new ConcurrentHashMap<String, YELPHistogram>();
+    private ObjectName registered = null;
+
+    public static YELPMetrics global() {
+        return GLOBAL;
+    }
+
+    public YELPMetrics(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void increment(String counter) {
+        add(counter, 1);
+    }
+
+    public void add(String counter, long delta) {
+        AtomicLong value = counters.get(counter);
+        if (value == null) {
+            AtomicLong created = new AtomicLong();
+            value = counters.putIfAbsent(counter, created);
+            if (value == null) {
+                value = created;
+            }
+        }
+        value.addAndGet(delta);
+    }
+
+    //a value that is set rather than added to, e.g. the current docs/sec
+    public void setGauge(String gauge, long value) {
+        AtomicLong current = gauges.get(gauge);
+        if (current == null) {
+            AtomicLong created = new AtomicLong();
+            current = gauges.putIfAbsent(gauge, created);
+            if (current == null) {
+                current = created;
+            }
+        }
+        current.set(value);
+    }
+
+    //add value to a histogram, by convention latencies are in microseconds and end in _us
+    public void record(String histogram, long value) {
+        getHistogram(histogram).record(value);
+    }
+
+    public long getCounter(String counter) {
+        AtomicLong value = counters.get(counter);
+        return value == null ? 0 : value.get();
+    }
+
+    public long getGauge(String gauge) {
+        AtomicLong value = gauges.get(gauge);
+        return value == null ? 0 : value.get();
+    }
+
+    public YELPHistogram getHistogram(String histogram) {
+        YELPHistogram h = histograms.get(histogram);
+        if (h == null) {
+            YELPHistogram created = new YELPHistogram();
+            h = histograms.putIfAbsent(histogram, created);
+            if (h == null) {
+                h = created;
+            }
+        }
+        return h;
+    }
+
+    //every metric by name, histograms as name.count, name.mean, name.p50, name.p90, name.p99 and name.max
+    public Map<String, Number> snapshot() {
+        Map<String, Number> values = new TreeMap<String, Number>();
+        for (Map.Entry<String, AtomicLong> e : counters.entrySet()) {
+            values.put(e.getKey(), e.getValue().get());
+        }
+        for (Map.Entry<String, AtomicLong> e : gauges.entrySet()) {
+            values.put(e.getKey(), e.getValue().get());
+        }
+        for (Map.Entry<String, YELPHistogram> e : histograms.entrySet()) {
+            YELPHistogram h = e.getValue();
+            values.put(e.getKey() + ".count", h.getCount());
+            values.put(e.getKey() + ".mean", h.getMean());
+            values.put(e.getKey() + ".p50", h.getPercentile(0.5));
+            values.put(e.getKey() + ".p90", h.getPercentile(0.9));
+            values.put(e.getKey() + ".p99", h.getPercentile(0.99));
+            values.put(e.getKey() + ".max", h.getMax());
+        }
+        return values;
+    }
+
+    public void reset() {
+        counters.clear();
+        gauges.clear();
+        for (YELPHistogram h : histograms.values()) {
+            h.reset();
+        }
+    }
+
+    //publish the metrics on the platform MBean server, once
+    public synchronized void register() {
+        if (registered != null) {
+            return;
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName("yelp:type=Metrics,name=" + ObjectName.quote(name));
+            server.registerMBean(new YELPMetricsMBean(this), objectName);
+            registered = objectName;
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public synchronized void unregister() {
+        if (registered == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(registered);
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+        registered = null;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("metrics " + name + ":");
+        for (Map.Entry<String, AtomicLong> e : new TreeMap<String, AtomicLong>(counters).entrySet()) {
+            sb.append("\n  ").append(e.getKey()).append(" = ").append(e.getValue().get());
+        }
+        for (Map.Entry<String, AtomicLong> e : new TreeMap<String, AtomicLong>(gauges).entrySet()) {
+            sb.append("\n  ").append(e.getKey()).append(" = ").append(e.getValue().get());
+        }
+        for (Map.Entry<String, YELPHistogram> e : new TreeMap<String, YELPHistogram>(histograms).entrySet()) {
+            sb.append("\n  ").append(e.getKey()).append(": ").append(e.getValue());
+        }
+        return sb.toString();
+    }
+}
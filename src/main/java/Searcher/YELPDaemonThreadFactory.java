@@ -0,0 +1,21 @@
+package Searcher;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//named daemon threads, so search pools never keep the JVM alive on their own
+public class YELPDaemonThreadFactory implements ThreadFactory {
+    private final String name;
+    private final AtomicInteger count = new AtomicInteger();
+
+    public YELPDaemonThreadFactory(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, name + "-" + count.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    }
+}
@@ -0,0 +1,9 @@
+package Searcher;
+
+import java.io.IOException;
+
+//receives the matches of YELPSearcher.export one at a time
+public interface YELPExportConsumer {
+    //hit is the match's position in results, which only holds it until the call returns
+    void accept(YELPResults results, int hit) throws IOException;
+}
@@ -0,0 +1,166 @@
+package Searcher;
+
+import Indexer.YELPGeohash;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.lucene.search.ReferenceManager;
+import org.apache.lucene.util.SloppyMath;
+
+//caches the candidates of geo searches per geohash cell, so store locator queries around the same
+//city center share one index search. an entry holds every document within meters plus the cell's
+//radius of the cell center, with its location: any point in the cell finds all its hits within
+//meters among them and sorts them itself. cells with more than maxCandidates candidates are
+//remembered as too big and searched on the index every time.
+//entries are evicted least recently used first and all dropped when the reader is reopened
+public class YELPGeoCellCache implements ReferenceManager.RefreshListener {
+    //marks a cell with too many candidates
+    static final Candidates TOO_MANY = new Candidates(new int[0], new double[0], new double[0]);
+
+    private final int maxCells;
+    private final int precision;
+    private final int maxCandidates;
+    private final LinkedHashMap<Key, Candidates> cells;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+    private long invalidations = 0;
+
+    //precision is the geohash length, 6 is a cell of about 1.2 x 0.6 km
+    public YELPGeoCellCache(int maxCells, int precision, int maxCandidates) {
+        if (precision < 1 || precision > 12) {
+            throw new IllegalArgumentException("geohash precision must be 1 to 12: " + precision);
+        }
+        this.maxCells = maxCells;
+        this.precision = precision;
+        this.maxCandidates = maxCandidates;
+        this.cells = new LinkedHashMap<Key, Candidates>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Candidates> eldest) {
+                if (size() > YELPGeoCellCache.this.maxCells) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    public int getMaxCandidates() {
+        return maxCandidates;
+    }
+
+    //cached candidates of the cell for the filter (radius, text, category), TOO_MANY, or null on a miss
+    public synchronized Candidates get(Object readerKey, String cell, String filter) {
+        Candidates candidates = cells.get(new Key(readerKey, cell, filter));
+        if (candidates == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return candidates;
+    }
+
+    public synchronized void put(Object readerKey, String cell, String filter, Candidates candidates) {
+        cells.put(new Key(readerKey, cell, filter), candidates);
+    }
+
+    public synchronized void clear() {
+        invalidations += cells.size();
+        cells.clear();
+    }
+
+    @Override
+    public void beforeRefresh() {
+    }
+
+    @Override
+    public void afterRefresh(boolean didRefresh) {
+        if (didRefresh) {
+            clear();
+        }
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    public synchronized int size() {
+        return cells.size();
+    }
+
+    @Override
+    public synchronized String toString() {
+        long lookups = hits + misses;
+        return "geo cell cache: " + cells.size() + "/" + maxCells + " cells, " + hits + " hits, " + misses
+                + " misses (" + (lookups == 0 ? 0 : 100 * hits / lookups) + "% hit rate), " + evictions
+                + " evictions, " + invalidations + " invalidated";
+    }
+
+    //geohash of the cell containing the point
+    public String cell(double lat, double lon) {
+        return YELPGeohash.encode(lat, lon, precision);
+    }
+
+    //center of the cell and the meters from it to its farthest corner
+    static double[] centerAndRadius(String cell) {
+        double[] b = YELPGeohash.bounds(cell);
+        double lat = (b[0] + b[1]) / 2, lon = (b[2] + b[3]) / 2;
+        double radius = 0;
+        for (int i = 0; i < 2; i++) {
+            for (int j = 2; j < 4; j++) {
+                radius = Math.max(radius, SloppyMath.haversinMeters(lat, lon, b[i], b[j]));
+            }
+        }
+        return new double[]{lat, lon, radius};
+    }
+
+    //documents around a cell, by top level doc id, with their locations
+    static class Candidates {
+        final int[] docs;
+        final double[] lats;
+        final double[] lons;
+
+        Candidates(int[] docs, double[] lats, double[] lons) {
+            this.docs = docs;
+            this.lats = lats;
+            this.lons = lons;
+        }
+    }
+
+    private static class Key {
+        final Object readerKey;
+        final String cell;
+        final String filter;
+
+        Key(Object readerKey, String cell, String filter) {
+            this.readerKey = readerKey;
+            this.cell = cell;
+            this.filter = filter;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return readerKey == other.readerKey && cell.equals(other.cell) && filter.equals(other.filter);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * System.identityHashCode(readerKey) + cell.hashCode()) + filter.hashCode();
+        }
+    }
+}
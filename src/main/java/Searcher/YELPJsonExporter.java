@@ -0,0 +1,54 @@
+package Searcher;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+//writes every exported match as one JSON object per line with the projected fields, e.g.
+//{"review_id":"...","star":4.0}. missing fields are left out
+public class YELPJsonExporter implements YELPExportConsumer {
+    private final Writer out;
+    private final String[] storedFields;
+    private final String[] numericFields;
+    private final StringBuilder line = new StringBuilder();
+
+    //the fields must be among those projected by the YELPResults passed to export
+    public YELPJsonExporter(Writer out, String[] storedFields, String[] numericFields) {
+        this.out = out;
+        this.storedFields = storedFields.clone();
+        this.numericFields = numericFields.clone();
+    }
+
+    @Override
+    public void accept(YELPResults results, int hit) throws IOException {
+        line.setLength(0);
+        line.append('{');
+        for (String field : storedFields) {
+            String value = results.getString(hit, field);
+            if (value != null) {
+                separate();
+                line.append(JSONObject.quote(field)).append(':').append(JSONObject.quote(value));
+            }
+        }
+        for (String field : numericFields) {
+            if (results.has(hit, field)) {
+                separate();
+                try {
+                    line.append(JSONObject.quote(field)).append(':').append(JSONObject.numberToString(results.getDouble(hit, field, 0)));
+                } catch (JSONException e) {
+                    throw new IOException(e);
+                }
+            }
+        }
+        line.append("}\n");
+        out.write(line.toString());
+    }
+
+    private void separate() {
+        if (line.length() > 1) {
+            line.append(',');
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package Searcher;
+
+import java.util.Map;
+
+import Indexer.YELPBaseIndexer;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.classic.MultiFieldQueryParser;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.search.ConstantScoreQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+
+//YELPQueryParser over several default fields: an unqualified term is searched in all of them,
+//each clause weighted by its boost. id clauses are exact terms as in YELPQueryParser
+public class YELPMultiFieldQueryParser extends MultiFieldQueryParser {
+
+    //boosts may be null or leave fields out, those get 1
+    public YELPMultiFieldQueryParser(String[] fields, Analyzer analyzer, Map<String, Float> boosts) {
+        super(fields, analyzer, boosts);
+    }
+
+    @Override
+    protected Query getFieldQuery(String field, String queryText, boolean quoted) throws ParseException {
+        if (field != null && YELPBaseIndexer.ID_FIELDS.contains(field)) {
+            return new ConstantScoreQuery(new TermQuery(new Term(field, queryText)));
+        }
+        return super.getFieldQuery(field, queryText, quoted);
+    }
+}
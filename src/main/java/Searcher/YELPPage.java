@@ -0,0 +1,118 @@
+package Searcher;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.ScoreDoc;
+
+//one page of a paged search and the cursor of the next page.
+//the cursor is an opaque string holding the last hit (doc, score and sort values), the next page
+//continues with searchAfter from it, so deep pages cost as much as the first one. pages are
+//consistent while the reader is not reopened, after a reopen they continue from the same
+//score or sort values
+public class YELPPage {
+    private static final byte DOUBLE = 1, LONG = 2, FLOAT = 3, INT = 4;
+
+    private final ScoreDoc[] hits;
+    private final String cursor;
+
+    YELPPage(ScoreDoc[] hits, int pageSize) {
+        this.hits = hits;
+        this.cursor = hits.length < pageSize || hits.length == 0 ? null : encode(hits[hits.length - 1]);
+    }
+
+    public ScoreDoc[] getHits() {
+        return hits;
+    }
+
+    //the cursor of the next page, null after the last page
+    public String getCursor() {
+        return cursor;
+    }
+
+    public boolean hasMore() {
+        return cursor != null;
+    }
+
+    static String encode(ScoreDoc last) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(last.doc);
+            out.writeFloat(last.score);
+            Object[] fields = last instanceof FieldDoc ? ((FieldDoc) last).fields : null;
+            out.writeByte(fields == null ? -1 : fields.length);
+            for (int i = 0; fields != null && i < fields.length; i++) {
+                Object value = fields[i];
+                if (value instanceof Double) {
+                    out.writeByte(DOUBLE);
+                    out.writeDouble((Double) value);
+                } else if (value instanceof Long) {
+                    out.writeByte(LONG);
+                    out.writeLong((Long) value);
+                } else if (value instanceof Float) {
+                    out.writeByte(FLOAT);
+                    out.writeFloat((Float) value);
+                } else if (value instanceof Integer) {
+                    out.writeByte(INT);
+                    out.writeInt((Integer) value);
+                } else {
+                    throw new IllegalArgumentException("cannot page on sort value " + value);
+                }
+            }
+            out.close();
+            StringBuilder hex = new StringBuilder();
+            for (byte b : bytes.toByteArray()) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    //the last hit of the previous page, null for the first page
+    static ScoreDoc decode(String cursor) {
+        if (cursor == null) {
+            return null;
+        }
+        if (cursor.length() % 2 != 0) {
+            throw new IllegalArgumentException("invalid cursor: " + cursor);
+        }
+        byte[] bytes = new byte[cursor.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int hi = Character.digit(cursor.charAt(2 * i), 16), lo = Character.digit(cursor.charAt(2 * i + 1), 16);
+            if (hi < 0 || lo < 0) {
+                throw new IllegalArgumentException("invalid cursor: " + cursor);
+            }
+            bytes[i] = (byte) (hi << 4 | lo);
+        }
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+            int doc = in.readInt();
+            float score = in.readFloat();
+            int numFields = in.readByte();
+            if (numFields < 0) {
+                return new ScoreDoc(doc, score);
+            }
+            Object[] fields = new Object[numFields];
+            for (int i = 0; i < numFields; i++) {
+                byte type = in.readByte();
+                switch (type) {
+                    case DOUBLE: fields[i] = in.readDouble(); break;
+                    case LONG: fields[i] = in.readLong(); break;
+                    case FLOAT: fields[i] = in.readFloat(); break;
+                    case INT: fields[i] = in.readInt(); break;
+                    default: throw new IllegalArgumentException("invalid cursor: " + cursor);
+                }
+            }
+            return new FieldDoc(doc, score, fields);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("invalid cursor: " + cursor, e);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package Searcher;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.search.MatchNoDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.util.QueryBuilder;
+
+//turns keywords and query strings into queries for YELPSearcher, thread-safe.
+//the analyzer and query builder live as long as the compiler and are shared by every thread (the analyzer
+//keeps one token stream per thread), classic syntax parsers are not thread-safe and cheap, so one is made
+//per parse. queries are immutable and cached by their string, so a repeated query skips analysis entirely
+public class YELPQueryCompiler {
+    public static final int DEFAULT_CACHE_SIZE = 4096;
+    //the field unqualified terms of parse(query) search by default
+    public static final String DEFAULT_FIELD = "review";
+
+    private static final YELPQueryCompiler SHARED = new YELPQueryCompiler(new StandardAnalyzer(), DEFAULT_FIELD, DEFAULT_CACHE_SIZE);
+    //cached for keywords that analyze to nothing, e.g. only stop words
+    private static final Query NO_QUERY = new MatchNoDocsQuery("no terms after analysis");
+
+    private final Analyzer analyzer;
+    private final QueryBuilder builder;
+    private final String defaultField;
+    private final int cacheSize;
+    private final LinkedHashMap<String, Query> cache;
+
+    private long hits = 0;
+    private long misses = 0;
+
+    //StandardAnalyzer, the same as the indexers use, shared by every YELPSearcher that is not given another
+    public static YELPQueryCompiler shared() {
+        return SHARED;
+    }
+
+    public YELPQueryCompiler(Analyzer analyzer, String defaultField, int cacheSize) {
+        this.analyzer = analyzer;
+        this.builder = new QueryBuilder(analyzer);
+        this.defaultField = defaultField;
+        this.cacheSize = cacheSize;
+        this.cache = new LinkedHashMap<String, Query>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Query> eldest) {
+                return size() > YELPQueryCompiler.this.cacheSize;
+            }
+        };
+    }
+
+    public Analyzer getAnalyzer() {
+        return analyzer;
+    }
+
+    public String getDefaultField() {
+        return defaultField;
+    }
+
+    //keywords analyzed into a boolean query of their terms in field, null if analysis leaves no terms
+    public Query keywords(String field, String keywords) {
+        String key = "k\u0000" + field + "\u0000" + keywords;
+        Query query = get(key);
+        if (query == null) {
+            query = builder.createBooleanQuery(field, keywords);
+            put(key, query == null ? NO_QUERY : query);
+        }
+        return query == NO_QUERY ? null : query;
+    }
+
+    //classic query syntax, unqualified terms search the default field
+    public Query parse(String query) throws ParseException {
+        return parse(defaultField, query);
+    }
+
+    //classic query syntax, unqualified terms search defaultField
+    public Query parse(String defaultField, String query) throws ParseException {
+        String key = "p\u0000" + defaultField + "\u0000" + query;
+        Query parsed = get(key);
+        if (parsed == null) {
+            parsed = new YELPQueryParser(defaultField, analyzer).parse(query);
+            put(key, parsed);
+        }
+        return parsed;
+    }
+
+    //classic query syntax, unqualified terms search all of fields weighted by boosts (null or missing is 1)
+    public Query parse(String[] fields, Map<String, Float> boosts, String query) throws ParseException {
+        String key = "m\u0000" + Arrays.toString(fields) + (boosts == null ? "" : new TreeMap<String, Float>(boosts).toString())
+                + "\u0000" + query;
+        Query parsed = get(key);
+        if (parsed == null) {
+            parsed = new YELPMultiFieldQueryParser(fields, analyzer, boosts).parse(query);
+            put(key, parsed);
+        }
+        return parsed;
+    }
+
+    private synchronized Query get(String key) {
+        Query query = cache.get(key);
+        if (query == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return query;
+    }
+
+    private synchronized void put(String key, Query query) {
+        cache.put(key, query);
+    }
+
+    public synchronized void clear() {
+        cache.clear();
+    }
+
+    @Override
+    public synchronized String toString() {
+        long lookups = hits + misses;
+        return "query cache: " + cache.size() + "/" + cacheSize + " queries, " + hits + " hits, " + misses
+                + " misses (" + (lookups == 0 ? 0 : 100 * hits / lookups) + "% hit rate)";
+    }
+}
@@ -0,0 +1,28 @@
+package Searcher;
+
+import Indexer.YELPBaseIndexer;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.ConstantScoreQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+
+//classic query syntax where id clauses such as business_id:lPkRneUrVwfJotHOVry36g bypass the analyzer
+//and become one constant score term, matching the untokenized id fields exactly.
+//an id starting with '-' has to be escaped (QueryParser.escape), the exact lookups in YELPSearcher need no escaping
+public class YELPQueryParser extends QueryParser {
+
+    public YELPQueryParser(String defaultField, Analyzer analyzer) {
+        super(defaultField, analyzer);
+    }
+
+    @Override
+    protected Query getFieldQuery(String field, String queryText, boolean quoted) throws ParseException {
+        if (YELPBaseIndexer.ID_FIELDS.contains(field)) {
+            return new ConstantScoreQuery(new TermQuery(new Term(field, queryText)));
+        }
+        return super.getFieldQuery(field, queryText, quoted);
+    }
+}
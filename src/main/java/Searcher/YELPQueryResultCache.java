@@ -0,0 +1,153 @@
+package Searcher;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.lucene.search.ReferenceManager;
+import org.apache.lucene.search.ScoreDoc;
+
+//caches top hits per (reader, normalized query, numHits).
+//entries are evicted least recently used first once maxEntries is reached, and expire ttlMs after
+//they were computed. registered as a refresh listener it drops everything when the reader changes,
+//the reader key in every entry also keeps a hit from ever coming from an older reader
+public class YELPQueryResultCache implements ReferenceManager.RefreshListener {
+    private final int maxEntries;
+    private final long ttlMs;
+    private final LinkedHashMap<Key, CachedHits> entries;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+    private long invalidations = 0;
+
+    public YELPQueryResultCache(int maxEntries, long ttlMs) {
+        this.maxEntries = maxEntries;
+        this.ttlMs = ttlMs;
+        this.entries = new LinkedHashMap<Key, CachedHits>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, CachedHits> eldest) {
+                if (size() > YELPQueryResultCache.this.maxEntries) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    //cached hits, or null on a miss. callers must not modify the returned array
+    public synchronized ScoreDoc[] get(Object readerKey, String query, int numHits) {
+        Key key = new Key(readerKey, query, numHits);
+        CachedHits entry = entries.get(key);
+        if (entry != null && System.currentTimeMillis() - entry.created > ttlMs) {
+            entries.remove(key);
+            evictions++;
+            entry = null;
+        }
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.hits;
+    }
+
+    public synchronized void put(Object readerKey, String query, int numHits, ScoreDoc[] result) {
+        entries.put(new Key(readerKey, query, numHits), new CachedHits(result, System.currentTimeMillis()));
+    }
+
+    public synchronized void clear() {
+        invalidations += entries.size();
+        entries.clear();
+    }
+
+    //drop expired entries without waiting for a lookup to find them
+    public synchronized void purgeExpired() {
+        long now = System.currentTimeMillis();
+        Iterator<CachedHits> it = entries.values().iterator();
+        while (it.hasNext()) {
+            if (now - it.next().created > ttlMs) {
+                it.remove();
+                evictions++;
+            }
+        }
+    }
+
+    @Override
+    public void beforeRefresh() {
+    }
+
+    @Override
+    public void afterRefresh(boolean didRefresh) {
+        if (didRefresh) {
+            clear();
+        }
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    //entries removed for size or age
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    //entries dropped because the reader was reopened
+    public synchronized long getInvalidationCount() {
+        return invalidations;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    @Override
+    public synchronized String toString() {
+        long lookups = hits + misses;
+        return "result cache: " + entries.size() + "/" + maxEntries + " entries, " + hits + " hits, " + misses
+                + " misses (" + (lookups == 0 ? 0 : 100 * hits / lookups) + "% hit rate), " + evictions
+                + " evictions, " + invalidations + " invalidated";
+    }
+
+    private static class Key {
+        final Object readerKey;
+        final String query;
+        final int numHits;
+
+        Key(Object readerKey, String query, int numHits) {
+            this.readerKey = readerKey;
+            this.query = query;
+            this.numHits = numHits;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return readerKey == other.readerKey && numHits == other.numHits && query.equals(other.query);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * System.identityHashCode(readerKey) + query.hashCode()) + numHits;
+        }
+    }
+
+    private static class CachedHits {
+        final ScoreDoc[] hits;
+        final long created;
+
+        CachedHits(ScoreDoc[] hits, long created) {
+            this.hits = hits;
+            this.created = created;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package Searcher;
+
+import Indexer.YELPReviewIndexer;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.search.DoubleValuesSource;
+import org.apache.lucene.search.Rescorer;
+
+import java.io.IOException;
+import java.util.Locale;
+
+//blends the text score of a review with ranking features read from its doc values:
+//  text * score + stars * (star - 3) / 2 + reviewer * w / (1 + w) + recency * 0.5 ^ (age / halfLife)
+//where w is the reviewer_weight YELPReviewerWeightJoiner copied from the user index and age is the days
+//between the review date and now. every feature is in [-1, 1], a missing one counts 0.
+//used whole by YELPSearcher.searchRanked, or only on the first pass' top hits by searchReranked
+public class YELPRanking {
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+    private double text = 1;
+    private double stars = 0.5;
+    private double reviewer = 0.5;
+    private double recency = 0.5;
+    private double halfLifeDays = 365;
+    private long now = System.currentTimeMillis() / MILLIS_PER_DAY;
+
+    public YELPRanking setTextWeight(double text) {
+        this.text = text;
+        return this;
+    }
+
+    public YELPRanking setStarsWeight(double stars) {
+        this.stars = stars;
+        return this;
+    }
+
+    public YELPRanking setReviewerWeight(double reviewer) {
+        this.reviewer = reviewer;
+        return this;
+    }
+
+    //a review halfLifeDays old gets half the recency boost of one written today
+    public YELPRanking setRecency(double recency, double halfLifeDays) {
+        if (halfLifeDays <= 0) {
+            throw new IllegalArgumentException("half life must be positive: " + halfLifeDays);
+        }
+        this.recency = recency;
+        this.halfLifeDays = halfLifeDays;
+        return this;
+    }
+
+    //the day recency is measured from in days since 1970-01-01, today by default
+    public YELPRanking setNow(long epochDay) {
+        this.now = epochDay;
+        return this;
+    }
+
+    public boolean needsScores() {
+        return text != 0;
+    }
+
+    //the blended score of every match, for FunctionScoreQuery
+    public DoubleValuesSource asValuesSource() {
+        return new YELPRankingValuesSource(this);
+    }
+
+    //re-ranks the top hits of a first pass by the blended score
+    public Rescorer asRescorer() {
+        return new YELPRankingRescorer(this);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "ranking(text=%s stars=%s reviewer=%s recency=%s halfLife=%sd now=%d)",
+                text, stars, reviewer, recency, halfLifeDays, now);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof YELPRanking && toString().equals(o.toString());
+    }
+
+    @Override
+    public int hashCode() {
+        return toString().hashCode();
+    }
+
+    //the feature columns of one segment. documents must be read in increasing order
+    Features features(LeafReader reader) throws IOException {
+        return new Features(reader);
+    }
+
+    class Features {
+        private final NumericDocValues star;
+        private final NumericDocValues weight;
+        private final NumericDocValues date;
+
+        Features(LeafReader reader) throws IOException {
+            star = stars == 0 ? null : reader.getNumericDocValues("star");
+            weight = reviewer == 0 ? null : reader.getNumericDocValues(YELPReviewIndexer.REVIEWER_WEIGHT_FIELD);
+            date = recency == 0 ? null : reader.getNumericDocValues(YELPReviewIndexer.DATE_FIELD);
+        }
+
+        double score(int doc, double textScore) throws IOException {
+            double score = text * textScore;
+            if (star != null && star.advanceExact(doc)) {
+                score += stars * (Double.longBitsToDouble(star.longValue()) - 3) / 2;
+            }
+            if (weight != null && weight.advanceExact(doc)) {
+                double w = Double.longBitsToDouble(weight.longValue());
+                score += reviewer * w / (1 + w);
+            }
+            if (date != null && date.advanceExact(doc)) {
+                double age = Math.max(0, now - date.longValue());
+                score += recency * Math.pow(0.5, age / halfLifeDays);
+            }
+            return score;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package Searcher;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.search.Explanation;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Rescorer;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+//second pass of a two-phase search: the first pass' hits get YELPRanking's blended score with their
+//text score as is, only those hits' doc values are read
+class YELPRankingRescorer extends Rescorer {
+    private static final Comparator<ScoreDoc> BY_DOC = new Comparator<ScoreDoc>() {
+        @Override
+        public int compare(ScoreDoc a, ScoreDoc b) {
+            return Integer.compare(a.doc, b.doc);
+        }
+    };
+    private static final Comparator<ScoreDoc> BY_SCORE = new Comparator<ScoreDoc>() {
+        @Override
+        public int compare(ScoreDoc a, ScoreDoc b) {
+            int c = Float.compare(b.score, a.score);
+            return c != 0 ? c : Integer.compare(a.doc, b.doc);
+        }
+    };
+
+    private final YELPRanking ranking;
+
+    YELPRankingRescorer(YELPRanking ranking) {
+        this.ranking = ranking;
+    }
+
+    @Override
+    public TopDocs rescore(IndexSearcher searcher, TopDocs firstPassTopDocs, int topN) throws IOException {
+        ScoreDoc[] hits = new ScoreDoc[firstPassTopDocs.scoreDocs.length];
+        for (int i = 0; i < hits.length; i++) {
+            ScoreDoc hit = firstPassTopDocs.scoreDocs[i];
+            hits[i] = new ScoreDoc(hit.doc, hit.score, hit.shardIndex);
+        }
+        //doc values are read forward, a segment at a time
+        Arrays.sort(hits, BY_DOC);
+        List<LeafReaderContext> leaves = searcher.getIndexReader().leaves();
+        int leaf = -1;
+        int docBase = 0;
+        YELPRanking.Features features = null;
+        for (ScoreDoc hit : hits) {
+            if (leaf < 0 || hit.doc >= docBase + leaves.get(leaf).reader().maxDoc()) {
+                leaf = ReaderUtil.subIndex(hit.doc, leaves);
+                docBase = leaves.get(leaf).docBase;
+                features = ranking.features(leaves.get(leaf).reader());
+            }
+            hit.score = (float) features.score(hit.doc - docBase, hit.score);
+        }
+        Arrays.sort(hits, BY_SCORE);
+        ScoreDoc[] top = Arrays.copyOf(hits, Math.min(topN, hits.length));
+        float maxScore = top.length == 0 ? Float.NaN : top[0].score;
+        return new TopDocs(firstPassTopDocs.totalHits, top, maxScore);
+    }
+
+    @Override
+    public Explanation explain(IndexSearcher searcher, Explanation firstPassExplanation, int docID) throws IOException {
+        List<LeafReaderContext> leaves = searcher.getIndexReader().leaves();
+        LeafReaderContext context = leaves.get(ReaderUtil.subIndex(docID, leaves));
+        float textScore = firstPassExplanation.getValue();
+        float score = (float) ranking.features(context.reader()).score(docID - context.docBase, textScore);
+        return Explanation.match(score, ranking.toString() + ", computed from:", firstPassExplanation);
+    }
+}
@@ -0,0 +1,56 @@
+package Searcher;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.DoubleValues;
+import org.apache.lucene.search.DoubleValuesSource;
+
+import java.io.IOException;
+
+//YELPRanking's blended score of every match, read while the query collects
+class YELPRankingValuesSource extends DoubleValuesSource {
+    private final YELPRanking ranking;
+
+    YELPRankingValuesSource(YELPRanking ranking) {
+        this.ranking = ranking;
+    }
+
+    @Override
+    public DoubleValues getValues(LeafReaderContext ctx, final DoubleValues scores) throws IOException {
+        final YELPRanking.Features features = ranking.features(ctx.reader());
+        final boolean needsScores = ranking.needsScores();
+        return new DoubleValues() {
+            private int doc = -1;
+
+            @Override
+            public double doubleValue() throws IOException {
+                return features.score(doc, needsScores ? scores.doubleValue() : 0);
+            }
+
+            @Override
+            public boolean advanceExact(int target) {
+                doc = target;
+                return true;
+            }
+        };
+    }
+
+    @Override
+    public boolean needsScores() {
+        return ranking.needsScores();
+    }
+
+    @Override
+    public int hashCode() {
+        return ranking.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof YELPRankingValuesSource && ranking.equals(((YELPRankingValuesSource) o).ranking);
+    }
+
+    @Override
+    public String toString() {
+        return ranking.toString();
+    }
+}
@@ -0,0 +1,227 @@
+package Searcher;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.index.StoredFieldVisitor;
+import org.apache.lucene.search.ScoreDoc;
+
+//a page of hits with the projected fields of every hit, meant to be reused from page to page.
+//stored fields are decoded with one visitor pass per hit that skips everything not projected and
+//stops once the projected fields are found, numeric fields come from doc values.
+//hits are loaded in doc id order so doc values are read forward and neighbouring hits share
+//their stored fields block. not thread safe, use one instance per thread
+public class YELPResults {
+    private String[] storedFields = new String[0];
+    private String[] numericFields = new String[0];
+    //numeric fields written with DoubleDocValuesField
+    private boolean[] doubleEncoded = new boolean[0];
+
+    private int size = 0;
+    private int[] docs = new int[0];
+    private float[] scores = new float[0];
+    //hit i, field f at [i * fields + f]
+    private String[] stored = new String[0];
+    private long[] numeric = new long[0];
+    private boolean[] hasNumeric = new boolean[0];
+
+    //(doc << 32 | hit) so a primitive sort yields the load order
+    private long[] order = new long[0];
+    private NumericDocValues[] docValues = new NumericDocValues[0];
+    private final Visitor visitor = new Visitor();
+
+    //stored string fields, e.g. "business_id", "review"
+    public YELPResults setStoredFields(String... fields) {
+        storedFields = fields.clone();
+        size = 0;
+        return this;
+    }
+
+    //numeric doc values fields, e.g. "review_count". isDouble marks DoubleDocValuesField fields such as "star"
+    public YELPResults addNumericField(String field, boolean isDouble) {
+        numericFields = Arrays.copyOf(numericFields, numericFields.length + 1);
+        numericFields[numericFields.length - 1] = field;
+        doubleEncoded = Arrays.copyOf(doubleEncoded, doubleEncoded.length + 1);
+        doubleEncoded[doubleEncoded.length - 1] = isDouble;
+        docValues = new NumericDocValues[numericFields.length];
+        size = 0;
+        return this;
+    }
+
+    //replace the content with the projected fields of hits, which must come from reader
+    public void load(IndexReader reader, ScoreDoc[] hits) throws IOException {
+        load(reader, hits, hits.length);
+    }
+
+    //the same for the first count of hits, e.g. a reused buffer
+    public void load(IndexReader reader, ScoreDoc[] hits, int count) throws IOException {
+        ensureCapacity(count);
+        size = count;
+        Arrays.fill(stored, 0, size * storedFields.length, null);
+        Arrays.fill(hasNumeric, 0, size * numericFields.length, false);
+        for (int i = 0; i < size; i++) {
+            docs[i] = hits[i].doc;
+            scores[i] = hits[i].score;
+            order[i] = ((long) hits[i].doc << 32) | i;
+        }
+        Arrays.sort(order, 0, size);
+
+        List<LeafReaderContext> leaves = reader.leaves();
+        LeafReaderContext leaf = null;
+        for (int k = 0; k < size; k++) {
+            int hit = (int) order[k];
+            int doc = docs[hit];
+            if (leaf == null || doc >= leaf.docBase + leaf.reader().maxDoc()) {
+                leaf = leaves.get(ReaderUtil.subIndex(doc, leaves));
+                for (int f = 0; f < numericFields.length; f++) {
+                    docValues[f] = leaf.reader().getNumericDocValues(numericFields[f]);
+                }
+            }
+            int target = doc - leaf.docBase;
+            if (storedFields.length > 0) {
+                visitor.hit = hit;
+                visitor.remaining = storedFields.length;
+                leaf.reader().document(target, visitor);
+            }
+            for (int f = 0; f < numericFields.length; f++) {
+                NumericDocValues values = docValues[f];
+                if (values != null && values.advanceExact(target)) {
+                    numeric[hit * numericFields.length + f] = values.longValue();
+                    hasNumeric[hit * numericFields.length + f] = true;
+                }
+            }
+        }
+        //the iterators belong to this reader, do not keep it reachable
+        Arrays.fill(docValues, null);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getDoc(int hit) {
+        return docs[checkHit(hit)];
+    }
+
+    public float getScore(int hit) {
+        return scores[checkHit(hit)];
+    }
+
+    //the stored value, null when the document does not have the field
+    public String getString(int hit, String field) {
+        return stored[checkHit(hit) * storedFields.length + slot(storedFields, field)];
+    }
+
+    public boolean has(int hit, String field) {
+        return hasNumeric[checkHit(hit) * numericFields.length + slot(numericFields, field)];
+    }
+
+    //the doc value, missing when the document does not have the field
+    public long getLong(int hit, String field, long missing) {
+        int f = slot(numericFields, field);
+        int i = checkHit(hit) * numericFields.length + f;
+        if (!hasNumeric[i]) {
+            return missing;
+        }
+        return doubleEncoded[f] ? (long) Double.longBitsToDouble(numeric[i]) : numeric[i];
+    }
+
+    public double getDouble(int hit, String field, double missing) {
+        int f = slot(numericFields, field);
+        int i = checkHit(hit) * numericFields.length + f;
+        if (!hasNumeric[i]) {
+            return missing;
+        }
+        return doubleEncoded[f] ? Double.longBitsToDouble(numeric[i]) : numeric[i];
+    }
+
+    private int checkHit(int hit) {
+        if (hit < 0 || hit >= size) {
+            throw new IndexOutOfBoundsException("hit " + hit + " of " + size);
+        }
+        return hit;
+    }
+
+    private static int slot(String[] fields, String field) {
+        for (int f = 0; f < fields.length; f++) {
+            if (fields[f].equals(field)) {
+                return f;
+            }
+        }
+        throw new IllegalArgumentException("field not projected: " + field);
+    }
+
+    private void ensureCapacity(int hits) {
+        if (docs.length >= hits && stored.length >= hits * storedFields.length
+                && numeric.length >= hits * numericFields.length) {
+            return;
+        }
+        int capacity = Math.max(hits, docs.length);
+        docs = new int[capacity];
+        scores = new float[capacity];
+        order = new long[capacity];
+        stored = new String[capacity * storedFields.length];
+        numeric = new long[capacity * numericFields.length];
+        hasNumeric = new boolean[capacity * numericFields.length];
+    }
+
+    //collects the projected stored fields of one hit
+    private class Visitor extends StoredFieldVisitor {
+        int hit;
+        int remaining;
+
+        @Override
+        public Status needsField(FieldInfo fieldInfo) {
+            if (remaining == 0) {
+                return Status.STOP;
+            }
+            for (String field : storedFields) {
+                if (field.equals(fieldInfo.name)) {
+                    return Status.YES;
+                }
+            }
+            return Status.NO;
+        }
+
+        @Override
+        public void stringField(FieldInfo fieldInfo, byte[] value) {
+            set(fieldInfo.name, new String(value, StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void intField(FieldInfo fieldInfo, int value) {
+            set(fieldInfo.name, Integer.toString(value));
+        }
+
+        @Override
+        public void longField(FieldInfo fieldInfo, long value) {
+            set(fieldInfo.name, Long.toString(value));
+        }
+
+        @Override
+        public void floatField(FieldInfo fieldInfo, float value) {
+            set(fieldInfo.name, Float.toString(value));
+        }
+
+        @Override
+        public void doubleField(FieldInfo fieldInfo, double value) {
+            set(fieldInfo.name, Double.toString(value));
+        }
+
+        private void set(String field, String value) {
+            int i = hit * storedFields.length + slot(storedFields, field);
+            //a field stored more than once keeps its first value, like Document.get
+            if (stored[i] == null) {
+                stored[i] = value;
+                remaining--;
+            }
+        }
+    }
+}
@@ -0,0 +1,971 @@
+package Searcher;
+
+import Indexer.YELPBaseIndexer;
+import Indexer.YELPLocationIndexer;
+import Indexer.YELPStatsAggregator;
+import Metrics.YELPMetrics;
+import org.apache.lucene.document.LatLonDocValuesField;
+import org.apache.lucene.document.LatLonPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.geo.GeoEncodingUtils;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.SortedNumericDocValues;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.queries.function.FunctionScoreQuery;
+import org.apache.lucene.search.*;
+import org.apache.lucene.search.similarities.Similarity;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.SloppyMath;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+public class YELPSearcher {
+    //highest average stars first, then most reviews
+    private static final Sort TOP_RATED = new Sort(
+            new SortField(YELPStatsAggregator.AVG_STARS_FIELD, SortField.Type.DOUBLE, true),
+            new SortField(YELPStatsAggregator.REVIEW_COUNT_FIELD, SortField.Type.LONG, true));
+    //queries slower than the slow query threshold, with the parsed query and where the time went
+    private static final Logger SLOW_QUERIES = Logger.getLogger("yelp.search.slow");
+    //the reader each returned hit array was found on, so project can refuse hits of another reader.
+    //weak keys compared by identity, an entry goes away with its hits
+    private static final Map<ScoreDoc[], Object> HIT_READERS =
+            Collections.synchronizedMap(new WeakHashMap<ScoreDoc[], Object>());
+
+    private final YELPSearcherManager manager;
+    private final Similarity similarity;
+    //searcher with this instance's similarity and executor over the most recently acquired reader
+    private volatile IndexSearcher view;
+
+    //scores the segments of one query in parallel, null searches them on the calling thread
+    private volatile ExecutorService segmentExecutor;
+    //runs the queries of a batch concurrently, kept apart from segmentExecutor so a batch
+    //query never waits for segment tasks queued behind other batch queries
+    private volatile ExecutorService batchExecutor;
+
+    //top hits of recent queries, null when caching is off. per instance since scores depend on the similarity
+    private volatile YELPQueryResultCache resultCache;
+    //candidates of searchNearest per geohash cell, null when caching is off
+    private volatile YELPGeoCellCache geoCellCache;
+    //analyzes keywords and parses query strings, shared by default
+    private volatile YELPQueryCompiler compiler = YELPQueryCompiler.shared();
+    //latency, rewrite and collection time and hit count per query type, see setMetrics
+    private volatile YELPMetrics metrics = YELPMetrics.global();
+    //log queries slower than this, negative for none
+    private volatile long slowQueryNanos = -1;
+
+    public YELPSearcher(String dir) {
+        this(dir, null);
+    }
+
+    //search the index with the given scoring model, e.g. ClassicSimilarity or BM25Similarity.
+    //every YELPSearcher on the same directory shares one reader, reopened in the background
+    public YELPSearcher(String dir, Similarity similarity) {
+        YELPSearcherManager shared = null;
+        try {
+            shared = YELPSearcherManager.acquire(dir);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        this.manager = shared;
+        this.similarity = similarity;
+    }
+
+    //near-real-time search over what writer has indexed so far, reopened every refreshIntervalMs
+    public YELPSearcher(IndexWriter writer, Similarity similarity, long refreshIntervalMs) throws IOException {
+        this(YELPSearcherManager.open(writer, refreshIntervalMs), similarity);
+    }
+
+    private YELPSearcher(YELPSearcherManager manager, Similarity similarity) {
+        this.manager = manager;
+        this.similarity = similarity;
+    }
+
+    //a searcher over the same reader that scores with another model, close both when done
+    public YELPSearcher withSimilarity(Similarity similarity) {
+        YELPSearcher other = new YELPSearcher(manager.incRef(), similarity);
+        other.compiler = compiler;
+        other.metrics = metrics;
+        other.slowQueryNanos = slowQueryNanos;
+        return other;
+    }
+
+    //analyze and parse queries with compiler instead of the shared StandardAnalyzer one,
+    //e.g. for another default field or analyzer
+    public void setQueryCompiler(YELPQueryCompiler compiler) {
+        this.compiler = compiler;
+    }
+
+    public YELPQueryCompiler getQueryCompiler() {
+        return compiler;
+    }
+
+    //record into metrics instead of YELPMetrics.global(). every query records search.<type>.latency_us,
+    //.rewrite_us, .collect_us and .hits histograms, .cached and .errors counters, where type is
+    //search, phrase, multi_field, location, nearest, id, within, page, export, stats, ranked or reranked.
+    //reranked also records the second pass as search.reranked.rescore_us
+    public void setMetrics(YELPMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public YELPMetrics getMetrics() {
+        return metrics;
+    }
+
+    //log queries that take longer than thresholdMs to the yelp.search.slow logger at WARNING, with the
+    //parsed query, its rewrite and collection time and hit count. negative turns the log off
+    public void setSlowQueryThreshold(long thresholdMs) {
+        this.slowQueryNanos = thresholdMs < 0 ? -1 : TimeUnit.MILLISECONDS.toNanos(thresholdMs);
+    }
+
+    //multi-threaded search: every query scores its segments on segmentThreads threads and
+    //searchBatch runs batchThreads queries at once. pair the index with a merge policy that keeps
+    //a few similar sized segments (YELPIndexerOptions.setSearchSegments), one segment is one task.
+    //call it before searching, searches still running on the old pools are rejected
+    public synchronized void setParallelism(int segmentThreads, int batchThreads) {
+        shutdownExecutors();
+        if (segmentThreads > 1) {
+            segmentExecutor = Executors.newFixedThreadPool(segmentThreads, new YELPDaemonThreadFactory("yelp-search-segment"));
+        }
+        if (batchThreads > 1) {
+            batchExecutor = Executors.newFixedThreadPool(batchThreads, new YELPDaemonThreadFactory("yelp-search-batch"));
+        }
+        view = null;
+    }
+
+    //remember the top hits of up to maxEntries queries for at most ttlMs. a reopened reader
+    //drops them all, so results are never older than the reader they would be served from
+    public synchronized void setResultCache(int maxEntries, long ttlMs) {
+        disableResultCache();
+        resultCache = new YELPQueryResultCache(maxEntries, ttlMs);
+        manager.addListener(resultCache);
+    }
+
+    //hit, miss and eviction counters, null when caching is off
+    public YELPQueryResultCache getResultCache() {
+        return resultCache;
+    }
+
+    public synchronized void disableResultCache() {
+        if (resultCache != null) {
+            manager.removeListener(resultCache);
+            resultCache = null;
+        }
+    }
+
+    //serve searchNearest around the same spot from the candidates of its geohash cell, for up to maxCells
+    //cells of the given geohash precision (6 is about 1.2 x 0.6 km). cells with more than 10000 candidates,
+    //e.g. a large radius or a dense city without filters, are always searched on the index
+    public synchronized void setGeoCellCache(int maxCells, int precision) {
+        disableGeoCellCache();
+        geoCellCache = new YELPGeoCellCache(maxCells, precision, 10000);
+        manager.addListener(geoCellCache);
+    }
+
+    //hit and miss counters, null when caching is off
+    public YELPGeoCellCache getGeoCellCache() {
+        return geoCellCache;
+    }
+
+    public synchronized void disableGeoCellCache() {
+        if (geoCellCache != null) {
+            manager.removeListener(geoCellCache);
+            geoCellCache = null;
+        }
+    }
+
+    //the current searcher, it must be handed back with release(searcher)
+    public IndexSearcher getSearcher() throws IOException {
+        IndexSearcher acquired = manager.acquireSearcher();
+        ExecutorService executor = segmentExecutor;
+        if (similarity == null && executor == null) {
+            return acquired;
+        }
+        IndexSearcher current = view;
+        if (current == null || current.getIndexReader() != acquired.getIndexReader()) {
+            //same reader, so releasing the view releases what was acquired
+            current = acquired instanceof YELPShardedIndexSearcher
+                    ? ((YELPShardedIndexSearcher) acquired).withExecutor(executor)
+                    : new IndexSearcher(acquired.getIndexReader(), executor);
+            YELPSearcherManager.useQueryCache(current);
+            if (similarity != null) {
+                current.setSimilarity(similarity);
+            }
+            view = current;
+        }
+        return current;
+    }
+
+    public void release(IndexSearcher searcher) {
+        try {
+            manager.releaseSearcher(searcher);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    //report the number of documents indexed
+    public int getCollectionSize() throws IOException {
+        IndexSearcher searcher = getSearcher();
+        try {
+            return searcher.getIndexReader().numDocs();
+        } finally {
+            release(searcher);
+        }
+    }
+
+    //search for keywords in specified field, with the number of top results
+    public ScoreDoc[] search(String field, String keywords, int numHits) {
+
+        //the query has to be analyzed the same way as the documents being index
+        //using the same Analyzer
+        Query query = compiler.keywords(field, keywords);
+        if (query == null) {
+            //only stop words
+            return new ScoreDoc[0];
+        }
+        return search("search", query, numHits);
+    }
+
+
+    //keywords in field ranked by ranking's blend of the text score with stars, reviewer weight and recency,
+    //computed for every match. see searchReranked for the same ranking at about the cost of search
+    public ScoreDoc[] searchRanked(String field, String keywords, YELPRanking ranking, int numHits) {
+        Query query = compiler.keywords(field, keywords);
+        if (query == null) {
+            return new ScoreDoc[0];
+        }
+        return search("ranked", new FunctionScoreQuery(query, ranking.asValuesSource()), numHits);
+    }
+
+    //two-phase searchRanked: the top firstPassHits by text score alone, then only those re-ranked by
+    //ranking, so the features are read for firstPassHits documents instead of every match.
+    //hits outside the first pass are never returned, a few times numHits is usually enough
+    public ScoreDoc[] searchReranked(String field, String keywords, YELPRanking ranking, int firstPassHits, int numHits) {
+        Query query = compiler.keywords(field, keywords);
+        if (query == null) {
+            return new ScoreDoc[0];
+        }
+        long start = System.nanoTime();
+        IndexSearcher searcher = null;
+        try {
+            searcher = getSearcher();
+            //one searcher for both passes, the doc ids of the first are only valid on its reader
+            TopDocs first = searcher.search(query, Math.max(firstPassHits, numHits));
+            long rescoreStart = System.nanoTime();
+            TopDocs top = ranking.asRescorer().rescore(searcher, first, numHits);
+            metrics.record("search.reranked.rescore_us", (System.nanoTime() - rescoreStart) / 1000);
+            record("reranked", query, start, 0, rescoreStart - start, top.totalHits);
+            return found(top.scoreDocs, searcher);
+        } catch (Exception e) {
+            metrics.increment("search.reranked.errors");
+            e.printStackTrace();
+            return null;
+        } finally {
+            if (searcher != null) {
+                release(searcher);
+            }
+        }
+    }
+
+    //search a query in classic syntax, e.g. "business_id: lPkRneUrVwfJotHOVry36g AND review: nice",
+    //unqualified terms search the compiler's default field (review)
+    public ScoreDoc[] searchPhraseQuery(String phrase, int numHits) {
+        return searchPhraseQuery(compiler.getDefaultField(), phrase, numHits);
+    }
+
+    //the same with unqualified terms searched in defaultField
+    public ScoreDoc[] searchPhraseQuery(String defaultField, String phrase, int numHits) {
+        try {
+            return search("phrase", compiler.parse(defaultField, phrase), numHits);
+        } catch (Exception e) {
+            metrics.increment("search.phrase.errors");
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    //a query in classic syntax with unqualified terms searched in all of fields, e.g. name and review,
+    //each field weighted by its boost (boosts may be null)
+    public ScoreDoc[] searchMultiField(String[] fields, Map<String, Float> boosts, String query, int numHits) {
+        try {
+            return search("multi_field", compiler.parse(fields, boosts, query), numHits);
+        } catch (Exception e) {
+            metrics.increment("search.multi_field.errors");
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+
+
+    //businesses within meters of a point, in no particular order. see searchNearest for nearest first
+    public ScoreDoc[] searchLocationQuery(double lat, double longt, int meters,int numHits) {
+        return search("location", LatLonPoint.newDistanceQuery(YELPLocationIndexer.GEO_FIELD, lat,longt, meters), numHits);
+    }
+
+    //the businesses nearest to a point within meters of it, nearest first. keywords (searched in the
+    //business name) and category (e.g. "mexican") narrow them down, either may be null.
+    //hits are FieldDocs with the distance in meters as their only field
+    public ScoreDoc[] searchNearest(double lat, double longt, double meters, String keywords, String category, int numHits) {
+        return searchNearestAfter(null, lat, longt, meters, keywords, category, numHits);
+    }
+
+    //the next page of searchNearest: the numHits businesses after after, the last hit of the previous
+    //page, in distance order. pages are stable while the reader is not reopened
+    public ScoreDoc[] searchNearestAfter(FieldDoc after, double lat, double longt, double meters, String keywords,
+                                         String category, int numHits) {
+        Query filter = locationFilter(compiler, keywords, category);
+        YELPGeoCellCache cells = geoCellCache;
+        if (cells != null) {
+            long start = System.nanoTime();
+            try {
+                ScoreDoc[] hits = searchNearestCached(cells, after, lat, longt, meters, filter, numHits);
+                if (hits != null) {
+                    metrics.increment("search.nearest.cached");
+                    record("nearest", null, start, 0, System.nanoTime() - start, hits.length);
+                    return hits;
+                }
+            } catch (Exception e) {
+                metrics.increment("search.nearest.errors");
+                e.printStackTrace();
+                return null;
+            }
+        }
+        Sort byDistance = new Sort(LatLonDocValuesField.newDistanceSort(YELPLocationIndexer.GEO_FIELD, lat, longt));
+        return search("nearest", distanceQuery(lat, longt, meters, filter), byDistance, after, numHits);
+    }
+
+    //documents within meters of a point that match filter. the points query prunes by bounding box over the
+    //BKD tree, the doc values query checks single documents once a selective text or category filter leads
+    private static Query distanceQuery(double lat, double longt, double meters, Query filter) {
+        Query distance = new IndexOrDocValuesQuery(
+                LatLonPoint.newDistanceQuery(YELPLocationIndexer.GEO_FIELD, lat, longt, meters),
+                LatLonDocValuesField.newSlowDistanceQuery(YELPLocationIndexer.GEO_FIELD, lat, longt, meters));
+        if (filter == null) {
+            return distance;
+        }
+        BooleanQuery.Builder query = new BooleanQuery.Builder();
+        query.add(distance, BooleanClause.Occur.FILTER);
+        query.add(filter, BooleanClause.Occur.FILTER);
+        return query.build();
+    }
+
+    //name keywords and category as one non-scoring filter, null for neither.
+    //keywords that are only stop words do not filter
+    private static Query locationFilter(YELPQueryCompiler compiler, String keywords, String category) {
+        BooleanQuery.Builder filter = new BooleanQuery.Builder();
+        boolean empty = true;
+        if (keywords != null) {
+            Query text = compiler.keywords(YELPLocationIndexer.NAME_FIELD, keywords);
+            if (text != null) {
+                filter.add(text, BooleanClause.Occur.FILTER);
+                empty = false;
+            }
+        }
+        if (category != null) {
+            filter.add(new TermQuery(new Term(YELPLocationIndexer.CATEGORIES_FIELD, category.trim().toLowerCase(Locale.ROOT))),
+                    BooleanClause.Occur.FILTER);
+            empty = false;
+        }
+        return empty ? null : filter.build();
+    }
+
+    //searchNearestAfter from the candidates of the cell of the point, null if the cell has too many
+    private ScoreDoc[] searchNearestCached(YELPGeoCellCache cells, FieldDoc after, double lat, double longt, double meters,
+                                           Query filter, int numHits) throws IOException {
+        String cell = cells.cell(lat, longt);
+        String key = meters + (filter == null ? "" : " " + filter);
+        IndexSearcher searcher = getSearcher();
+        try {
+            Object readerKey = readerKey(searcher.getIndexReader());
+            YELPGeoCellCache.Candidates candidates = cells.get(readerKey, cell, key);
+            if (candidates == null) {
+                //every hit of a point in the cell is within meters plus the cell radius of its center
+                double[] center = YELPGeoCellCache.centerAndRadius(cell);
+                candidates = collectCandidates(searcher, distanceQuery(center[0], center[1], meters + center[2], filter),
+                        cells.getMaxCandidates());
+                cells.put(readerKey, cell, key, candidates);
+            }
+            if (candidates == YELPGeoCellCache.TOO_MANY) {
+                return null;
+            }
+            return found(nearest(candidates, after, lat, longt, meters, numHits), searcher);
+        } finally {
+            release(searcher);
+        }
+    }
+
+    //top level doc ids and locations of the matches of query, TOO_MANY beyond max
+    private static YELPGeoCellCache.Candidates collectCandidates(IndexSearcher searcher, Query query, final int max) throws IOException {
+        final int[] docs = new int[max];
+        final double[] lats = new double[max];
+        final double[] lons = new double[max];
+        final int[] count = new int[1];
+        searcher.search(query, new SimpleCollector() {
+            private SortedNumericDocValues points;
+            private int docBase;
+
+            @Override
+            protected void doSetNextReader(LeafReaderContext context) throws IOException {
+                if (count[0] > max) {
+                    throw new CollectionTerminatedException();
+                }
+                points = context.reader().getSortedNumericDocValues(YELPLocationIndexer.GEO_FIELD);
+                docBase = context.docBase;
+            }
+
+            @Override
+            public void collect(int doc) throws IOException {
+                if (points == null || !points.advanceExact(doc)) {
+                    return;
+                }
+                int i = count[0]++;
+                if (i >= max) {
+                    throw new CollectionTerminatedException();
+                }
+                long encoded = points.nextValue();
+                docs[i] = docBase + doc;
+                lats[i] = GeoEncodingUtils.decodeLatitude((int) (encoded >> 32));
+                lons[i] = GeoEncodingUtils.decodeLongitude((int) encoded);
+            }
+
+            @Override
+            public boolean needsScores() {
+                return false;
+            }
+        });
+        if (count[0] > max) {
+            return YELPGeoCellCache.TOO_MANY;
+        }
+        return new YELPGeoCellCache.Candidates(Arrays.copyOf(docs, count[0]), Arrays.copyOf(lats, count[0]),
+                Arrays.copyOf(lons, count[0]));
+    }
+
+    //the numHits candidates within meters nearest to the point and after after, ordered like the distance sort
+    private static ScoreDoc[] nearest(YELPGeoCellCache.Candidates candidates, FieldDoc after, double lat, double longt,
+                                      double meters, int numHits) {
+        double afterDistance = after == null ? -1 : (Double) after.fields[0];
+        List<FieldDoc> within = new ArrayList<FieldDoc>();
+        for (int i = 0; i < candidates.docs.length; i++) {
+            double distance = SloppyMath.haversinMeters(lat, longt, candidates.lats[i], candidates.lons[i]);
+            if (distance > meters) {
+                continue;
+            }
+            if (after != null && (distance < afterDistance || (distance == afterDistance && candidates.docs[i] <= after.doc))) {
+                continue;
+            }
+            within.add(new FieldDoc(candidates.docs[i], Float.NaN, new Object[]{distance}));
+        }
+        Collections.sort(within, new Comparator<FieldDoc>() {
+            @Override
+            public int compare(FieldDoc a, FieldDoc b) {
+                int c = Double.compare((Double) a.fields[0], (Double) b.fields[0]);
+                return c != 0 ? c : Integer.compare(a.doc, b.doc);
+            }
+        });
+        return within.subList(0, Math.min(numHits, within.size())).toArray(new ScoreDoc[0]);
+    }
+
+    //the documents of the records with the given ids (user_id, review_id or business_id, whichever the
+    //index is keyed on), matched exactly and all with the same score
+    public ScoreDoc[] searchKeys(Collection<String> ids, int numHits) {
+        return searchIds(YELPBaseIndexer.KEY_FIELD, ids, numHits);
+    }
+
+    //documents whose id field (user_id, business_id, review_id) is exactly id, e.g. all reviews of a business.
+    //a postings seek without analysis or scoring, every hit scores 1
+    public ScoreDoc[] searchId(String field, String id, int numHits) {
+        return search("id", new ConstantScoreQuery(new TermQuery(new Term(field, id))), numHits);
+    }
+
+    //documents whose id field is any of ids
+    public ScoreDoc[] searchIds(String field, Collection<String> ids, int numHits) {
+        List<BytesRef> terms = new ArrayList<BytesRef>(ids.size());
+        for (String id : ids) {
+            terms.add(new BytesRef(id));
+        }
+        return search("id", new ConstantScoreQuery(new TermInSetQuery(field, terms)), numHits);
+    }
+
+    //keywords in field, ranked, among the documents whose id field is exactly id.
+    //e.g. searchWithin("business_id", id, "review", "nice", 20) for business_id:id AND review:nice,
+    //with the id clause as a non-scoring filter the query cache can keep
+    public ScoreDoc[] searchWithin(String idField, String id, String field, String keywords, int numHits) {
+        Query text = compiler.keywords(field, keywords);
+        if (text == null) {
+            return new ScoreDoc[0];
+        }
+        BooleanQuery.Builder query = new BooleanQuery.Builder();
+        query.add(new TermQuery(new Term(idField, id)), BooleanClause.Occur.FILTER);
+        query.add(text, BooleanClause.Occur.MUST);
+        return search("within", query.build(), numHits);
+    }
+
+    //a page of search(field, keywords, pageSize). cursor is null for the first page and the previous
+    //page's getCursor() after that, a deep page costs about as much as the first
+    public YELPPage searchPage(String field, String keywords, String cursor, int pageSize) {
+        Query query = compiler.keywords(field, keywords);
+        if (query == null) {
+            return new YELPPage(new ScoreDoc[0], pageSize);
+        }
+        return page(query, null, cursor, pageSize);
+    }
+
+    //a page of searchId, e.g. the reviews of a business page by page
+    public YELPPage searchIdPage(String field, String id, String cursor, int pageSize) {
+        return page(new ConstantScoreQuery(new TermQuery(new Term(field, id))), null, cursor, pageSize);
+    }
+
+    //a page of searchNearest, see searchPage
+    public YELPPage searchNearestPage(double lat, double longt, double meters, String keywords, String category,
+                                      String cursor, int pageSize) {
+        ScoreDoc after = YELPPage.decode(cursor);
+        if (after != null && !(after instanceof FieldDoc)) {
+            throw new IllegalArgumentException("not a cursor of searchNearestPage: " + cursor);
+        }
+        ScoreDoc[] hits = searchNearestAfter((FieldDoc) after, lat, longt, meters, keywords, category, pageSize);
+        return hits == null ? null : new YELPPage(hits, pageSize);
+    }
+
+    private YELPPage page(Query query, Sort sort, String cursor, int pageSize) {
+        ScoreDoc[] hits = search("page", query, sort, YELPPage.decode(cursor), pageSize);
+        return hits == null ? null : new YELPPage(hits, pageSize);
+    }
+
+    //stream every document with keywords in field to consumer, projected as projection's fields.
+    //matches are unscored and in doc id order, and memory stays the same however many match.
+    //returns the number of documents exported
+    public long export(String field, String keywords, YELPResults projection, YELPExportConsumer consumer) throws IOException {
+        Query query = compiler.keywords(field, keywords);
+        return query == null ? 0 : export(query, projection, consumer);
+    }
+
+    //stream every document whose id field is exactly id, e.g. all reviews of a business, see export
+    public long exportId(String field, String id, YELPResults projection, YELPExportConsumer consumer) throws IOException {
+        return export(new TermQuery(new Term(field, id)), projection, consumer);
+    }
+
+    private long export(Query query, YELPResults projection, YELPExportConsumer consumer) throws IOException {
+        long start = System.nanoTime();
+        IndexSearcher searcher = getSearcher();
+        try {
+            ExportCollector collector = new ExportCollector(searcher.getIndexReader(), projection, consumer);
+            searcher.search(query, collector);
+            collector.flush();
+            record("export", query, start, 0, System.nanoTime() - start, collector.exported);
+            return collector.exported;
+        } catch (IOException e) {
+            metrics.increment("search.export.errors");
+            throw e;
+        } finally {
+            release(searcher);
+        }
+    }
+
+    //hands matches to the consumer EXPORT_BATCH at a time, so the projection reads neighbouring documents together
+    private static class ExportCollector extends SimpleCollector {
+        private static final int EXPORT_BATCH = 1024;
+
+        private final IndexReader reader;
+        private final YELPResults projection;
+        private final YELPExportConsumer consumer;
+        private final ScoreDoc[] batch = new ScoreDoc[EXPORT_BATCH];
+        private int count = 0;
+        private int docBase;
+        long exported = 0;
+
+        ExportCollector(IndexReader reader, YELPResults projection, YELPExportConsumer consumer) {
+            this.reader = reader;
+            this.projection = projection;
+            this.consumer = consumer;
+            for (int i = 0; i < batch.length; i++) {
+                batch[i] = new ScoreDoc(0, Float.NaN);
+            }
+        }
+
+        @Override
+        protected void doSetNextReader(LeafReaderContext context) {
+            docBase = context.docBase;
+        }
+
+        @Override
+        public void collect(int doc) throws IOException {
+            batch[count++].doc = docBase + doc;
+            if (count == batch.length) {
+                flush();
+            }
+        }
+
+        void flush() throws IOException {
+            projection.load(reader, batch, count);
+            for (int i = 0; i < count; i++) {
+                consumer.accept(projection, i);
+            }
+            exported += count;
+            count = 0;
+        }
+
+        @Override
+        public boolean needsScores() {
+            return false;
+        }
+    }
+
+    //review stats of a business or user in a stats index built by YELPStatsAggregator, null if it has no reviews.
+    //entity is YELPStatsAggregator.BUSINESS or USER
+    public YELPStats getStats(String entity, String id) throws IOException {
+        String idField = idField(entity);
+        BooleanQuery.Builder query = new BooleanQuery.Builder();
+        query.add(new TermQuery(new Term(YELPStatsAggregator.ENTITY_FIELD, entity)), BooleanClause.Occur.FILTER);
+        query.add(new TermQuery(new Term(idField, id)), BooleanClause.Occur.FILTER);
+        YELPResults results = new YELPResults()
+                .addNumericField(YELPStatsAggregator.REVIEW_COUNT_FIELD, false)
+                .addNumericField(YELPStatsAggregator.AVG_STARS_FIELD, true);
+        for (int s = 1; s <= 5; s++) {
+            results.addNumericField(YELPStatsAggregator.starsField(s), false);
+        }
+        long start = System.nanoTime();
+        IndexSearcher searcher = getSearcher();
+        try {
+            //one searcher for the search and the projection, the doc id is only valid on its reader
+            Query stats = query.build();
+            TopDocs top = searcher.search(stats, 1);
+            record("stats", stats, start, 0, System.nanoTime() - start, top.totalHits);
+            if (top.scoreDocs.length == 0) {
+                return null;
+            }
+            results.load(searcher.getIndexReader(), top.scoreDocs);
+        } catch (IOException e) {
+            metrics.increment("search.stats.errors");
+            throw e;
+        } finally {
+            release(searcher);
+        }
+        long[] histogram = new long[5];
+        for (int s = 1; s <= 5; s++) {
+            histogram[s - 1] = results.getLong(0, YELPStatsAggregator.starsField(s), 0);
+        }
+        return new YELPStats(id, results.getLong(0, YELPStatsAggregator.REVIEW_COUNT_FIELD, 0),
+                results.getDouble(0, YELPStatsAggregator.AVG_STARS_FIELD, 0), histogram);
+    }
+
+    //facet counts of the businesses or users with at least minReviews reviews by average rating,
+    //in half star buckets: [0] for 1 to 1.25 stars, [1] for 1.25 to 1.75 ... [8] for 4.75 to 5.
+    //read from the avg_stars doc values of the matching documents, no stored fields are loaded
+    public long[] countByRating(String entity, long minReviews) throws IOException {
+        final long[] counts = new long[9];
+        IndexSearcher searcher = getSearcher();
+        try {
+            searcher.search(statsFilter(entity, minReviews), new SimpleCollector() {
+                private NumericDocValues avgStars;
+
+                @Override
+                protected void doSetNextReader(LeafReaderContext context) throws IOException {
+                    avgStars = context.reader().getNumericDocValues(YELPStatsAggregator.AVG_STARS_FIELD);
+                }
+
+                @Override
+                public void collect(int doc) throws IOException {
+                    if (avgStars != null && avgStars.advanceExact(doc)) {
+                        double stars = Double.longBitsToDouble(avgStars.longValue());
+                        int bucket = (int) Math.round(stars * 2) - 2;
+                        counts[Math.max(0, Math.min(8, bucket))]++;
+                    }
+                }
+
+                @Override
+                public boolean needsScores() {
+                    return false;
+                }
+            });
+        } finally {
+            release(searcher);
+        }
+        return counts;
+    }
+
+    //the best rated businesses or users with at least minReviews reviews, ties broken by review count.
+    //sorted on the avg_stars and review_count doc values, hits are FieldDocs with both as fields
+    public ScoreDoc[] searchTopRated(String entity, long minReviews, int numHits) {
+        return search("stats", statsFilter(entity, minReviews), TOP_RATED, numHits);
+    }
+
+    //the best rated businesses within meters of a point, see searchTopRated.
+    //needs a stats index aggregated with YELPStatsAggregator.setLocationIndex
+    public ScoreDoc[] searchTopRatedNear(double lat, double longt, double meters, long minReviews, int numHits) {
+        BooleanQuery.Builder query = new BooleanQuery.Builder();
+        query.add(statsFilter(YELPStatsAggregator.BUSINESS, minReviews), BooleanClause.Occur.FILTER);
+        query.add(LatLonPoint.newDistanceQuery(YELPStatsAggregator.GEO_FIELD, lat, longt, meters), BooleanClause.Occur.FILTER);
+        return search("stats", query.build(), TOP_RATED, numHits);
+    }
+
+    //stats documents of entity with at least minReviews reviews
+    private static Query statsFilter(String entity, long minReviews) {
+        idField(entity);
+        BooleanQuery.Builder query = new BooleanQuery.Builder();
+        query.add(new TermQuery(new Term(YELPStatsAggregator.ENTITY_FIELD, entity)), BooleanClause.Occur.FILTER);
+        if (minReviews > 0) {
+            query.add(NumericDocValuesField.newSlowRangeQuery(YELPStatsAggregator.REVIEW_COUNT_FIELD, minReviews, Long.MAX_VALUE),
+                    BooleanClause.Occur.FILTER);
+        }
+        return new ConstantScoreQuery(query.build());
+    }
+
+    private static String idField(String entity) {
+        if (YELPStatsAggregator.BUSINESS.equals(entity)) {
+            return YELPBaseIndexer.BUSINESS_ID_FIELD;
+        } else if (YELPStatsAggregator.USER.equals(entity)) {
+            return YELPBaseIndexer.USER_ID_FIELD;
+        }
+        throw new IllegalArgumentException("unknown entity: " + entity);
+    }
+
+    //identifies the reader hits were computed on. a sharded index's MultiReader has no cache helper,
+    //a new one is built on every reopen so the reader itself will do
+    private static Object readerKey(IndexReader reader) {
+        IndexReader.CacheHelper helper = reader.getReaderCacheHelper();
+        return helper == null ? reader : helper.getKey();
+    }
+
+    //remember that hits were found on searcher's reader
+    private static ScoreDoc[] found(ScoreDoc[] hits, IndexSearcher searcher) {
+        HIT_READERS.put(hits, readerKey(searcher.getIndexReader()));
+        return hits;
+    }
+
+    private ScoreDoc[] search(String type, Query query, int numHits) {
+        return search(type, query, null, null, numHits);
+    }
+
+    private ScoreDoc[] search(String type, Query query, Sort sort, int numHits) {
+        return search(type, query, sort, null, numHits);
+    }
+
+    //top numHits of query by score, or by sort when it is not null and then after the hit after if given.
+    //first pages are served from the result cache when the same query already ran on the current reader.
+    //the cache key is the parsed query's string form, so spacing and case the analyzer removes do not matter.
+    //timings are recorded under type, see setMetrics
+    private ScoreDoc[] search(String type, Query query, Sort sort, ScoreDoc after, int numHits) {
+        long start = System.nanoTime();
+        ScoreDoc[] hits = null;
+        IndexSearcher searcher = null;
+        try {
+            searcher = getSearcher();
+            YELPQueryResultCache cache = after == null ? resultCache : null;
+            Object readerKey = null;
+            String key = null;
+            if (cache != null) {
+                readerKey = readerKey(searcher.getIndexReader());
+                key = sort == null ? query.toString() : query.toString() + " sort:" + sort;
+                hits = cache.get(readerKey, key, numHits);
+                if (hits != null) {
+                    metrics.increment("search." + type + ".cached");
+                    record(type, query, start, 0, System.nanoTime() - start, hits.length);
+                    return found(hits, searcher);
+                }
+            }
+
+            //rewrite up front so expanding e.g. wildcards is timed apart from scoring,
+            //the search below finds the query already rewritten
+            long rewriteStart = System.nanoTime();
+            Query rewritten = searcher.rewrite(query);
+            long collectStart = System.nanoTime();
+
+            //search index, the segments (or shards) in parallel when the searcher has an executor
+            TopDocs top = sort == null
+                    ? searcher.searchAfter(after, rewritten, numHits)
+                    : searcher.searchAfter(after, rewritten, numHits, sort, false, false);
+
+            //collect results
+            hits = found(top.scoreDocs, searcher);
+            if (cache != null) {
+                cache.put(readerKey, key, numHits, hits);
+            }
+            record(type, query, start, collectStart - rewriteStart, System.nanoTime() - collectStart, top.totalHits);
+        } catch (Exception e) {
+            metrics.increment("search." + type + ".errors");
+            e.printStackTrace();
+        } finally {
+            if (searcher != null) {
+                release(searcher);
+            }
+        }
+        return hits;
+    }
+
+
+
+    //record the timings of one query of type, and log it when it was slow. query is null for searchNearest
+    //served from the geo cell cache, hits is the total hit count
+    private void record(String type, Query query, long start, long rewriteNanos, long collectNanos, long hits) {
+        long total = System.nanoTime() - start;
+        YELPMetrics m = metrics;
+        String prefix = "search." + type;
+        m.record(prefix + ".latency_us", total / 1000);
+        m.record(prefix + ".rewrite_us", rewriteNanos / 1000);
+        m.record(prefix + ".collect_us", collectNanos / 1000);
+        m.record(prefix + ".hits", hits);
+        long slow = slowQueryNanos;
+        if (slow >= 0 && total >= slow) {
+            SLOW_QUERIES.warning(String.format(Locale.ROOT, "slow %s query %.1f ms (rewrite %.1f ms, collect %.1f ms, %d hits): %s",
+                    type, total / 1e6, rewriteNanos / 1e6, collectNanos / 1e6, hits, query == null ? "cached" : query));
+        }
+    }
+
+    //run search(field, keywords, numHits) for every keywords string, concurrently when
+    //setParallelism gave batch threads. results are in the order of the queries
+    public List<ScoreDoc[]> searchBatch(final String field, List<String> keywords, final int numHits) throws Exception {
+        List<Callable<ScoreDoc[]>> tasks = new ArrayList<Callable<ScoreDoc[]>>();
+        for (final String k : keywords) {
+            tasks.add(new Callable<ScoreDoc[]>() {
+                @Override
+                public ScoreDoc[] call() {
+                    return search(field, k, numHits);
+                }
+            });
+        }
+        return runBatch(tasks);
+    }
+
+    //run searchPhraseQuery(phrase, numHits) for every phrase, see searchBatch
+    public List<ScoreDoc[]> searchPhraseBatch(List<String> phrases, final int numHits) throws Exception {
+        List<Callable<ScoreDoc[]>> tasks = new ArrayList<Callable<ScoreDoc[]>>();
+        for (final String p : phrases) {
+            tasks.add(new Callable<ScoreDoc[]>() {
+                @Override
+                public ScoreDoc[] call() {
+                    return searchPhraseQuery(p, numHits);
+                }
+            });
+        }
+        return runBatch(tasks);
+    }
+
+    private List<ScoreDoc[]> runBatch(List<Callable<ScoreDoc[]>> tasks) throws Exception {
+        List<ScoreDoc[]> results = new ArrayList<ScoreDoc[]>(tasks.size());
+        ExecutorService executor = batchExecutor;
+        if (executor == null) {
+            for (Callable<ScoreDoc[]> task : tasks) {
+                results.add(task.call());
+            }
+            return results;
+        }
+        for (Future<ScoreDoc[]> f : executor.invokeAll(tasks)) {
+            results.add(f.get());
+        }
+        return results;
+    }
+
+    //fill results with the fields it projects for every hit, results can be reused for the next page.
+    //doc ids are only valid on the reader they were found on: throws IllegalStateException when this
+    //searcher was reopened since, use project(IndexSearcher, ...) to search and project on one reader
+    public YELPResults project(ScoreDoc[] hits, YELPResults results) throws IOException {
+        IndexSearcher searcher = getSearcher();
+        try {
+            return project(searcher, hits, results);
+        } finally {
+            release(searcher);
+        }
+    }
+
+    //same as project(hits, results) on searcher, from getSearcher() and held since hits were found on it.
+    //hits of other sources, e.g. YELPIdDictionary.asHits, are trusted to belong to its reader
+    public YELPResults project(IndexSearcher searcher, ScoreDoc[] hits, YELPResults results) throws IOException {
+        Object foundOn = HIT_READERS.get(hits);
+        if (foundOn != null && foundOn != readerKey(searcher.getIndexReader())) {
+            throw new IllegalStateException("hits were found on a reader that has been reopened since, search again");
+        }
+        results.load(searcher.getIndexReader(), hits);
+        return results;
+    }
+
+    //present the search results, see project(hits, results)
+    public void printResult(ScoreDoc[] hits, List<String> fieldName) throws Exception {
+        IndexSearcher searcher = getSearcher();
+        try {
+            printResult(searcher, hits, fieldName);
+        } finally {
+            release(searcher);
+        }
+    }
+
+    //present the search results from searcher's reader, see project(searcher, hits, results)
+    public void printResult(IndexSearcher searcher, ScoreDoc[] hits, List<String> fieldName) throws Exception {
+        YELPResults results = project(searcher, hits, new YELPResults().setStoredFields(fieldName.toArray(new String[0])));
+        for (int i = 0; i < results.size(); i++) {
+            System.out.println("\nResult " + (i + 1) + "\tDocID: " + results.getDoc(i) + "\t Score: " + results.getScore(i));
+            for(String s : fieldName){
+                System.out.println(s + ": " + results.getString(i, s));
+            }
+
+         /*   if (i == 0) {
+                Terms terms = getTermVector(results.getDoc(i), "friends");
+                System.out.println("doc: " + results.getDoc(i));
+
+                TermsEnum iterator = terms.iterator();
+                BytesRef term = null;
+                System.out.print("List of Terms: ");
+                while ((term = iterator.next()) != null) {
+                    String termText = term.utf8ToString();
+                    long termFreq = iterator.totalTermFreq(); // term freq in doc with docID
+                    System.out.print(termText + ":" + termFreq + "\t");
+                }
+                System.out.println();
+            }*/
+        }
+    }
+        //get term vector, null unless YELPFieldSchema.setTermVectors enabled them for field
+        public Terms getTermVector (int docID, String field) throws Exception {
+            IndexSearcher searcher = getSearcher();
+            try {
+                return searcher.getIndexReader().getTermVector(docID, field);
+            } finally {
+                release(searcher);
+            }
+        }
+
+        //release this searcher's reference, the shared reader closes with the last one
+        public void close() {
+            shutdownExecutors();
+            disableResultCache();
+            disableGeoCellCache();
+            try {
+                if (manager != null) {
+                    manager.release();
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+
+        private synchronized void shutdownExecutors() {
+            if (segmentExecutor != null) {
+                segmentExecutor.shutdown();
+                segmentExecutor = null;
+            }
+            if (batchExecutor != null) {
+                batchExecutor.shutdown();
+                batchExecutor = null;
+            }
+        }
+}
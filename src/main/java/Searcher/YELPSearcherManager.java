@@ -0,0 +1,169 @@
+package Searcher;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import Indexer.YELPBaseIndexer;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.LRUQueryCache;
+import org.apache.lucene.search.QueryCachingPolicy;
+import org.apache.lucene.search.ReferenceManager;
+import org.apache.lucene.search.SearcherFactory;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.UsageTrackingQueryCachingPolicy;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+
+//a reference counted SearcherManager shared by every YELPSearcher on the same index.
+//a background thread reopens the reader every refresh interval, from the live IndexWriter when
+//one is given (near-real-time) or from the directory otherwise. searches acquire the current
+//searcher and never wait for a reopen, the old reader is closed once its last search released it.
+//a directory holding the shards of a sharded index (YELPIndexerOptions.setShards) is opened as
+//one index over all shards, see YELPShardedIndexSearcher
+public class YELPSearcherManager {
+    public static final long DEFAULT_REFRESH_INTERVAL_MS = 500;
+
+    //per segment cache of the doc id sets matched by filter clauses, e.g. the business_id clause
+    //repeated by many lookups. larger than Lucene's default (1000 queries, 32MB) since every
+    //searcher of every index shares it, and segments of a reopened reader keep their entries
+    public static final int QUERY_CACHE_MAX_QUERIES = 4096;
+    public static final long QUERY_CACHE_MAX_RAM_BYTES = 128L * 1024 * 1024;
+    private static final LRUQueryCache QUERY_CACHE = new LRUQueryCache(QUERY_CACHE_MAX_QUERIES, QUERY_CACHE_MAX_RAM_BYTES);
+    //caches a clause once it was seen a few times, costly clauses sooner than cheap term queries
+    private static final QueryCachingPolicy QUERY_CACHING_POLICY = new UsageTrackingQueryCachingPolicy();
+
+    private static final SearcherFactory SEARCHER_FACTORY = new SearcherFactory() {
+        @Override
+        public IndexSearcher newSearcher(IndexReader reader, IndexReader previousReader) throws IOException {
+            IndexSearcher searcher = new IndexSearcher(reader);
+            useQueryCache(searcher);
+            return searcher;
+        }
+    };
+
+    //directory managers, shared by path
+    private static final Map<Path, YELPSearcherManager> OPEN = new HashMap<Path, YELPSearcherManager>();
+
+    private final ReferenceManager<IndexSearcher> manager;
+    private final Path path;
+    private final ScheduledExecutorService refresher;
+    private int refCount = 1;
+
+    private YELPSearcherManager(ReferenceManager<IndexSearcher> manager, Path path, long refreshIntervalMs) {
+        this.manager = manager;
+        this.path = path;
+        this.refresher = Executors.newSingleThreadScheduledExecutor(new YELPDaemonThreadFactory("yelp-searcher-refresh"));
+        refresher.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    YELPSearcherManager.this.manager.maybeRefresh();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        }, refreshIntervalMs, refreshIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    //the shared manager of the index in dir, opened on first use. pair with release()
+    public static YELPSearcherManager acquire(String dir) throws IOException {
+        return acquire(dir, DEFAULT_REFRESH_INTERVAL_MS);
+    }
+
+    //refreshIntervalMs only applies when this call opens the manager
+    public static synchronized YELPSearcherManager acquire(String dir, long refreshIntervalMs) throws IOException {
+        Path path = Paths.get(dir).toAbsolutePath().normalize();
+        YELPSearcherManager shared = OPEN.get(path);
+        if (shared != null) {
+            return shared.incRef();
+        }
+        ReferenceManager<IndexSearcher> manager;
+        if (Files.isDirectory(Paths.get(YELPBaseIndexer.shardDir(dir, 0)))) {
+            List<Directory> shards = new ArrayList<Directory>();
+            for (int i = 0; Files.isDirectory(Paths.get(YELPBaseIndexer.shardDir(dir, i))); i++) {
+                shards.add(FSDirectory.open(Paths.get(YELPBaseIndexer.shardDir(dir, i))));
+            }
+            manager = new YELPShardedSearcherManager(shards.toArray(new Directory[shards.size()]));
+        } else {
+            manager = new SearcherManager(FSDirectory.open(path), SEARCHER_FACTORY);
+        }
+        shared = new YELPSearcherManager(manager, path, refreshIntervalMs);
+        OPEN.put(path, shared);
+        return shared;
+    }
+
+    //near-real-time manager over a live writer, sees documents before they are committed
+    public static YELPSearcherManager open(IndexWriter writer, long refreshIntervalMs) throws IOException {
+        return new YELPSearcherManager(new SearcherManager(writer, SEARCHER_FACTORY), null, refreshIntervalMs);
+    }
+
+    //give a searcher built outside the manager the shared filter cache
+    public static void useQueryCache(IndexSearcher searcher) {
+        searcher.setQueryCache(QUERY_CACHE);
+        searcher.setQueryCachingPolicy(QUERY_CACHING_POLICY);
+    }
+
+    //hit/miss/eviction counters of the filter cache
+    public static LRUQueryCache getQueryCache() {
+        return QUERY_CACHE;
+    }
+
+    //take another reference, e.g. for a second YELPSearcher on the same manager
+    public synchronized YELPSearcherManager incRef() {
+        if (refCount <= 0) {
+            throw new IllegalStateException("searcher manager already closed");
+        }
+        refCount++;
+        return this;
+    }
+
+    //drop a reference, the last one stops the refresh thread and closes the reader
+    public void release() throws IOException {
+        synchronized (YELPSearcherManager.class) {
+            synchronized (this) {
+                if (--refCount > 0) {
+                    return;
+                }
+                if (path != null) {
+                    OPEN.remove(path);
+                }
+            }
+        }
+        refresher.shutdownNow();
+        manager.close();
+    }
+
+    //the current searcher, must be handed back with releaseSearcher
+    public IndexSearcher acquireSearcher() throws IOException {
+        return manager.acquire();
+    }
+
+    public void releaseSearcher(IndexSearcher searcher) throws IOException {
+        manager.release(searcher);
+    }
+
+    //reopen now instead of waiting for the refresh thread, blocks until the new reader is visible
+    public void refresh() throws IOException {
+        manager.maybeRefreshBlocking();
+    }
+
+    //called after every reopen attempt, e.g. to drop results computed on the old reader
+    public void addListener(ReferenceManager.RefreshListener listener) {
+        manager.addListener(listener);
+    }
+
+    public void removeListener(ReferenceManager.RefreshListener listener) {
+        manager.removeListener(listener);
+    }
+}
@@ -0,0 +1,51 @@
+package Searcher;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+import org.apache.lucene.index.IndexReaderContext;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.MultiReader;
+import org.apache.lucene.search.IndexSearcher;
+
+//searches the shards of an index written with YELPIndexerOptions.setShards as one index.
+//the reader is a MultiReader over the shard readers, so term statistics (doc freqs, total term freqs,
+//field lengths) are summed over all shards and Classic and BM25 scores are the same as on one index.
+//top hits queries run as one task per shard on the executor and the per shard hits are combined
+//with TopDocs.merge. doc ids are the MultiReader's, hits load through getIndexReader() as usual
+public class YELPShardedIndexSearcher extends IndexSearcher {
+    private final ExecutorService shardExecutor;
+
+    public YELPShardedIndexSearcher(MultiReader reader, ExecutorService shardExecutor) {
+        super(reader, shardExecutor);
+        this.shardExecutor = shardExecutor;
+    }
+
+    //the same shards searched on executor, or on the shard threads when it is null
+    public YELPShardedIndexSearcher withExecutor(ExecutorService executor) {
+        return new YELPShardedIndexSearcher((MultiReader) getIndexReader(), executor == null ? shardExecutor : executor);
+    }
+
+    //one slice per shard instead of one per segment
+    @Override
+    protected LeafSlice[] slices(List<LeafReaderContext> leaves) {
+        Map<IndexReaderContext, List<LeafReaderContext>> shards = new LinkedHashMap<IndexReaderContext, List<LeafReaderContext>>();
+        for (LeafReaderContext leaf : leaves) {
+            List<LeafReaderContext> shard = shards.get(leaf.parent);
+            if (shard == null) {
+                shard = new ArrayList<LeafReaderContext>();
+                shards.put(leaf.parent, shard);
+            }
+            shard.add(leaf);
+        }
+        LeafSlice[] slices = new LeafSlice[shards.size()];
+        int i = 0;
+        for (List<LeafReaderContext> shard : shards.values()) {
+            slices[i++] = new LeafSlice(shard.toArray(new LeafReaderContext[shard.size()]));
+        }
+        return slices;
+    }
+}
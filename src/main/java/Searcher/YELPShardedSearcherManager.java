@@ -0,0 +1,83 @@
+package Searcher;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReaderContext;
+import org.apache.lucene.index.MultiReader;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ReferenceManager;
+import org.apache.lucene.store.Directory;
+
+//reopens the shards of a sharded index together: a refresh builds a new MultiReader over the new readers
+//of the shards that changed and the current readers of the others, so a search always sees one
+//point in time of every shard. the multi reader holds a reference to each shard reader
+class YELPShardedSearcherManager extends ReferenceManager<IndexSearcher> {
+    //one thread per shard, shared by every searcher of the index
+    private final ExecutorService shardExecutor;
+
+    YELPShardedSearcherManager(Directory[] shards) throws IOException {
+        shardExecutor = Executors.newFixedThreadPool(shards.length, new YELPDaemonThreadFactory("yelp-search-shard"));
+        DirectoryReader[] readers = new DirectoryReader[shards.length];
+        for (int i = 0; i < shards.length; i++) {
+            readers[i] = DirectoryReader.open(shards[i]);
+        }
+        current = newSearcher(readers, readers);
+    }
+
+    @Override
+    protected IndexSearcher refreshIfNeeded(IndexSearcher searcher) throws IOException {
+        List<IndexReaderContext> shards = searcher.getIndexReader().getContext().children();
+        DirectoryReader[] readers = new DirectoryReader[shards.size()];
+        List<DirectoryReader> opened = new ArrayList<DirectoryReader>();
+        for (int i = 0; i < readers.length; i++) {
+            DirectoryReader old = (DirectoryReader) shards.get(i).reader();
+            DirectoryReader reopened = DirectoryReader.openIfChanged(old);
+            if (reopened == null) {
+                readers[i] = old;
+            } else {
+                readers[i] = reopened;
+                opened.add(reopened);
+            }
+        }
+        if (opened.isEmpty()) {
+            return null;
+        }
+        return newSearcher(readers, opened.toArray(new DirectoryReader[opened.size()]));
+    }
+
+    //a searcher over readers, handing the references of the just opened readers to the multi reader
+    private IndexSearcher newSearcher(DirectoryReader[] readers, DirectoryReader[] opened) throws IOException {
+        MultiReader reader = new MultiReader(readers, false);
+        for (DirectoryReader r : opened) {
+            r.decRef();
+        }
+        IndexSearcher searcher = new YELPShardedIndexSearcher(reader, shardExecutor);
+        YELPSearcherManager.useQueryCache(searcher);
+        return searcher;
+    }
+
+    @Override
+    protected void decRef(IndexSearcher searcher) throws IOException {
+        searcher.getIndexReader().decRef();
+    }
+
+    @Override
+    protected boolean tryIncRef(IndexSearcher searcher) {
+        return searcher.getIndexReader().tryIncRef();
+    }
+
+    @Override
+    protected int getRefCount(IndexSearcher searcher) {
+        return searcher.getIndexReader().getRefCount();
+    }
+
+    @Override
+    protected void afterClose() {
+        shardExecutor.shutdown();
+    }
+}
@@ -0,0 +1,45 @@
+package Searcher;
+
+//review stats of one business or user, as YELPStatsAggregator rolled them up
+public class YELPStats {
+    private final String id;
+    private final long reviewCount;
+    private final double avgStars;
+    //reviews with 1 to 5 stars at [stars - 1]
+    private final long[] histogram;
+
+    public YELPStats(String id, long reviewCount, double avgStars, long[] histogram) {
+        this.id = id;
+        this.reviewCount = reviewCount;
+        this.avgStars = avgStars;
+        this.histogram = histogram;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public long getReviewCount() {
+        return reviewCount;
+    }
+
+    public double getAvgStars() {
+        return avgStars;
+    }
+
+    //number of reviews with stars rounded to stars, 1 to 5
+    public long getStarCount(int stars) {
+        return histogram[stars - 1];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(id).append(": ").append(reviewCount).append(" reviews, ")
+                .append(String.format("%.2f", avgStars)).append(" stars [");
+        for (int s = 1; s <= 5; s++) {
+            sb.append(s == 1 ? "" : " ").append(s).append(':').append(histogram[s - 1]);
+        }
+        return sb.append(']').toString();
+    }
+}